@@ -0,0 +1,66 @@
+package cesar.benchmarks;
+
+import cesar.models.Cpu;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Custo de uma instrução executada por {@link Cpu#executeNextInstruction()} e por {@link Cpu#run(long,
+ * Cpu.StopPolicy)}, para cada mistura de instruções e cada motor de execução, com e sem o histórico usado para voltar
+ * instruções.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CpuBenchmark {
+    private static final int INSTRUCTIONS = 1000;
+
+    @Param({"ALU", "ADDRESSING_MODES", "BRANCHES", "SUBROUTINES"})
+    public String mix;
+
+    @Param({"INTERPRETER", "THREADED", "JIT"})
+    public String engine;
+
+    @Param({"false", "true"})
+    public boolean history;
+
+    private Cpu cpu;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        cpu = Programs.createCpu(Programs.Mix.valueOf(mix), Cpu.Engine.valueOf(engine));
+        cpu.setHistoryEnabled(history);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INSTRUCTIONS)
+    public int executeNextInstruction() {
+        var hash = 0;
+        for (var i = 0; i < INSTRUCTIONS; ++i) {
+            hash += cpu.executeNextInstruction().ordinal();
+        }
+        return hash;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INSTRUCTIONS)
+    public long run() {
+        return cpu.run(INSTRUCTIONS, Cpu.StopPolicy.NEVER).getInstructionCount();
+    }
+}
@@ -0,0 +1,69 @@
+package cesar.benchmarks;
+
+import cesar.models.Cpu;
+import cesar.models.Mnemonic;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Desmontagem da memória: a reconstrução completa feita ao carregar um arquivo, a atualização incremental feita a
+ * cada byte alterado e a montagem dos textos de todas as instruções, como na listagem em texto do programa.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MnemonicBenchmark {
+    // Alterna entre dois valores com tamanhos de instrução diferentes (MOV com índice e NOP) para que a atualização
+    // incremental sempre tenha o que refazer.
+    private static final byte[] VALUES = {(byte) 0x9E, (byte) 0x00};
+    private static final int ADDRESS_STEP = 4099;
+
+    private Cpu cpu;
+    private byte[] memory;
+    private int address;
+    private int valueIndex;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        cpu = new Cpu();
+        cpu.setMemory(Programs.randomMemory(42));
+        memory = cpu.getMemory();
+    }
+
+    @Benchmark
+    public void updateAllMnemonics() {
+        cpu.updateMnemonics();
+    }
+
+    // O cache de textos é bem menor que a memória, então cada passada monta praticamente todos os textos de novo.
+    @Benchmark
+    public void formatAllMnemonics(final Blackhole blackhole) {
+        for (int i = 0; i < Cpu.MEMORY_SIZE; ++i) {
+            blackhole.consume(cpu.getMnemonic(i));
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public int updateMnemonicsAfterByteChange() {
+        address = (address + ADDRESS_STEP) & Cpu.LAST_ADDRESS;
+        valueIndex ^= 1;
+        memory[address] = VALUES[valueIndex];
+        return Mnemonic.updateMnemonics(cpu, address);
+    }
+}
@@ -0,0 +1,240 @@
+package cesar.benchmarks;
+
+import cesar.models.Cpu;
+
+import java.util.Random;
+
+/**
+ * Programas de teste usados pelos benchmarks, montados diretamente em bytes.
+ * <p>
+ * Todos começam no endereço 0 e repetem o mesmo trecho para sempre, de modo que qualquer quantidade de instruções
+ * pode ser executada sem que a CPU pare.
+ */
+final class Programs {
+    static final int DATA_ADDRESS = 0x1000;
+    static final int STACK_ADDRESS = 0x8000;
+
+    private static final int MOV = 0x9;
+    private static final int ADD = 0xA;
+    private static final int SUB = 0xB;
+    private static final int CMP = 0xC;
+    private static final int AND = 0xD;
+    private static final int OR = 0xE;
+
+    private static final int NOT = 1;
+    private static final int INC = 2;
+    private static final int DEC = 3;
+    private static final int NEG = 4;
+    private static final int TST = 5;
+    private static final int ROL = 7;
+    private static final int ASR = 8;
+    private static final int ADC = 10;
+
+    private static final int BR = 0;
+    private static final int BNE = 1;
+    private static final int BEQ = 2;
+    private static final int BPL = 3;
+    private static final int BMI = 4;
+    private static final int BCC = 7;
+    private static final int BCS = 8;
+    private static final int BGT = 11;
+    private static final int BLE = 12;
+
+    private static final int REGISTER = 0;
+    private static final int POST_INCREMENTED = 1;
+    private static final int PRE_DECREMENTED = 2;
+    private static final int INDEXED = 3;
+    private static final int INDIRECT = 4;
+    private static final int POST_INCREMENTED_INDIRECT = 5;
+    private static final int PRE_DECREMENTED_INDIRECT = 6;
+    private static final int INDEXED_INDIRECT = 7;
+
+    private final byte[] memory = new byte[Cpu.MEMORY_SIZE];
+    private int address;
+
+    private Programs() {
+    }
+
+    enum Mix {
+        ALU, ADDRESSING_MODES, BRANCHES, SUBROUTINES
+    }
+
+    static Cpu createCpu(final Mix mix, final Cpu.Engine engine) {
+        final var cpu = new Cpu(engine);
+        cpu.setMemory(assemble(mix));
+        cpu.setRegisterValue(0, (short) 1234);
+        cpu.setRegisterValue(1, (short) DATA_ADDRESS);
+        cpu.setRegisterValue(2, (short) 77);
+        cpu.setRegisterValue(3, (short) 1000);
+        cpu.setRegisterValue(4, (short) 0x0F0F);
+        cpu.setRegisterValue(5, (short) -5);
+        cpu.setRegisterValue(6, (short) STACK_ADDRESS);
+        return cpu;
+    }
+
+    static byte[] assemble(final Mix mix) {
+        final var program = new Programs();
+        switch (mix) {
+        case ALU:
+            program.alu();
+            break;
+        case ADDRESSING_MODES:
+            program.addressingModes();
+            break;
+        case BRANCHES:
+            program.branches();
+            break;
+        case SUBROUTINES:
+            program.subroutines();
+            break;
+        }
+        return program.memory;
+    }
+
+    /**
+     * Memória preenchida com bytes aleatórios, próxima do que o desmontador encontra ao carregar um arquivo qualquer.
+     */
+    static byte[] randomMemory(final long seed) {
+        final var random = new Random(seed);
+        final var bytes = new byte[Cpu.MEMORY_SIZE];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    private void alu() {
+        twoOperand(ADD, REGISTER, 1, REGISTER, 0);
+        twoOperand(SUB, REGISTER, 2, REGISTER, 3);
+        twoOperand(CMP, REGISTER, 0, REGISTER, 3);
+        twoOperand(AND, REGISTER, 4, REGISTER, 5);
+        twoOperand(OR, REGISTER, 5, REGISTER, 4);
+        oneOperand(INC, REGISTER, 2);
+        oneOperand(DEC, REGISTER, 3);
+        oneOperand(NOT, REGISTER, 4);
+        oneOperand(ROL, REGISTER, 0);
+        oneOperand(ASR, REGISTER, 5);
+        oneOperand(ADC, REGISTER, 2);
+        oneOperand(NEG, REGISTER, 5);
+        oneOperand(TST, REGISTER, 0);
+        branch(BR, 0);
+    }
+
+    private void addressingModes() {
+        // R1 aponta para DATA_ADDRESS, que guarda o endereço de uma segunda área usada pelos modos indiretos.
+        putWord(DATA_ADDRESS, DATA_ADDRESS + 0x10);
+        putWord(DATA_ADDRESS + 2, DATA_ADDRESS + 0x12);
+        putWord(DATA_ADDRESS + 4, 0x1234);
+        putWord(DATA_ADDRESS + 0x10, 0x5678);
+        putWord(DATA_ADDRESS + 0x12, 0x9ABC);
+
+        twoOperand(MOV, INDIRECT, 1, REGISTER, 0);
+        twoOperand(MOV, POST_INCREMENTED, 1, REGISTER, 0);
+        twoOperand(MOV, PRE_DECREMENTED, 1, REGISTER, 0);
+        twoOperand(MOV, INDEXED, 1, REGISTER, 0);
+        word(4);
+        twoOperand(MOV, INDEXED_INDIRECT, 1, REGISTER, 0);
+        word(0);
+        twoOperand(MOV, POST_INCREMENTED_INDIRECT, 1, REGISTER, 0);
+        twoOperand(MOV, PRE_DECREMENTED_INDIRECT, 1, REGISTER, 0);
+        // MOV #1234, R2
+        twoOperand(MOV, POST_INCREMENTED, Cpu.PC, REGISTER, 2);
+        word(1234);
+        twoOperand(ADD, REGISTER, 0, INDEXED, 1);
+        word(8);
+        // MOV R0, DATA_ADDRESS + 0x20
+        twoOperand(MOV, REGISTER, 0, POST_INCREMENTED_INDIRECT, Cpu.PC);
+        word(DATA_ADDRESS + 0x20);
+        branch(BR, 0);
+    }
+
+    private void branches() {
+        twoOperand(CMP, REGISTER, 1, REGISTER, 1);
+        final var skip = branch(BEQ, -1);
+        nop();
+        nop();
+        patchBranch(skip, address);
+        branch(BNE, address + 2);
+        oneOperand(TST, REGISTER, 2);
+        branch(BMI, address + 2);
+        branch(BPL, address + 2);
+        branch(BGT, address + 2);
+        branch(BLE, address + 2);
+        branch(BCC, address + 2);
+        branch(BCS, address + 2);
+        sob(3, 0);
+        branch(BR, 0);
+    }
+
+    private void subroutines() {
+        final var first = 0x100;
+        final var second = 0x200;
+
+        jumpToSubRoutine(first);
+        jumpToSubRoutine(second);
+        branch(BR, 0);
+
+        address = first;
+        oneOperand(INC, REGISTER, 0);
+        jumpToSubRoutine(second);
+        returnFromSubRoutine();
+
+        address = second;
+        twoOperand(ADD, REGISTER, 1, REGISTER, 0);
+        returnFromSubRoutine();
+    }
+
+    private void twoOperand(final int opCode, final int srcMode, final int srcRegister, final int dstMode,
+            final int dstRegister) {
+        word((opCode << 12) | (srcMode << 9) | (srcRegister << 6) | (dstMode << 3) | dstRegister);
+    }
+
+    private void oneOperand(final int code, final int mode, final int register) {
+        putByte(0x80 | code);
+        putByte((mode << 3) | register);
+    }
+
+    private int branch(final int code, final int target) {
+        final var branchAddress = address;
+        putByte(0x30 | code);
+        putByte(target - (branchAddress + 2));
+        return branchAddress;
+    }
+
+    private void patchBranch(final int branchAddress, final int target) {
+        memory[branchAddress + 1] = (byte) (target - (branchAddress + 2));
+    }
+
+    private void sob(final int register, final int target) {
+        putByte(0x50 | register);
+        putByte(address + 1 - target);
+    }
+
+    // JSR R7, ((R7)+)
+    private void jumpToSubRoutine(final int target) {
+        putByte(0x60 | Cpu.PC);
+        putByte((POST_INCREMENTED_INDIRECT << 3) | Cpu.PC);
+        word(target);
+    }
+
+    // RTS R7
+    private void returnFromSubRoutine() {
+        putByte(0x70 | Cpu.PC);
+    }
+
+    private void nop() {
+        putByte(0x00);
+    }
+
+    private void word(final int value) {
+        putByte(value >> 8);
+        putByte(value);
+    }
+
+    private void putWord(final int wordAddress, final int value) {
+        memory[wordAddress] = (byte) (value >> 8);
+        memory[wordAddress + 1] = (byte) value;
+    }
+
+    private void putByte(final int value) {
+        memory[address++] = (byte) value;
+    }
+}
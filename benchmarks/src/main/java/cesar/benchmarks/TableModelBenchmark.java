@@ -0,0 +1,76 @@
+package cesar.benchmarks;
+
+import cesar.models.Base;
+import cesar.models.Cpu;
+import cesar.views.tables.DataTableModel;
+import cesar.views.tables.ProgramTableModel;
+import cesar.views.tables.TableModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Custo de {@link TableModel#getValueAt(int, int)} por célula, percorrendo a memória em janelas do tamanho de uma
+ * tabela visível na tela, como faz o JTable ao pintar.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class TableModelBenchmark {
+    private static final int VISIBLE_ROWS = 40;
+
+    @Param({"DECIMAL", "HEXADECIMAL"})
+    public String base;
+
+    private ProgramTableModel programTableModel;
+    private DataTableModel dataTableModel;
+    private int firstRow;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final var cpu = new Cpu();
+        cpu.setMemory(Programs.randomMemory(42));
+        programTableModel = new ProgramTableModel(cpu);
+        dataTableModel = new DataTableModel(cpu);
+        programTableModel.setBase(Base.valueOf(base));
+        dataTableModel.setBase(Base.valueOf(base));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VISIBLE_ROWS)
+    public void programTable(final Blackhole blackhole) {
+        paint(programTableModel, blackhole);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VISIBLE_ROWS)
+    public void dataTable(final Blackhole blackhole) {
+        paint(dataTableModel, blackhole);
+    }
+
+    private void paint(final TableModel model, final Blackhole blackhole) {
+        final var columnCount = model.getColumnCount();
+        for (var row = firstRow; row < firstRow + VISIBLE_ROWS; ++row) {
+            for (var column = 0; column < columnCount; ++column) {
+                blackhole.consume(model.getValueAt(row, column));
+            }
+        }
+        firstRow = (firstRow + VISIBLE_ROWS) % (Cpu.MEMORY_SIZE - VISIBLE_ROWS);
+    }
+}
@@ -0,0 +1,61 @@
+package cesar.benchmarks;
+
+import cesar.models.Base;
+import cesar.models.Cpu;
+import cesar.utils.text.TextConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exportação da memória inteira para texto, com a listagem do programa e a área de dados.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TextConverterBenchmark {
+    // A listagem do programa é indexada por linha, e memória aleatória tem menos linhas que endereços; por isso a
+    // região do programa fica nos primeiros 8 KiB e a de dados cobre o resto da memória.
+    private static final int[] ADDRESSES = {0, 8191, 8192, Cpu.LAST_ADDRESS};
+
+    @Param({"DECIMAL", "HEXADECIMAL"})
+    public String base;
+
+    private Cpu cpu;
+    private File file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        cpu = new Cpu();
+        cpu.setMemory(Programs.randomMemory(42));
+        file = File.createTempFile("cesar", ".txt");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public long writeToFile() {
+        TextConverter.writeToFile(cpu, Base.valueOf(base), file, ADDRESSES);
+        return file.length();
+    }
+}
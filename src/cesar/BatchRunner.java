@@ -0,0 +1,327 @@
+package cesar;
+
+import cesar.models.Cpu;
+import cesar.utils.FileUtils;
+import cesar.utils.MemoryFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Executa vários arquivos .mem em paralelo, cada um no seu próprio Cpu, e escreve uma linha de resultado (CSV ou
+ * JSON, uma linha por programa) assim que cada execução termina.
+ * <p>
+ * As classes de cesar.models não têm estado estático mutável: as tabelas estáticas (valores dos enums, formatos e a
+ * tabela de 256 entradas do OpCode) são preenchidas nos inicializadores estáticos e só lidas depois, e o cache de
+ * decodificação, os blocos e o código gerado pelo JIT pertencem a cada Cpu. Por isso as execuções não disputam nada
+ * entre si.
+ * <p>
+ * Uso: {@code BatchRunner [opções] (arquivo.mem | diretório)...}, com as opções
+ * <ul>
+ * <li>--max=INSTRUÇÕES: limite de instruções por programa;</li>
+ * <li>--timeout=MILISSEGUNDOS: limite de tempo por programa;</li>
+ * <li>--engine=INTERPRETER|THREADED|JIT;</li>
+ * <li>--threads=N: execuções simultâneas (padrão: número de processadores);</li>
+ * <li>--format=csv|json;</li>
+ * <li>--memory=INÍCIO-FIM: faixa de memória (endereços decimais) incluída no resultado como bytes em hexadecimal;
+ * pode ser repetida;</li>
+ * <li>--output=ARQUIVO: destino dos resultados (padrão: saída padrão).</li>
+ * </ul>
+ */
+public class BatchRunner {
+    private static final long DEFAULT_MAX_INSTRUCTIONS = 10_000_000L;
+    private static final long DEFAULT_TIMEOUT_MILLIS = 10_000L;
+    // Instruções por chamada a Cpu.run entre as verificações do tempo limite.
+    private static final long CHUNK_SIZE = 1L << 16;
+
+    private static final String USAGE = "Uso: BatchRunner [--max=INSTRUÇÕES] [--timeout=MILISSEGUNDOS] "
+            + "[--engine=INTERPRETER|THREADED|JIT] [--threads=N] [--format=csv|json] [--memory=INÍCIO-FIM]... "
+            + "[--output=ARQUIVO] (arquivo.mem | diretório)...";
+
+    private static final String LIMIT = "LIMIT";
+    private static final String TIMEOUT = "TIMEOUT";
+    private static final String ERROR = "ERROR";
+
+    private long maxInstructions = DEFAULT_MAX_INSTRUCTIONS;
+    private long timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+    private Cpu.Engine engine = Cpu.Engine.JIT;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private boolean json = false;
+    private final List<int[]> memoryRanges = new ArrayList<>();
+    private final List<File> files = new ArrayList<>();
+    private File output;
+
+    public static void main(final String[] args) {
+        final BatchRunner runner = new BatchRunner();
+        try {
+            runner.parseArguments(args);
+        }
+        catch (final IllegalArgumentException e) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        if (runner.output == null) {
+            // A saída padrão continua aberta: ela é do processo, não do BatchRunner.
+            runner.runAll(System.out);
+            return;
+        }
+        try (PrintStream out = new PrintStream(runner.output, StandardCharsets.UTF_8)) {
+            runner.runAll(out);
+        }
+        catch (final IOException e) {
+            System.err.println("Erro ao escrever os resultados: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private void parseArguments(final String[] args) {
+        for (final String arg : args) {
+            if (arg.startsWith("--max=")) {
+                maxInstructions = Long.parseLong(getValue(arg));
+            }
+            else if (arg.startsWith("--timeout=")) {
+                timeoutMillis = Long.parseLong(getValue(arg));
+            }
+            else if (arg.startsWith("--engine=")) {
+                engine = Cpu.Engine.valueOf(getValue(arg).toUpperCase());
+            }
+            else if (arg.startsWith("--threads=")) {
+                threads = Integer.parseInt(getValue(arg));
+            }
+            else if (arg.startsWith("--format=")) {
+                final String format = getValue(arg);
+                if (!format.equals("csv") && !format.equals("json")) {
+                    throw new IllegalArgumentException(arg);
+                }
+                json = format.equals("json");
+            }
+            else if (arg.startsWith("--memory=")) {
+                memoryRanges.add(parseRange(getValue(arg)));
+            }
+            else if (arg.startsWith("--output=")) {
+                output = new File(getValue(arg));
+            }
+            else if (arg.startsWith("--")) {
+                throw new IllegalArgumentException(arg);
+            }
+            else {
+                addFiles(new File(arg));
+            }
+        }
+        if (files.isEmpty() || maxInstructions < 0 || timeoutMillis <= 0 || threads <= 0) {
+            throw new IllegalArgumentException();
+        }
+    }
+
+    private static String getValue(final String arg) {
+        return arg.substring(arg.indexOf('=') + 1);
+    }
+
+    private static int[] parseRange(final String text) {
+        final int dash = text.indexOf('-');
+        if (dash < 0) {
+            throw new IllegalArgumentException(text);
+        }
+        final int start = Integer.parseInt(text.substring(0, dash));
+        final int end = Integer.parseInt(text.substring(dash + 1));
+        if (!Cpu.isValidAddress(start) || !Cpu.isValidAddress(end) || end < start) {
+            throw new IllegalArgumentException(text);
+        }
+        return new int[]{start, end};
+    }
+
+    private void addFiles(final File file) {
+        if (file.isDirectory()) {
+            final File[] children = file.listFiles(
+                    child -> child.isFile() && FileUtils.getFileExtension(child.getName()).equalsIgnoreCase(
+                            MemoryFile.EXTENSION));
+            if (children != null) {
+                Arrays.sort(children);
+                files.addAll(Arrays.asList(children));
+            }
+        }
+        else {
+            files.add(file);
+        }
+    }
+
+    private void runAll(final PrintStream out) {
+        final ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            final CompletionService<String> completionService = new ExecutorCompletionService<>(pool);
+            for (final File file : files) {
+                completionService.submit(() -> run(file));
+            }
+            if (!json) {
+                out.println(getCsvHeader());
+            }
+            for (int i = 0; i < files.size(); ++i) {
+                out.println(completionService.take().get());
+                out.flush();
+            }
+        }
+        catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        catch (final ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+        finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Executa um programa e devolve a linha do seu resultado. Um erro ao ler ou executar o programa vira uma linha
+     * ERROR, sem interromper os outros programas.
+     */
+    private String run(final File file) {
+        try {
+            return execute(file);
+        }
+        catch (final IOException | RuntimeException e) {
+            return format(file, ERROR, e.getMessage(), null, 0);
+        }
+    }
+
+    private String execute(final File file) throws IOException {
+        final byte[] memory = MemoryFile.read(file);
+        final Cpu cpu = new Cpu(engine);
+        cpu.setMemory(memory);
+        final long deadline = System.nanoTime() + timeoutMillis * 1_000_000L;
+        long instructionCount = 0;
+        String stopReason = LIMIT;
+        while (instructionCount < maxInstructions) {
+            if (System.nanoTime() - deadline > 0) {
+                stopReason = TIMEOUT;
+                break;
+            }
+            final long chunk = Math.min(CHUNK_SIZE, maxInstructions - instructionCount);
+            final Cpu.RunResult result = cpu.run(chunk, Cpu.StopPolicy.NEVER);
+            instructionCount += HeadlessRunner.getCountedInstructions(result);
+            final Cpu.ExecutionResult executionResult = result.getResult();
+            if (executionResult != Cpu.ExecutionResult.OK && executionResult != Cpu.ExecutionResult.NOOP) {
+                stopReason = executionResult.name();
+                break;
+            }
+        }
+        return format(file, stopReason, "", cpu, instructionCount);
+    }
+
+    private String getCsvHeader() {
+        final List<String> columns = new ArrayList<>(List.of("arquivo", "resultado", "erro", "instrucoes", "acessos"));
+        for (int i = 0; i < Cpu.REGISTER_COUNT; ++i) {
+            columns.add("r" + i);
+        }
+        columns.addAll(List.of("n", "z", "v", "c"));
+        for (final int[] range : memoryRanges) {
+            columns.add("memoria_" + range[0] + "_" + range[1]);
+        }
+        columns.add("display");
+        return String.join(",", columns);
+    }
+
+    private String format(final File file, final String stopReason, final String error, final Cpu cpu,
+                          final long instructionCount) {
+        final List<String> names = new ArrayList<>();
+        final List<String> values = new ArrayList<>();
+        final List<Boolean> quoted = new ArrayList<>();
+        add(names, values, quoted, "arquivo", file.getPath(), true);
+        add(names, values, quoted, "resultado", stopReason, true);
+        add(names, values, quoted, "erro", error, true);
+        final boolean ok = cpu != null;
+        add(names, values, quoted, "instrucoes", Long.toString(instructionCount), false);
+        add(names, values, quoted, "acessos", ok ? Integer.toString(cpu.getMemoryAccessCount()) : "", false);
+        for (int i = 0; i < Cpu.REGISTER_COUNT; ++i) {
+            final String value = ok ? Integer.toString(cpu.getRegisterValue(i) & 0xFFFF) : "";
+            add(names, values, quoted, "r" + i, value, false);
+        }
+        add(names, values, quoted, "n", ok ? toBit(cpu.isNegative()) : "", false);
+        add(names, values, quoted, "z", ok ? toBit(cpu.isZero()) : "", false);
+        add(names, values, quoted, "v", ok ? toBit(cpu.isOverflow()) : "", false);
+        add(names, values, quoted, "c", ok ? toBit(cpu.isCarry()) : "", false);
+        for (final int[] range : memoryRanges) {
+            final StringBuilder bytes = new StringBuilder();
+            if (ok) {
+                for (int address = range[0]; address <= range[1]; ++address) {
+                    bytes.append(String.format("%02X", cpu.getByte(address)));
+                }
+            }
+            add(names, values, quoted, "memoria_" + range[0] + "_" + range[1], bytes.toString(), true);
+        }
+        add(names, values, quoted, "display", ok ? HeadlessRunner.getDisplayText(cpu) : "", true);
+        return json ? toJson(names, values, quoted) : toCsv(values, quoted);
+    }
+
+    private static void add(final List<String> names, final List<String> values, final List<Boolean> quoted,
+                            final String name, final String value, final boolean isString) {
+        names.add(name);
+        values.add(value == null ? "" : value);
+        quoted.add(isString);
+    }
+
+    private static String toBit(final boolean value) {
+        return value ? "1" : "0";
+    }
+
+    private static String toCsv(final List<String> values, final List<Boolean> quoted) {
+        final StringBuilder line = new StringBuilder();
+        for (int i = 0; i < values.size(); ++i) {
+            if (i > 0) {
+                line.append(',');
+            }
+            if (quoted.get(i)) {
+                line.append('"').append(values.get(i).replace("\"", "\"\"")).append('"');
+            }
+            else {
+                line.append(values.get(i));
+            }
+        }
+        return line.toString();
+    }
+
+    private static String toJson(final List<String> names, final List<String> values, final List<Boolean> quoted) {
+        final StringBuilder line = new StringBuilder("{");
+        for (int i = 0; i < values.size(); ++i) {
+            if (i > 0) {
+                line.append(',');
+            }
+            line.append('"').append(names.get(i)).append("\":");
+            final String value = values.get(i);
+            if (quoted.get(i)) {
+                appendJsonString(line, value);
+            }
+            else {
+                line.append(value.isEmpty() ? "null" : value);
+            }
+        }
+        return line.append('}').toString();
+    }
+
+    private static void appendJsonString(final StringBuilder builder, final String value) {
+        builder.append('"');
+        for (int i = 0; i < value.length(); ++i) {
+            final char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            }
+            else if (c < ' ') {
+                builder.append(String.format("\\u%04x", (int) c));
+            }
+            else {
+                builder.append(c);
+            }
+        }
+        builder.append('"');
+    }
+}
@@ -0,0 +1,160 @@
+package cesar;
+
+import cesar.models.Cpu;
+import cesar.models.WatchPoint;
+import cesar.utils.MemoryFile;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Executa um arquivo .mem sem interface gráfica e imprime o estado final do processador.
+ * <p>
+ * Não usa nenhuma classe do AWT ou do Swing, então pode rodar em servidores sem display.
+ * <p>
+ * Uso: {@code HeadlessRunner [--max=INSTRUÇÕES] [--engine=INTERPRETER|THREADED|JIT] [--watch=INÍCIO-FIM[:rw]]...
+ * [--profile=ARQUIVO.csv] arquivo.mem}. Cada --watch vigia leituras (r) e/ou escritas (w) na faixa; sem o sufixo, só
+ * escritas. Com --profile, o programa roda com o perfilador habilitado e as contagens são gravadas no arquivo.
+ */
+public class HeadlessRunner {
+    private static final long DEFAULT_MAX_INSTRUCTIONS = 10_000_000L;
+    private static final String MAX_OPTION = "--max=";
+    private static final String ENGINE_OPTION = "--engine=";
+    private static final String WATCH_OPTION = "--watch=";
+    private static final String PROFILE_OPTION = "--profile=";
+    private static final String USAGE = "Uso: HeadlessRunner [--max=INSTRUÇÕES] [--engine=INTERPRETER|THREADED|JIT] "
+            + "[--watch=INÍCIO-FIM[:rw]]... [--profile=ARQUIVO.csv] arquivo.mem";
+
+    public static void main(final String[] args) {
+        long maxInstructions = DEFAULT_MAX_INSTRUCTIONS;
+        Cpu.Engine engine = Cpu.Engine.JIT;
+        String fileName = null;
+        String profileFileName = null;
+        final List<WatchPoint> watchPoints = new ArrayList<>();
+
+        try {
+            for (final String arg : args) {
+                if (arg.startsWith(MAX_OPTION)) {
+                    maxInstructions = Long.parseLong(arg.substring(MAX_OPTION.length()));
+                }
+                else if (arg.startsWith(ENGINE_OPTION)) {
+                    engine = Cpu.Engine.valueOf(arg.substring(ENGINE_OPTION.length()).toUpperCase());
+                }
+                else if (arg.startsWith(WATCH_OPTION)) {
+                    watchPoints.add(parseWatchPoint(arg.substring(WATCH_OPTION.length())));
+                }
+                else if (arg.startsWith(PROFILE_OPTION)) {
+                    profileFileName = arg.substring(PROFILE_OPTION.length());
+                }
+                else if (fileName == null && !arg.startsWith("--")) {
+                    fileName = arg;
+                }
+                else {
+                    throw new IllegalArgumentException(arg);
+                }
+            }
+        }
+        catch (final IllegalArgumentException e) {
+            fileName = null;
+        }
+        if (fileName == null || maxInstructions < 0) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        final byte[] memory;
+        try {
+            memory = MemoryFile.read(new File(fileName));
+        }
+        catch (final IOException e) {
+            System.err.println("Erro ao ler o arquivo: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+
+        final Cpu cpu = new Cpu(engine);
+        cpu.setMemory(memory);
+        watchPoints.forEach(cpu::addWatchPoint);
+        cpu.setProfilingEnabled(profileFileName != null);
+        final Cpu.RunResult result = cpu.run(maxInstructions, Cpu.StopPolicy.NEVER);
+        printState(System.out, cpu, result);
+
+        if (profileFileName != null) {
+            try (BufferedWriter writer = Files.newBufferedWriter(new File(profileFileName).toPath(),
+                    StandardCharsets.US_ASCII)) {
+                cpu.getProfiler().writeCsv(writer);
+            }
+            catch (final IOException e) {
+                System.err.println("Erro ao gravar o perfil: " + e.getMessage());
+                System.exit(1);
+            }
+        }
+    }
+
+    /**
+     * Lê uma faixa no formato INÍCIO-FIM[:rw], com endereços decimais.
+     *
+     * @throws IllegalArgumentException se o texto não estiver nesse formato
+     */
+    private static WatchPoint parseWatchPoint(final String text) {
+        final int separator = text.indexOf(':');
+        final String range = separator < 0 ? text : text.substring(0, separator);
+        final String mode = separator < 0 ? "w" : text.substring(separator + 1);
+        final int dash = range.indexOf('-');
+        if (dash < 0 || !mode.matches("[rw]+")) {
+            throw new IllegalArgumentException(text);
+        }
+        final int start = Integer.parseInt(range.substring(0, dash));
+        final int end = Integer.parseInt(range.substring(dash + 1));
+        return new WatchPoint(start, end, mode.indexOf('r') >= 0, mode.indexOf('w') >= 0);
+    }
+
+    static void printState(final PrintStream out, final Cpu cpu, final Cpu.RunResult result) {
+        out.printf("Resultado: %s%n", result.getResult().name());
+        if (result.getResult() == Cpu.ExecutionResult.WATCH_POINT) {
+            out.println(cpu.getWatchPointHit());
+        }
+        for (int i = 0; i < Cpu.REGISTER_COUNT; ++i) {
+            final int value = cpu.getRegisterValue(i) & 0xFFFF;
+            out.printf("R%d: %5d (%04X)%n", i, value, value);
+        }
+        out.printf("N: %d  Z: %d  V: %d  C: %d%n", toBit(cpu.isNegative()), toBit(cpu.isZero()),
+                toBit(cpu.isOverflow()), toBit(cpu.isCarry()));
+        out.printf("Instruções: %d%n", getCountedInstructions(result));
+        out.printf("Acessos: %d%n", cpu.getMemoryAccessCount());
+        out.printf("Display: [%s]%n", getDisplayText(cpu));
+    }
+
+    /**
+     * Devolve o número de instruções executadas contado como na interface gráfica: o HLT e o fim da memória não
+     * entram na contagem.
+     */
+    static long getCountedInstructions(final Cpu.RunResult result) {
+        final Cpu.ExecutionResult executionResult = result.getResult();
+        final long executed = result.getInstructionCount();
+        final boolean countLast = executionResult != Cpu.ExecutionResult.HALT
+                && executionResult != Cpu.ExecutionResult.END_OF_MEMORY;
+        return countLast ? executed : executed - 1;
+    }
+
+    private static int toBit(final boolean value) {
+        return value ? 1 : 0;
+    }
+
+    static String getDisplayText(final Cpu cpu) {
+        final int size = Cpu.END_DISPLAY_ADDRESS - Cpu.BEGIN_DISPLAY_ADDRESS + 1;
+        final StringBuilder builder = new StringBuilder(size);
+        for (int i = 0; i < size; ++i) {
+            final int value = cpu.getDisplayByte(i) & 0xFF;
+            // Os caracteres sem glifo no display aparecem como espaço, como no TextDisplay.
+            builder.append(value >= ' ' && value <= '~' ? (char) value : ' ');
+        }
+        return builder.toString();
+    }
+}
@@ -4,12 +4,21 @@ import cesar.controllers.ApplicationController;
 import cesar.utils.Defaults;
 
 import javax.swing.*;
+import java.util.Arrays;
 import java.util.Locale;
 
 public class Main {
+    private static final String HEADLESS_OPTION = "--headless";
+
     public static void main(final String[] args) {
         Locale.setDefault(Locale.forLanguageTag("pt_BR"));
 
+        // No modo sem interface nada abaixo pode ser carregado, pois inicializaria o AWT.
+        if (args.length > 0 && args[0].equals(HEADLESS_OPTION)) {
+            HeadlessRunner.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
         try {
             if (Defaults.IS_APPLE) {
                 UIManager.setLookAndFeel(UIManager.getCrossPlatformLookAndFeelClassName());
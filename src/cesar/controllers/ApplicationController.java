@@ -18,6 +18,7 @@ import cesar.views.tables.*;
 import cesar.views.utils.Components;
 import cesar.views.utils.FileLoader;
 import cesar.views.utils.FileSaver;
+import cesar.views.utils.ProfileSaver;
 import cesar.views.windows.*;
 
 import javax.swing.*;
@@ -25,11 +26,19 @@ import java.awt.*;
 import java.awt.event.*;
 
 public final class ApplicationController {
+    // Instruções executadas por chamada a Cpu.run enquanto o programa está rodando. O monitor do controlador fica
+    // com a thread de execução durante um lote inteiro, então o lote precisa ser curto perto de um quadro.
+    private static final int RUN_BATCH_SIZE = 10_000;
+
+    // Quadros por segundo da atualização da interface enquanto o programa roda.
+    private static final int REFRESH_RATE = 30;
+
     private final MainWindow window;
     private final Cpu cpu;
 
     private final FileLoader fileLoader;
     private final FileSaver fileSaver;
+    private final ProfileSaver profileSaver;
 
     private final SaveTextDialog saveTextDialog;
     private final GotoDialog gotoDialog;
@@ -44,6 +53,8 @@ public final class ApplicationController {
     private final JToggleButton hexadecimalButton;
     private final JToggleButton runButton;
     private final JButton nextButton;
+    private final JButton stepBackButton;
+    private final JButton runBackButton;
 
     private final MenuBar menuBar;
     private final StatusBar statusBar;
@@ -60,7 +71,18 @@ public final class ApplicationController {
 
     private Base base;
     private int instructionCount = 0;
-    private boolean running;
+    private volatile boolean running;
+
+    // Se a execução em andamento é um "rodar para trás". Só lido e escrito na thread do Swing.
+    private boolean runningBackward;
+
+    // Thread que está executando o programa, ou null. Uma thread antiga que ainda esteja terminando seu último lote
+    // depois de um novo início não encerra a execução nova.
+    private volatile Thread runningThread;
+
+    // Atualiza a interface a partir de um ExecutionSnapshot enquanto a thread de execução roda.
+    private final Timer refreshTimer;
+    private final ExecutionSnapshot snapshot;
 
     public ApplicationController() {
         window = new MainWindow();
@@ -72,6 +94,7 @@ public final class ApplicationController {
 
         fileLoader = new FileLoader(window);
         fileSaver = new FileSaver(window);
+        profileSaver = new ProfileSaver(window);
         saveTextDialog = new SaveTextDialog(window);
         gotoDialog = new GotoDialog(window);
         zeroMemoryDialog = new ZeroMemoryDialog(window);
@@ -95,10 +118,16 @@ public final class ApplicationController {
         final ButtonPanel buttonPanel = window.getButtonPanel();
         runButton = buttonPanel.getRunButton();
         nextButton = buttonPanel.getNextButton();
+        stepBackButton = buttonPanel.getStepBackButton();
+        runBackButton = buttonPanel.getRunBackButton();
         decimalButton = buttonPanel.getDecimalButton();
         hexadecimalButton = buttonPanel.getHexadecimalButton();
 
         running = false;
+        runningBackward = false;
+        runningThread = null;
+        snapshot = new ExecutionSnapshot();
+        refreshTimer = new Timer(1000 / REFRESH_RATE, e -> refreshWhileRunning());
 
         setBase(Defaults.DEFAULT_BASE);
     }
@@ -118,15 +147,17 @@ public final class ApplicationController {
 
     private void copyMemory() {
         if (copyMemoryDialog.showDialog(base)) {
-            cpu.copyMemory(copyMemoryDialog.getStartAddress(), copyMemoryDialog.getEndAddress(),
-                    copyMemoryDialog.getDstAddress());
+            synchronized (this) {
+                cpu.copyMemory(copyMemoryDialog.getStartAddress(), copyMemoryDialog.getEndAddress(),
+                        copyMemoryDialog.getDstAddress());
+            }
             updateInterface();
         }
     }
 
     private synchronized void executeNextInstruction() {
         final ExecutionResult result = cpu.executeNextInstruction();
-        statusBar.setText(result.toString());
+        statusBar.setText(getResultText(result));
 
         switch (result) {
             case NOOP:
@@ -135,16 +166,97 @@ public final class ApplicationController {
                 updateAfterInstruction();
                 break;
 
+            case WATCH_POINT:
+                // A instrução que disparou o watchpoint foi executada por completo.
+                ++instructionCount;
+                updateAfterInstruction();
+                break;
+
             case HALT:
             case BREAK_POINT:
             case END_OF_MEMORY:
-                if (isRunning() && runButton.isSelected()) {
-                    runButton.doClick();
-                }
                 break;
         }
     }
 
+    /**
+     * Desfaz a última instrução. Ignorado enquanto o programa roda, já que a thread de execução continuaria do ponto
+     * desfeito.
+     */
+    private synchronized void stepBack() {
+        if (isRunning()) {
+            return;
+        }
+        if (!cpu.isHistoryEnabled()) {
+            statusBar.setTempMessage("Habilite o histórico para voltar instruções");
+            return;
+        }
+        if (!cpu.stepBack()) {
+            statusBar.setTempMessage("Não há instruções para voltar");
+            return;
+        }
+        instructionCount = Math.max(0, instructionCount - 1);
+        statusBar.setText(getResultText(ExecutionResult.OK));
+        updateAfterInstruction();
+    }
+
+    /**
+     * Desfaz instruções até um breakpoint ou o início do histórico. Como rodar para a frente, isso acontece em lotes na
+     * thread de execução; apertar de novo enquanto volta interrompe.
+     */
+    private void runBack() {
+        if (isRunning()) {
+            if (runningBackward) {
+                setRunning(false);
+            }
+            return;
+        }
+        if (!cpu.isHistoryEnabled()) {
+            statusBar.setTempMessage("Habilite o histórico para voltar instruções");
+            return;
+        }
+        final boolean canStepBack;
+        synchronized (this) {
+            canStepBack = cpu.canStepBack();
+        }
+        if (!canStepBack) {
+            statusBar.setTempMessage("Não há instruções para voltar");
+            return;
+        }
+        runningBackward = true;
+        startRunning(this::runProgramBackward);
+    }
+
+    /**
+     * Executa um lote na thread de execução. A interface não é tocada aqui: o refreshTimer copia o estado a cada
+     * quadro e finishRunning trata o resultado final na thread do Swing.
+     */
+    private synchronized ExecutionResult executeBatch() {
+        final Cpu.RunResult runResult = cpu.run(RUN_BATCH_SIZE, () -> !isRunning());
+        final ExecutionResult result = runResult.getResult();
+        final long executed = runResult.getInstructionCount();
+        // Como em executeNextInstruction, HLT e o fim da memória não entram na contagem.
+        final boolean countLast = result != ExecutionResult.HALT && result != ExecutionResult.END_OF_MEMORY;
+        instructionCount += (int) (countLast ? executed : executed - 1);
+        return result;
+    }
+
+    /**
+     * Como executeBatch, mas desfaz até RUN_BATCH_SIZE instruções.
+     */
+    private synchronized Cpu.RunResult executeBackBatch() {
+        final Cpu.RunResult runResult = cpu.runBack(RUN_BATCH_SIZE, () -> !isRunning());
+        instructionCount = (int) Math.max(0, instructionCount - runResult.getInstructionCount());
+        return runResult;
+    }
+
+    private String getResultText(final ExecutionResult result) {
+        if (result == ExecutionResult.WATCH_POINT) {
+            return cpu.getWatchPointHit().toString();
+        }
+        return result.toString();
+    }
+
     private boolean showSaveDialog() {
         final int choice =
                 JOptionPane.showConfirmDialog(window, "O conteúdo da memória mudou, deseja salvar o arquivo?");
@@ -173,15 +285,38 @@ public final class ApplicationController {
         }
     }
 
-    private synchronized boolean isRunning() {
+    private boolean isRunning() {
         return running;
     }
 
-    private synchronized void setRunning(final boolean value) {
+    private void setRunning(final boolean value) {
         running = value;
     }
 
+    /**
+     * Indica se a thread de execução ainda existe. Depois de parar a execução ela ainda termina o lote em andamento,
+     * e só então finishRunning limpa runningThread.
+     */
+    private boolean isExecuting() {
+        return runningThread != null;
+    }
+
+    /**
+     * Carregar um arquivo troca a memória inteira e passa por diálogos, então não é feito enquanto a thread de
+     * execução existe.
+     */
+    private boolean canLoadFile() {
+        if (isExecuting()) {
+            statusBar.setTempMessage("Pare a execução antes de carregar um arquivo");
+            return false;
+        }
+        return true;
+    }
+
     private void loadFile() {
+        if (!canLoadFile()) {
+            return;
+        }
         boolean readyToLoad = true;
         if (cpu.hasOriginalMemoryChanged()) {
             readyToLoad = showSaveDialog();
@@ -193,6 +328,9 @@ public final class ApplicationController {
     }
 
     private void loadFilePartially() {
+        if (!canLoadFile()) {
+            return;
+        }
         boolean readyToLoad = true;
         if (cpu.hasOriginalMemoryChanged()) {
             readyToLoad = showSaveDialog();
@@ -210,6 +348,38 @@ public final class ApplicationController {
         fileSaver.saveFile(cpu.getMemory());
     }
 
+    /**
+     * O histórico só grava a partir daqui: as instruções executadas antes de habilitá-lo não podem ser desfeitas.
+     * Sincronizado para que a troca de motor no Cpu não aconteça no meio de um lote da thread de execução.
+     */
+    private synchronized void setHistoryEnabled(final boolean enabled) {
+        cpu.setHistoryEnabled(enabled);
+    }
+
+    /**
+     * Sincronizado pelo mesmo motivo de setHistoryEnabled.
+     */
+    private synchronized void setProfilingEnabled(final boolean enabled) {
+        cpu.setProfilingEnabled(enabled);
+        programTable.repaint();
+    }
+
+    private synchronized void zeroProfile() {
+        if (cpu.getProfiler() != null) {
+            cpu.getProfiler().reset();
+            programTable.repaint();
+        }
+    }
+
+    private void saveProfile() {
+        if (cpu.getProfiler() == null) {
+            statusBar.setTempMessage("O perfilador ainda não foi habilitado");
+        }
+        else if (profileSaver.saveProfile(cpu.getProfiler())) {
+            statusBar.setTempMessage("Perfil salvo", StatusBar.Priority.LOW);
+        }
+    }
+
     private void addEventListeners() {
         //====================================================================
         // MainWindow Events
@@ -232,10 +402,15 @@ public final class ApplicationController {
         //====================================================================
         nextButton.addActionListener(e -> executeNextInstruction());
 
+        stepBackButton.addActionListener(e -> stepBack());
+
+        runBackButton.addActionListener(e -> runBack());
+
         runButton.addActionListener(e -> {
             if (runButton.isSelected()) {
                 if (!isRunning()) {
-                    startRunning();
+                    runningBackward = false;
+                    startRunning(this::runProgram);
                 }
             }
             else {
@@ -260,10 +435,13 @@ public final class ApplicationController {
             @Override
             public void keyTyped(final KeyEvent event) {
                 menuBar.dispatchEvent(event);
-                cpu.setTypedKey((byte) event.getKeyChar());
-                if (cpu.hasMemoryChanged()) {
-                    programTableModel.fireTableRowsUpdated(Cpu.KEYBOARD_STATE_ADDRESS, Cpu.KEYBOARD_INPUT_ADDRESS);
-                    dataTableModel.fireTableRowsUpdated(Cpu.KEYBOARD_STATE_ADDRESS, Cpu.KEYBOARD_INPUT_ADDRESS);
+                synchronized (ApplicationController.this) {
+                    cpu.setTypedKey((byte) event.getKeyChar());
+                }
+                if (!isRunning()) {
+                    // Rodando, o refreshTimer pega a alteração no próximo quadro.
+                    captureSnapshot();
+                    applyMemoryChanges(snapshot);
                 }
                 window.requestFocus();
             }
@@ -293,8 +471,19 @@ public final class ApplicationController {
             @Override
             public void mouseClicked(final MouseEvent event) {
                 final int selectedRow;
-                if (event.getClickCount() == 2 && (selectedRow = programTable.getSelectedRow()) != -1) {
-                    cpu.setRegisterValue(7, Shorts.fromInt(selectedRow));
+                if (programTable.columnAtPoint(event.getPoint()) == ProgramTableModel.BREAK_POINT_COLUMN) {
+                    final int row = programTable.rowAtPoint(event.getPoint());
+                    if (event.getClickCount() == 1 && row != -1) {
+                        synchronized (ApplicationController.this) {
+                            cpu.toggleBreakPoint(row);
+                        }
+                        programTableModel.fireTableRowsUpdated(row, row);
+                    }
+                }
+                else if (event.getClickCount() == 2 && (selectedRow = programTable.getSelectedRow()) != -1) {
+                    synchronized (ApplicationController.this) {
+                        cpu.setRegisterValue(Cpu.PC, Shorts.fromInt(selectedRow));
+                    }
                     updateInterface();
                 }
             }
@@ -302,11 +491,11 @@ public final class ApplicationController {
         programWindow.getValueField().addActionListener(new ValueFieldActionListener(programWindow));
         programWindow.getValueField().addKeyListener(new ValueFieldKeyAdapter(programWindow));
         final ProgramWindow.BreakPointField breakPointField = programWindow.getBreakPointField();
-        breakPointField.addActionListener(e -> cpu.setBreakPoint(breakPointField.getBreakPoint()));
+        breakPointField.addActionListener(e -> setBreakPoint(breakPointField.getBreakPoint()));
         breakPointField.addFocusListener(new FocusAdapter() {
             @Override
             public void focusLost(final FocusEvent event) {
-                cpu.setBreakPoint(breakPointField.getBreakPoint());
+                setBreakPoint(breakPointField.getBreakPoint());
             }
         });
 
@@ -368,18 +557,32 @@ public final class ApplicationController {
 
         menuBar.execNext.addActionListener(e -> nextButton.doClick());
 
+        menuBar.execStepBack.addActionListener(e -> stepBackButton.doClick());
+
+        menuBar.execRunBack.addActionListener(e -> runBackButton.doClick());
+
+        menuBar.execEnableHistory.addActionListener(e -> setHistoryEnabled(menuBar.execEnableHistory.getState()));
+
         menuBar.execUpdateRegisters.addActionListener(e -> {
             if (menuBar.execUpdateRegisters.getState()) {
                 updateAfterInstruction();
             }
         });
 
+        menuBar.execEnableProfiler.addActionListener(e -> setProfilingEnabled(menuBar.execEnableProfiler.getState()));
+
+        menuBar.execZeroProfiler.addActionListener(e -> zeroProfile());
+
+        menuBar.execSaveProfile.addActionListener(e -> saveProfile());
+
         menuBar.execChangeProgramCounter
                 .addActionListener(e -> showRegisterDisplayDialog(registerPanel.getDisplay(Cpu.PC)));
 
         // TODO: Também tem que zerar o IE.
         menuBar.execZeroProgramCounter.addActionListener(e -> {
-            cpu.setRegisterValue(Cpu.PC, Cpu.ZERO_BYTE);
+            synchronized (this) {
+                cpu.setRegisterValue(Cpu.PC, Cpu.ZERO_BYTE);
+            }
             updateInterface();
         });
     }
@@ -389,7 +592,9 @@ public final class ApplicationController {
         if (registerDisplay.showDialog()) {
             short newValue = registerDisplay.getValueAsShort();
             if (newValue != currentValue) {
-                cpu.setRegisterValue(registerDisplay.getNumber(), newValue);
+                synchronized (this) {
+                    cpu.setRegisterValue(registerDisplay.getNumber(), newValue);
+                }
             }
         }
         else if (registerDisplay.hasError()) {
@@ -397,43 +602,135 @@ public final class ApplicationController {
         }
     }
 
-    private synchronized void startRunning() {
+    private void setBreakPoint(final short breakPoint) {
+        synchronized (this) {
+            cpu.setBreakPoint(breakPoint);
+        }
+        programTable.repaint();
+    }
+
+    private void startRunning(final Runnable program) {
         setRunning(true);
-        final Thread runningThread = new Thread(() -> {
-            while (isRunning()) {
-                executeNextInstruction();
+        final Thread thread = new Thread(program, "Cesar");
+        thread.setDaemon(true);
+        runningThread = thread;
+        refreshTimer.start();
+        thread.start();
+    }
+
+    private void runProgram() {
+        final Thread thread = Thread.currentThread();
+        ExecutionResult result = ExecutionResult.OK;
+        while (isRunning() && runningThread == thread) {
+            result = executeBatch();
+            if (result == ExecutionResult.HALT || result == ExecutionResult.BREAK_POINT
+                || result == ExecutionResult.END_OF_MEMORY || result == ExecutionResult.WATCH_POINT) {
+                break;
             }
-            updateInterface();
-        });
-        runningThread.start();
+        }
+        final ExecutionResult finalResult = result;
+        SwingUtilities.invokeLater(() -> finishRunning(thread, finalResult));
+    }
+
+    private void runProgramBackward() {
+        final Thread thread = Thread.currentThread();
+        ExecutionResult result = ExecutionResult.OK;
+        while (isRunning() && runningThread == thread) {
+            final Cpu.RunResult runResult = executeBackBatch();
+            result = runResult.getResult();
+            // Um lote incompleto significa que o histórico acabou ou que a execução foi interrompida.
+            if (result == ExecutionResult.BREAK_POINT || runResult.getInstructionCount() < RUN_BATCH_SIZE) {
+                break;
+            }
+        }
+        final ExecutionResult finalResult = result;
+        SwingUtilities.invokeLater(() -> finishRunning(thread, finalResult));
+    }
+
+    private void finishRunning(final Thread thread, final ExecutionResult result) {
+        if (thread != runningThread) {
+            return;
+        }
+        runningThread = null;
+        refreshTimer.stop();
+        setRunning(false);
+        if (runButton.isSelected()) {
+            runButton.setSelected(false);
+        }
+        statusBar.setText(getResultText(result));
+        updateInterface();
+    }
+
+    /**
+     * Chamado pelo refreshTimer: copia o estado do Cpu entre dois lotes e faz uma única atualização da interface com
+     * tudo o que mudou desde o quadro anterior.
+     */
+    private void refreshWhileRunning() {
+        captureSnapshot();
+        if (menuBar.execUpdateRegisters.getState()) {
+            updateDisplays(snapshot);
+        }
+        applyMemoryChanges(snapshot);
+        if (cpu.isProfilingEnabled()) {
+            programTable.repaint();
+        }
+        programTableModel.setProgramCounterRow(snapshot.programCounter);
+    }
+
+    private void captureSnapshot() {
+        synchronized (this) {
+            snapshot.capture(cpu, instructionCount);
+        }
+    }
+
+    /**
+     * Atualiza nas tabelas só as linhas das faixas que mudaram, e o display só se alguma delas o alcança.
+     */
+    private void applyMemoryChanges(final ExecutionSnapshot state) {
+        final ExecutionSnapshot.Ranges memoryRanges = state.memoryRanges;
+        for (int i = 0; i < memoryRanges.size(); ++i) {
+            dataTableModel.fireTableRowsUpdated(memoryRanges.getStart(i), memoryRanges.getEnd(i));
+        }
+        // As faixas da desmontagem já cobrem os bytes escritos e as instruções que os contêm.
+        final ExecutionSnapshot.Ranges mnemonicRanges = state.mnemonicRanges;
+        for (int i = 0; i < mnemonicRanges.size(); ++i) {
+            programTableModel.fireTableRowsUpdated(mnemonicRanges.getStart(i), mnemonicRanges.getEnd(i));
+        }
+        if (memoryRanges.intersects(Cpu.BEGIN_DISPLAY_ADDRESS, Cpu.END_DISPLAY_ADDRESS)) {
+            textWindow.getDisplay().repaintChangedCharacters();
+        }
     }
 
     private void updateAfterInstruction() {
+        captureSnapshot();
         if (menuBar.execUpdateRegisters.getState()) {
-            updateDisplays();
+            updateDisplays(snapshot);
         }
-        if (cpu.hasMemoryChanged()) {
-            final int start = cpu.getLastChangedAddress();
-            final int end = cpu.getLastChangedMnemonic();
-            programTableModel.fireTableRowsUpdated(start, end);
-            dataTableModel.fireTableRowsUpdated(start, start + 1);
-            textWindow.getDisplay().repaint();
+        applyMemoryChanges(snapshot);
+        if (cpu.isProfilingEnabled()) {
+            programTable.repaint();
         }
         updateProgramCounterRow();
     }
 
     private void updateDisplays() {
+        // As faixas sujas esvaziadas aqui não se perdem: quem chama updateDisplays repinta as janelas inteiras.
+        captureSnapshot();
+        updateDisplays(snapshot);
+    }
+
+    private void updateDisplays(final ExecutionSnapshot state) {
         for (int i = 0; i < Cpu.REGISTER_COUNT; ++i) {
-            registerPanel.getDisplay(i).setValue(cpu.getRegisterValue(i));
+            registerPanel.getDisplay(i).setValue(state.registers[i]);
         }
-        conditionPanel.setNegative(cpu.isNegative());
-        conditionPanel.setZero(cpu.isZero());
-        conditionPanel.setOverflow(cpu.isOverflow());
-        conditionPanel.setCarry(cpu.isCarry());
-        executionPanel.setInstructionCount(instructionCount);
-        executionPanel.setMemoryAccessCount(cpu.getMemoryAccessCount());
-        instructionPanel.setRiText(cpu.getReadInstruction());
-        instructionPanel.setMnemonicText(cpu.getReadMnemonic());
+        conditionPanel.setNegative(state.negative);
+        conditionPanel.setZero(state.zero);
+        conditionPanel.setOverflow(state.overflow);
+        conditionPanel.setCarry(state.carry);
+        executionPanel.setInstructionCount(state.instructionCount);
+        executionPanel.setMemoryAccessCount(state.memoryAccessCount);
+        instructionPanel.setRiText(state.readInstruction);
+        instructionPanel.setMnemonicText(state.readMnemonic);
     }
 
     private void updateInterface() {
@@ -457,7 +754,9 @@ public final class ApplicationController {
 
     private void zeroMemory() {
         if (zeroMemoryDialog.showZeroMemoryDialog()) {
-            cpu.zeroMemory(zeroMemoryDialog.getStartAddress(), zeroMemoryDialog.getEndAddress());
+            synchronized (this) {
+                cpu.zeroMemory(zeroMemoryDialog.getStartAddress(), zeroMemoryDialog.getEndAddress());
+            }
             updateInterface();
         }
     }
@@ -577,13 +876,11 @@ public final class ApplicationController {
                 if (Bytes.isValidByte(newValue)) {
                     sideWindow.setCurrentValue(newValue);
                     int address = sideWindow.getCurrentAddress();
-                    cpu.setByte(address, Bytes.fromInt(newValue));
-                    cpu.updateMnemonics();
-                    dataTableModel.fireTableDataChanged();
-                    programTableModel.fireTableDataChanged();
-                    if (Cpu.isIOAddress(address)) {
-                        textWindow.getDisplay().repaint();
+                    synchronized (ApplicationController.this) {
+                        cpu.setByte(address, Bytes.fromInt(newValue));
                     }
+                    captureSnapshot();
+                    applyMemoryChanges(snapshot);
                     // Seleciona a próxima linha
                     address = Integers.clamp(address + 1);
                     table.setRowSelectionInterval(address, address);
@@ -0,0 +1,92 @@
+package cesar.controllers;
+
+import cesar.models.Cpu;
+
+import java.util.Arrays;
+
+/**
+ * Cópia do estado visível do Cpu, tirada sob o monitor do ApplicationController para que registradores, flags e
+ * contadores sejam consistentes entre si enquanto a thread de execução continua rodando. Também esvazia as faixas
+ * sujas do Cpu, de modo que cada cópia traz o que mudou desde a anterior. É preenchida e lida só na thread do
+ * Swing.
+ */
+final class ExecutionSnapshot {
+    final short[] registers = new short[Cpu.REGISTER_COUNT];
+    boolean negative;
+    boolean zero;
+    boolean overflow;
+    boolean carry;
+    int instructionCount;
+    int memoryAccessCount;
+    String readInstruction;
+    String readMnemonic;
+    int programCounter;
+
+    // Faixas da memória escritas e faixas cujos mnemônicos mudaram desde a cópia anterior.
+    final Ranges memoryRanges = new Ranges();
+    final Ranges mnemonicRanges = new Ranges();
+
+    void capture(final Cpu cpu, final int instructionCount) {
+        for (int i = 0; i < Cpu.REGISTER_COUNT; ++i) {
+            registers[i] = cpu.getRegisterValue(i);
+        }
+        negative = cpu.isNegative();
+        zero = cpu.isZero();
+        overflow = cpu.isOverflow();
+        carry = cpu.isCarry();
+        this.instructionCount = instructionCount;
+        memoryAccessCount = cpu.getMemoryAccessCount();
+        readInstruction = cpu.getReadInstruction();
+        readMnemonic = cpu.getReadMnemonic();
+        programCounter = cpu.getProgramCounter();
+        memoryRanges.clear();
+        mnemonicRanges.clear();
+        cpu.drainDirtyRanges(memoryRanges);
+        cpu.drainChangedMnemonicRanges(mnemonicRanges);
+    }
+
+    /**
+     * Lista de faixas guardada em arranjos de int que só crescem, para não alocar a cada quadro.
+     */
+    static final class Ranges implements Cpu.RangeConsumer {
+        private int[] starts = new int[16];
+        private int[] ends = new int[16];
+        private int count;
+
+        @Override
+        public void accept(final int startAddress, final int endAddress) {
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+                ends = Arrays.copyOf(ends, count * 2);
+            }
+            starts[count] = startAddress;
+            ends[count] = endAddress;
+            ++count;
+        }
+
+        void clear() {
+            count = 0;
+        }
+
+        int size() {
+            return count;
+        }
+
+        int getStart(final int index) {
+            return starts[index];
+        }
+
+        int getEnd(final int index) {
+            return ends[index];
+        }
+
+        boolean intersects(final int startAddress, final int endAddress) {
+            for (int i = 0; i < count; ++i) {
+                if (starts[i] <= endAddress && ends[i] >= startAddress) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
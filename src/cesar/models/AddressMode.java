@@ -9,6 +9,10 @@ public enum AddressMode {
 
     private static final EnumMap<AddressMode, String> FORMAT = new EnumMap<>(AddressMode.class);
 
+    // Textos dos operandos sem índice, um por modo e registrador: OPERAND_STRINGS[modo << 3 | registrador]. Nos
+    // modos indexados a posição fica vazia, porque o texto depende da palavra de índice.
+    private static final String[] OPERAND_STRINGS = new String[ARRAY.length << 3];
+
     static {
         FORMAT.put(REGISTER, "R%d");
         FORMAT.put(REGISTER_POST_INCREMENTED, "(R%d)+");
@@ -18,14 +22,36 @@ public enum AddressMode {
         FORMAT.put(POST_INCREMENTED_INDIRECT, "((R%d)+)");
         FORMAT.put(PRE_DECREMENTED_INDIRECT, "(-(R%d))");
         FORMAT.put(INDEXED_INDIRECT, "(%d(R%d))");
+
+        for (final AddressMode mode : ARRAY) {
+            if (!mode.isIndexed()) {
+                for (int rrr = 0; rrr < Cpu.REGISTER_COUNT; ++rrr) {
+                    OPERAND_STRINGS[mode.ordinal() << 3 | rrr] = String.format(FORMAT.get(mode), rrr).intern();
+                }
+            }
+        }
     }
 
     public String asString(final int rrr) {
-        return String.format(FORMAT.get(this), rrr);
+        return OPERAND_STRINGS[ordinal() << 3 | rrr];
     }
 
     public String asString(final int ddd, final int rrr) {
-        return String.format(FORMAT.get(this), ddd, rrr);
+        return appendTo(new StringBuilder(), ddd, rrr).toString();
+    }
+
+    /**
+     * Acrescenta o texto do operando a builder. O índice ddd só é usado nos modos indexados.
+     */
+    public StringBuilder appendTo(final StringBuilder builder, final int ddd, final int rrr) {
+        switch (this) {
+        case INDEXED:
+            return builder.append(ddd).append("(R").append(rrr).append(')');
+        case INDEXED_INDIRECT:
+            return builder.append("(").append(ddd).append("(R").append(rrr).append("))");
+        default:
+            return builder.append(OPERAND_STRINGS[ordinal() << 3 | rrr]);
+        }
     }
 
     public boolean isIndexed() {
@@ -0,0 +1,67 @@
+package cesar.models;
+
+/**
+ * Sequência de instruções sem desvios, terminada por um desvio, JMP, JSR, RTS, SOB, HLT ou por uma instrução que
+ * escreve no PC.
+ * <p>
+ * O bloco vale enquanto as páginas do {@link DecodeCache} que contêm os bytes das suas instruções estiverem na versão
+ * de quando ele foi montado. Como um bloco tem no máximo ThreadedEngine.MAX_BLOCK_SIZE instruções, e cada uma ocupa
+ * no máximo 6 bytes contando as palavras de índice, ele ocupa no máximo duas páginas.
+ */
+final class BasicBlock {
+    final int[] addresses;
+    final InstructionHandler[] handlers;
+
+    final int firstPage;
+    final int lastPage;
+    final int firstPageVersion;
+    final int lastPageVersion;
+
+    private int breakPointVersion;
+    private boolean containsBreakPoint;
+
+    // Usados pelo JitEngine: quantas vezes o bloco foi executado inteiro e o código compilado, quando houver.
+    int executionCount;
+    CompiledBlock compiledBlock;
+
+    BasicBlock(final DecodeCache decodeCache, final int[] addresses, final int lastCodeAddress,
+               final InstructionHandler[] handlers) {
+        this.addresses = addresses;
+        this.handlers = handlers;
+        firstPage = addresses[0] >>> DecodeCache.PAGE_SHIFT;
+        lastPage = lastCodeAddress >>> DecodeCache.PAGE_SHIFT;
+        firstPageVersion = decodeCache.getPageVersion(firstPage);
+        lastPageVersion = decodeCache.getPageVersion(lastPage);
+        breakPointVersion = -1;
+    }
+
+    /**
+     * Indica se nenhum código nas páginas do bloco foi alterado desde que ele foi montado.
+     */
+    boolean isCurrent(final DecodeCache decodeCache) {
+        return decodeCache.getPageVersion(firstPage) == firstPageVersion
+               && decodeCache.getPageVersion(lastPage) == lastPageVersion;
+    }
+
+    int size() {
+        return handlers.length;
+    }
+
+    /**
+     * Indica se alguma instrução do bloco está sobre um breakpoint. Só é recalculado quando os breakpoints mudam.
+     */
+    boolean containsBreakPoint(final Cpu cpu) {
+        final var version = cpu.getBreakPointVersion();
+        if (version != breakPointVersion) {
+            breakPointVersion = version;
+            containsBreakPoint = false;
+            for (final int address : addresses) {
+                if (cpu.isBreakPoint(address)) {
+                    containsBreakPoint = true;
+                    break;
+                }
+            }
+        }
+        return containsBreakPoint;
+    }
+}
@@ -0,0 +1,1239 @@
+package cesar.models;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.TreeSet;
+
+/**
+ * Traduz um bloco básico para uma classe oculta da JVM que implementa {@link CompiledBlock}.
+ * <p>
+ * O método execute gerado faz o trabalho de cada instrução em bytecode: lê e escreve os registradores direto no
+ * arranjo do Cpu, calcula os endereços dos operandos com o modo e o registrador como constantes, faz a operação da
+ * ULA e registra os flags no ConditionRegister. Só os acessos à memória (readWord, writeWord e readIndexWord) e a
+ * contabilidade da busca (fetchInstruction) chamam o Cpu, porque passam pelos watchpoints, pelo perfilador e pela
+ * invalidação do código decodificado.
+ * <p>
+ * Algumas coisas que o interpretador não sabe são resolvidas na compilação:
+ * <ul>
+ * <li>O registro dos flags de uma instrução é omitido quando uma instrução seguinte do bloco os sobrescreve antes
+ * que alguém possa lê-los.</li>
+ * <li>BEQ, BNE, BMI e BPL testam direto o resultado da última operação da ULA do bloco.</li>
+ * <li>O destino dos desvios é constante, e um bloco que termina desviando para o próprio início vira um laço dentro
+ * do código gerado, limitado por {@link JitContext#limit}.</li>
+ * </ul>
+ * Depois de cada instrução que acessa a memória o código testa se algum watchpoint disparou e, se ela escreveu, se
+ * as páginas de código do bloco mudaram de versão, e nesse caso retorna com a contagem até ali.
+ */
+final class BlockCompiler {
+    private static final int CLASS_FILE_VERSION = 52;
+
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+
+    private static final int ICONST_0 = 0x03;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC_W = 0x13;
+    private static final int ILOAD = 0x15;
+    private static final int ALOAD = 0x19;
+    private static final int ALOAD_0 = 0x2A;
+    private static final int IALOAD = 0x2E;
+    private static final int SALOAD = 0x35;
+    private static final int ISTORE = 0x36;
+    private static final int ASTORE = 0x3A;
+    private static final int SASTORE = 0x56;
+    private static final int POP = 0x57;
+    private static final int IADD = 0x60;
+    private static final int ISUB = 0x64;
+    private static final int INEG = 0x74;
+    private static final int ISHL = 0x78;
+    private static final int ISHR = 0x7A;
+    private static final int IAND = 0x7E;
+    private static final int IOR = 0x80;
+    private static final int IXOR = 0x82;
+    private static final int IINC = 0x84;
+    private static final int I2S = 0x93;
+    private static final int IFEQ = 0x99;
+    private static final int IFNE = 0x9A;
+    private static final int IFLT = 0x9B;
+    private static final int IFGE = 0x9C;
+    private static final int IF_ICMPNE = 0xA0;
+    private static final int IF_ICMPLE = 0xA4;
+    private static final int ARETURN = 0xB0;
+    private static final int RETURN = 0xB1;
+    private static final int GETSTATIC = 0xB2;
+    private static final int GETFIELD = 0xB4;
+    private static final int PUTFIELD = 0xB5;
+    private static final int INVOKEVIRTUAL = 0xB6;
+    private static final int INVOKESPECIAL = 0xB7;
+
+    private static final int SAME_FRAME_MAX_DELTA = 63;
+    private static final int SAME_FRAME_EXTENDED = 251;
+    private static final int FULL_FRAME = 255;
+    private static final int ITEM_INTEGER = 1;
+    private static final int ITEM_OBJECT = 7;
+
+    private static final String CLASS_NAME = "cesar/models/CompiledBlockImpl";
+    private static final String OBJECT = "java/lang/Object";
+    private static final String CPU = "cesar/models/Cpu";
+    private static final String CONTEXT = "cesar/models/JitContext";
+    private static final String DECODE_CACHE = "cesar/models/DecodeCache";
+    private static final String CONDITION_REGISTER = "cesar/models/ConditionRegister";
+    private static final String OPERATION = "cesar/models/ConditionRegister$Operation";
+    private static final String EXECUTION_RESULT = "cesar/models/Cpu$ExecutionResult";
+    private static final String BRANCH_INSTRUCTION = "cesar/models/Cpu$BranchInstruction";
+
+    // Variáveis locais do método execute. Todas são inicializadas no começo, de modo que os quadros da StackMapTable
+    // são todos iguais.
+    private static final int CONTEXT_LOCAL = 1;
+    private static final int CPU_LOCAL = 2;
+    private static final int REGISTERS = 3;
+    private static final int CONDITION_REGISTER_LOCAL = 4;
+    // Instruções executadas nas voltas anteriores do laço.
+    private static final int BASE_COUNT = 5;
+    private static final int LIMIT = 6;
+    private static final int PAGE_VERSIONS = 7;
+    private static final int ADDRESS = 8;
+    private static final int SOURCE = 9;
+    private static final int VALUE = 10;
+    private static final int RESULT = 11;
+    // Resultado da operação da ULA testada pelo desvio do fim do bloco.
+    private static final int FLAG_RESULT = 12;
+    private static final int MAX_LOCALS = 13;
+    private static final int MAX_STACK = 8;
+
+    private static final int WORD_MASK = 0xFFFF;
+
+    private final BasicBlock block;
+    private final DecodedInstruction[] instructions;
+    private final int last;
+    private final ConstantPool pool;
+    private final ByteArrayOutputStream code;
+    private final ArrayList<Label> labels;
+
+    // Instrução cujo resultado o desvio do fim do bloco testa diretamente, ou -1.
+    private int flagSource;
+
+    private BlockCompiler(final BasicBlock block, final DecodedInstruction[] instructions) {
+        this.block = block;
+        this.instructions = instructions;
+        last = instructions.length - 1;
+        pool = new ConstantPool();
+        code = new ByteArrayOutputStream();
+        labels = new ArrayList<>();
+        flagSource = -1;
+    }
+
+    /**
+     * Compila as instruções do bloco, na ordem em que aparecem. O bloco deve estar valendo.
+     *
+     * @throws IllegalStateException se a JVM recusar a classe gerada
+     */
+    static CompiledBlock compile(final BasicBlock block, final DecodedInstruction[] instructions) {
+        final var bytes = new BlockCompiler(block, instructions).generate();
+        try {
+            final var lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+            final var constructor = lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class));
+            return (CompiledBlock) constructor.invoke();
+        }
+        catch (Throwable e) {
+            throw new IllegalStateException("Não foi possível compilar o bloco", e);
+        }
+    }
+
+    private byte[] generate() {
+        final var thisClass = pool.classRef(CLASS_NAME);
+        final var superClass = pool.classRef(OBJECT);
+        final var compiledBlock = pool.classRef("cesar/models/CompiledBlock");
+        final var codeAttribute = pool.utf8("Code");
+        final var stackMapAttribute = pool.utf8("StackMapTable");
+
+        final var constructor = new ByteArrayOutputStream();
+        constructor.write(ALOAD_0);
+        writeInstruction(constructor, INVOKESPECIAL, pool.methodRef(OBJECT, "<init>", "()V"));
+        constructor.write(RETURN);
+
+        final var execute = generateExecute();
+        final var stackMap = generateStackMap();
+
+        final var initName = pool.utf8("<init>");
+        final var initDescriptor = pool.utf8("()V");
+        final var executeName = pool.utf8("execute");
+        final var executeDescriptor = pool.utf8("(L" + CONTEXT + ";)L" + EXECUTION_RESULT + ";");
+
+        final var bytes = new ByteArrayOutputStream();
+        try (final var out = new DataOutputStream(bytes)) {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(CLASS_FILE_VERSION);
+            pool.writeTo(out);
+            out.writeShort(ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(1);
+            out.writeShort(compiledBlock);
+            // Campos
+            out.writeShort(0);
+            // Métodos
+            out.writeShort(2);
+            writeMethod(out, initName, initDescriptor, codeAttribute, 1, 1, constructor.toByteArray(), -1, null);
+            writeMethod(out, executeName, executeDescriptor, codeAttribute, MAX_STACK, MAX_LOCALS, execute,
+                stackMapAttribute, stackMap);
+            // Atributos da classe
+            out.writeShort(0);
+        }
+        catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private byte[] generateExecute() {
+        findFlagSource();
+
+        loadLocal(ALOAD, CONTEXT_LOCAL);
+        writeInstruction(code, GETFIELD, pool.fieldRef(CONTEXT, "cpu", "L" + CPU + ";"));
+        storeLocal(ASTORE, CPU_LOCAL);
+        loadLocal(ALOAD, CPU_LOCAL);
+        writeInstruction(code, GETFIELD, pool.fieldRef(CPU, "registers", "[S"));
+        storeLocal(ASTORE, REGISTERS);
+        loadLocal(ALOAD, CPU_LOCAL);
+        writeInstruction(code, GETFIELD, pool.fieldRef(CPU, "conditionRegister", "L" + CONDITION_REGISTER + ";"));
+        storeLocal(ASTORE, CONDITION_REGISTER_LOCAL);
+        loadLocal(ALOAD, CONTEXT_LOCAL);
+        writeInstruction(code, GETFIELD, pool.fieldRef(CONTEXT, "limit", "I"));
+        storeLocal(ISTORE, LIMIT);
+        loadLocal(ALOAD, CPU_LOCAL);
+        writeInstruction(code, GETFIELD, pool.fieldRef(CPU, "decodeCache", "L" + DECODE_CACHE + ";"));
+        writeInstruction(code, GETFIELD, pool.fieldRef(DECODE_CACHE, "pageVersions", "[I"));
+        storeLocal(ASTORE, PAGE_VERSIONS);
+        for (final int local : new int[] { BASE_COUNT, ADDRESS, SOURCE, VALUE, RESULT, FLAG_RESULT }) {
+            code.write(ICONST_0);
+            storeLocal(ISTORE, local);
+        }
+
+        final var start = new Label();
+        mark(start);
+        final var exits = new Label[instructions.length];
+        for (int i = 0; i < last; ++i) {
+            emitInstruction(i);
+            if (accessesMemory(instructions[i])) {
+                exits[i] = new Label();
+                emitExitChecks(instructions[i], exits[i]);
+            }
+        }
+        emitLastInstruction(start);
+
+        for (int i = 0; i < last; ++i) {
+            if (exits[i] != null) {
+                mark(exits[i]);
+                emitReturn(i + 1, Cpu.ExecutionResult.OK);
+            }
+        }
+
+        final var bytes = code.toByteArray();
+        for (final var label : labels) {
+            for (final int jump : label.jumps) {
+                final var offset = label.position - jump;
+                bytes[jump + 1] = (byte) (offset >> 8);
+                bytes[jump + 2] = (byte) offset;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Testa, depois de uma instrução que acessou a memória, se ela disparou um watchpoint e, se escreveu, se mudou o
+     * código das páginas do bloco.
+     */
+    private void emitExitChecks(final DecodedInstruction decoded, final Label exit) {
+        loadLocal(ALOAD, CPU_LOCAL);
+        writeInstruction(code, INVOKEVIRTUAL, pool.methodRef(CPU, "isWatchPointTriggered", "()Z"));
+        jump(IFNE, exit);
+        if (writesMemory(decoded)) {
+            emitPageCheck(block.firstPage, block.firstPageVersion, exit);
+            if (block.lastPage != block.firstPage) {
+                emitPageCheck(block.lastPage, block.lastPageVersion, exit);
+            }
+        }
+    }
+
+    private void emitPageCheck(final int page, final int version, final Label exit) {
+        loadLocal(ALOAD, PAGE_VERSIONS);
+        pushInt(page);
+        code.write(IALOAD);
+        pushInt(version);
+        jump(IF_ICMPNE, exit);
+    }
+
+    /**
+     * Grava a quantidade executada no contexto e retorna o resultado.
+     */
+    private void emitReturn(final int instructionCount, final Cpu.ExecutionResult result) {
+        loadLocal(ALOAD, CONTEXT_LOCAL);
+        loadLocal(ILOAD, BASE_COUNT);
+        if (instructionCount != 0) {
+            pushInt(instructionCount);
+            code.write(IADD);
+        }
+        writeInstruction(code, PUTFIELD, pool.fieldRef(CONTEXT, "executedInstructions", "I"));
+        writeInstruction(code, GETSTATIC, pool.fieldRef(EXECUTION_RESULT, result.name(), "L" + EXECUTION_RESULT + ";"));
+        code.write(ARETURN);
+    }
+
+    private void emitFetch(final DecodedInstruction decoded) {
+        loadLocal(ALOAD, CPU_LOCAL);
+        pushInt(decoded.address);
+        pushInt(decoded.firstByte);
+        pushInt(decoded.secondByte);
+        pushInt(decoded.fetchedByteCount);
+        writeInstruction(code, INVOKEVIRTUAL, pool.methodRef(CPU, "fetchInstruction", "(IBBI)V"));
+    }
+
+    /**
+     * Instrução do meio do bloco: segue sempre para a próxima.
+     */
+    private void emitInstruction(final int index) {
+        emitFetch(instructions[index]);
+        emitBody(index);
+    }
+
+    /**
+     * Execução de uma instrução que não desvia: NOP, CCC, SCC ou operação da ULA.
+     */
+    private void emitBody(final int index) {
+        final var decoded = instructions[index];
+        switch (decoded.instruction) {
+        case CCC:
+        case SCC:
+            loadLocal(ALOAD, CONDITION_REGISTER_LOCAL);
+            pushInt(decoded.firstByte & 0x0F);
+            writeInstruction(code, INVOKEVIRTUAL, pool.methodRef(CONDITION_REGISTER,
+                decoded.instruction == Cpu.Instruction.CCC ? "ccc" : "scc", "(I)V"));
+            break;
+        case ONE_OPERAND_INSTRUCTION:
+            emitOneOperand(index);
+            break;
+        case MOV:
+        case ADD:
+        case SUB:
+        case CMP:
+        case AND:
+        case OR:
+            emitTwoOperand(index);
+            break;
+        case NOP:
+        default:
+            break;
+        }
+    }
+
+    /**
+     * Última instrução do bloco, com o retorno. Se for um desvio de volta ao início do bloco, desvia para start
+     * enquanto couber mais uma volta no limite.
+     */
+    private void emitLastInstruction(final Label start) {
+        final var decoded = instructions[last];
+        final var size = instructions.length;
+        emitFetch(decoded);
+        if (decoded.endOfMemory) {
+            loadLocal(ALOAD, CPU_LOCAL);
+            writeInstruction(code, INVOKEVIRTUAL, pool.methodRef(CPU, "endOfMemory", "()L" + EXECUTION_RESULT + ";"));
+            code.write(POP);
+            emitReturn(size, Cpu.ExecutionResult.END_OF_MEMORY);
+            return;
+        }
+
+        switch (decoded.instruction) {
+        case CCC:
+        case SCC:
+        case ONE_OPERAND_INSTRUCTION:
+        case MOV:
+        case ADD:
+        case SUB:
+        case CMP:
+        case AND:
+        case OR:
+            emitBody(last);
+            emitReturn(size, Cpu.ExecutionResult.OK);
+            break;
+
+        case CONDITIONAL_BRANCH: {
+            final var notTaken = new Label();
+            final var always = decoded.branchInstruction == Cpu.BranchInstruction.BR;
+            if (!always) {
+                emitBranchTest(decoded.branchInstruction, notTaken);
+            }
+            emitTakenJump(decoded.nextAddress + decoded.offset, start);
+            if (!always || !isLoop(decoded.nextAddress + decoded.offset)) {
+                if (!always) {
+                    mark(notTaken);
+                }
+                emitReturn(size, Cpu.ExecutionResult.OK);
+            }
+            break;
+        }
+
+        case SOB: {
+            final var notTaken = new Label();
+            final var register = decoded.register;
+            addToRegister(register, -1);
+            loadRegister(register);
+            jump(IFEQ, notTaken);
+            if (register == Cpu.PC) {
+                // O PC acabou de ser decrementado, então o destino não é constante.
+                addToRegister(Cpu.PC, -decoded.offset);
+            }
+            else {
+                emitTakenJump(decoded.nextAddress - decoded.offset, start);
+            }
+            mark(notTaken);
+            emitReturn(size, Cpu.ExecutionResult.OK);
+            break;
+        }
+
+        case JMP:
+            if (decoded.dstMode == AddressMode.REGISTER) {
+                emitReturn(size, Cpu.ExecutionResult.NOOP);
+                break;
+            }
+            emitAddress(decoded.dstMode, decoded.dstRegister);
+            beginStoreRegister(Cpu.PC);
+            loadLocal(ILOAD, ADDRESS);
+            code.write(SASTORE);
+            emitReturn(size, Cpu.ExecutionResult.OK);
+            break;
+
+        case JSR:
+            if (decoded.dstMode == AddressMode.REGISTER) {
+                emitReturn(size, Cpu.ExecutionResult.NOOP);
+                break;
+            }
+            emitJumpToSubRoutine(decoded);
+            emitReturn(size, Cpu.ExecutionResult.OK);
+            break;
+
+        case RETURN_INSTRUCTION:
+            // RTI não faz nada.
+            if (decoded.firstByte != (byte) 0b0111_1000) {
+                emitReturnFromSubRoutine(decoded.register);
+            }
+            emitReturn(size, Cpu.ExecutionResult.OK);
+            break;
+
+        case HLT:
+            emitReturn(size, Cpu.ExecutionResult.HALT);
+            break;
+
+        case NOP:
+        default:
+            emitReturn(size, Cpu.ExecutionResult.NOOP);
+            break;
+        }
+    }
+
+    private boolean isLoop(final int target) {
+        return (target & Cpu.LAST_ADDRESS) == instructions[0].address;
+    }
+
+    /**
+     * Escreve o destino no PC e, se ele for o início do bloco, volta para start enquanto couber mais uma volta.
+     */
+    private void emitTakenJump(final int target, final Label start) {
+        beginStoreRegister(Cpu.PC);
+        pushInt((short) target);
+        code.write(SASTORE);
+        if (isLoop(target)) {
+            final var size = instructions.length;
+            code.write(IINC);
+            code.write(BASE_COUNT);
+            code.write(size);
+            loadLocal(ILOAD, BASE_COUNT);
+            pushInt(size);
+            code.write(IADD);
+            loadLocal(ILOAD, LIMIT);
+            jump(IF_ICMPLE, start);
+            emitReturn(0, Cpu.ExecutionResult.OK);
+        }
+    }
+
+    /**
+     * Desvia para notTaken se o desvio condicional não for tomado.
+     */
+    private void emitBranchTest(final Cpu.BranchInstruction branch, final Label notTaken) {
+        if (flagSource >= 0) {
+            loadLocal(ILOAD, FLAG_RESULT);
+            switch (branch) {
+            case BEQ:
+                jump(IFNE, notTaken);
+                return;
+            case BNE:
+                jump(IFEQ, notTaken);
+                return;
+            case BMI:
+                jump(IFGE, notTaken);
+                return;
+            case BPL:
+            default:
+                jump(IFLT, notTaken);
+                return;
+            }
+        }
+        loadLocal(ALOAD, CONDITION_REGISTER_LOCAL);
+        writeInstruction(code, GETSTATIC,
+            pool.fieldRef(BRANCH_INSTRUCTION, branch.name(), "L" + BRANCH_INSTRUCTION + ";"));
+        writeInstruction(code, INVOKEVIRTUAL,
+            pool.methodRef(CONDITION_REGISTER, "isBranchTaken", "(L" + BRANCH_INSTRUCTION + ";)Z"));
+        jump(IFEQ, notTaken);
+    }
+
+    /**
+     * Procura a operação da ULA que dá os flags ao desvio do fim do bloco, quando o desvio só depende de N ou de Z,
+     * que saem direto do resultado.
+     */
+    private void findFlagSource() {
+        final var decoded = instructions[last];
+        if (decoded.endOfMemory || decoded.instruction != Cpu.Instruction.CONDITIONAL_BRANCH) {
+            return;
+        }
+        switch (decoded.branchInstruction) {
+        case BEQ:
+        case BNE:
+        case BMI:
+        case BPL:
+            break;
+        default:
+            return;
+        }
+        for (int i = last - 1; i >= 0; --i) {
+            if (readsAllFlags(instructions[i])) {
+                return;
+            }
+            if (recordedOperation(instructions[i]) != null) {
+                flagSource = i;
+                return;
+            }
+        }
+    }
+
+    private void emitJumpToSubRoutine(final DecodedInstruction decoded) {
+        final var register = decoded.register;
+        emitAddress(decoded.dstMode, decoded.dstRegister);
+        // stackPush(registers[register])
+        loadRegister(register);
+        storeLocal(ISTORE, VALUE);
+        addToRegister(Cpu.SP, -2);
+        loadLocal(ALOAD, CPU_LOCAL);
+        loadRegister(Cpu.SP);
+        pushInt(WORD_MASK);
+        code.write(IAND);
+        loadLocal(ILOAD, VALUE);
+        writeInstruction(code, INVOKEVIRTUAL, pool.methodRef(CPU, "writeWord", "(IS)V"));
+        if (register != Cpu.PC) {
+            beginStoreRegister(register);
+            loadRegister(Cpu.PC);
+            code.write(SASTORE);
+        }
+        beginStoreRegister(Cpu.PC);
+        loadLocal(ILOAD, ADDRESS);
+        code.write(SASTORE);
+    }
+
+    private void emitReturnFromSubRoutine(final int register) {
+        if (register != Cpu.PC) {
+            beginStoreRegister(Cpu.PC);
+            loadRegister(register);
+            code.write(SASTORE);
+        }
+        // stackPop()
+        loadLocal(ALOAD, CPU_LOCAL);
+        loadRegister(Cpu.SP);
+        writeInstruction(code, INVOKEVIRTUAL, pool.methodRef(CPU, "readWord", "(I)S"));
+        storeLocal(ISTORE, VALUE);
+        addToRegister(Cpu.SP, 2);
+        beginStoreRegister(register);
+        loadLocal(ILOAD, VALUE);
+        code.write(SASTORE);
+    }
+
+    private void emitOneOperand(final int index) {
+        final var decoded = instructions[index];
+        final var instruction = decoded.oneOperandInstruction;
+        final var recordFlags = isFlagRecordLive(index);
+        emitOperand(decoded.dstMode, decoded.dstRegister, VALUE);
+
+        switch (instruction) {
+        case CLR:
+            code.write(ICONST_0);
+            storeLocal(ISTORE, RESULT);
+            break;
+        case NOT:
+            loadLocal(ILOAD, VALUE);
+            pushInt(-1);
+            code.write(IXOR);
+            storeShort(RESULT);
+            break;
+        case INC:
+            loadLocal(ILOAD, VALUE);
+            pushInt(1);
+            code.write(IADD);
+            storeShort(RESULT);
+            break;
+        case DEC:
+            loadLocal(ILOAD, VALUE);
+            pushInt(1);
+            code.write(ISUB);
+            storeShort(RESULT);
+            break;
+        case NEG:
+            loadLocal(ILOAD, VALUE);
+            code.write(INEG);
+            storeShort(RESULT);
+            break;
+        case ROR:
+            // (value & 1) << 15 | clamp(value) >> 1
+            loadLocal(ILOAD, VALUE);
+            pushInt(1);
+            code.write(IAND);
+            pushInt(15);
+            code.write(ISHL);
+            loadLocal(ILOAD, VALUE);
+            pushInt(WORD_MASK);
+            code.write(IAND);
+            pushInt(1);
+            code.write(ISHR);
+            code.write(IOR);
+            storeShort(RESULT);
+            break;
+        case ROL:
+            // clamp(value) << 1 | (value & 0x8000) >> 15
+            loadLocal(ILOAD, VALUE);
+            pushInt(WORD_MASK);
+            code.write(IAND);
+            pushInt(1);
+            code.write(ISHL);
+            loadLocal(ILOAD, VALUE);
+            pushInt(0x8000);
+            code.write(IAND);
+            pushInt(15);
+            code.write(ISHR);
+            code.write(IOR);
+            storeShort(RESULT);
+            break;
+        case ASR:
+            // value & 0x8000 | 0x7FFF & value >> 1
+            loadLocal(ILOAD, VALUE);
+            pushInt(0x8000);
+            code.write(IAND);
+            pushInt(0x7FFF);
+            loadLocal(ILOAD, VALUE);
+            pushInt(1);
+            code.write(ISHR);
+            code.write(IAND);
+            code.write(IOR);
+            storeShort(RESULT);
+            break;
+        case ASL:
+            loadLocal(ILOAD, VALUE);
+            pushInt(1);
+            code.write(ISHL);
+            pushInt(0xFFFE);
+            code.write(IAND);
+            storeShort(RESULT);
+            break;
+        case ADC:
+        case SBC:
+            // O carry é lido em SOURCE.
+            loadLocal(ALOAD, CONDITION_REGISTER_LOCAL);
+            writeInstruction(code, INVOKEVIRTUAL, pool.methodRef(CONDITION_REGISTER, "isCarry", "()Z"));
+            storeLocal(ISTORE, SOURCE);
+            loadLocal(ILOAD, VALUE);
+            loadLocal(ILOAD, SOURCE);
+            code.write(instruction == Cpu.OneOperandInstruction.ADC ? IADD : ISUB);
+            storeShort(RESULT);
+            break;
+        case TST:
+        default:
+            break;
+        }
+
+        if (recordFlags) {
+            final var operation = recordedOperation(decoded);
+            switch (instruction) {
+            case INC:
+                emitRecord(index, operation, VALUE, -1, 1, RESULT);
+                break;
+            case DEC:
+                emitRecord(index, operation, VALUE, -1, -1, RESULT);
+                break;
+            case ADC:
+            case SBC:
+                emitRecord(index, operation, VALUE, SOURCE, 0, RESULT);
+                break;
+            case TST:
+                emitRecord(index, operation, VALUE, -1, 0, VALUE);
+                break;
+            default:
+                emitRecord(index, operation, VALUE, -1, 0, RESULT);
+                break;
+            }
+        }
+
+        if (instruction != Cpu.OneOperandInstruction.TST) {
+            emitStoreOperand(decoded.dstMode, decoded.dstRegister);
+        }
+    }
+
+    private void emitTwoOperand(final int index) {
+        final var decoded = instructions[index];
+        final var recordFlags = isFlagRecordLive(index);
+        final var operation = recordedOperation(decoded);
+        emitOperand(decoded.srcMode, decoded.srcRegister, SOURCE);
+        emitOperand(decoded.dstMode, decoded.dstRegister, VALUE);
+
+        switch (decoded.instruction) {
+        case MOV:
+            loadLocal(ILOAD, SOURCE);
+            storeLocal(ISTORE, RESULT);
+            if (recordFlags) {
+                emitRecord(index, operation, SOURCE, VALUE, 0, RESULT);
+            }
+            break;
+        case ADD:
+        case SUB:
+            loadLocal(ILOAD, VALUE);
+            loadLocal(ILOAD, SOURCE);
+            code.write(decoded.instruction == Cpu.Instruction.ADD ? IADD : ISUB);
+            storeShort(RESULT);
+            if (recordFlags) {
+                emitRecord(index, operation, VALUE, SOURCE, 0, RESULT);
+            }
+            break;
+        case CMP:
+            if (recordFlags) {
+                loadLocal(ILOAD, SOURCE);
+                loadLocal(ILOAD, VALUE);
+                code.write(ISUB);
+                storeShort(RESULT);
+                emitRecord(index, operation, SOURCE, VALUE, 0, RESULT);
+            }
+            // O destino é escrito de volta sem mudar.
+            loadLocal(ILOAD, VALUE);
+            storeLocal(ISTORE, RESULT);
+            break;
+        case AND:
+        case OR:
+        default:
+            loadLocal(ILOAD, VALUE);
+            loadLocal(ILOAD, SOURCE);
+            code.write(decoded.instruction == Cpu.Instruction.AND ? IAND : IOR);
+            storeShort(RESULT);
+            if (recordFlags) {
+                emitRecord(index, operation, SOURCE, VALUE, 0, RESULT);
+            }
+            break;
+        }
+
+        emitStoreOperand(decoded.dstMode, decoded.dstRegister);
+    }
+
+    /**
+     * Chama conditionRegister.record. O segundo operando vem de secondLocal ou, se ele for negativo, é a constante
+     * second.
+     */
+    private void emitRecord(final int index, final ConditionRegister.Operation operation, final int firstLocal,
+                            final int secondLocal, final int second, final int resultLocal) {
+        loadLocal(ALOAD, CONDITION_REGISTER_LOCAL);
+        writeInstruction(code, GETSTATIC, pool.fieldRef(OPERATION, operation.name(), "L" + OPERATION + ";"));
+        loadLocal(ILOAD, firstLocal);
+        if (secondLocal >= 0) {
+            loadLocal(ILOAD, secondLocal);
+        }
+        else {
+            pushInt(second);
+        }
+        loadLocal(ILOAD, resultLocal);
+        writeInstruction(code, INVOKEVIRTUAL,
+            pool.methodRef(CONDITION_REGISTER, "record", "(L" + OPERATION + ";SSS)V"));
+        if (index == flagSource) {
+            loadLocal(ILOAD, resultLocal);
+            storeLocal(ISTORE, FLAG_RESULT);
+        }
+    }
+
+    /**
+     * Lê o operando em local. Fora do modo registrador, o endereço fica em ADDRESS para a escrita do resultado.
+     */
+    private void emitOperand(final AddressMode mode, final int register, final int local) {
+        if (mode == AddressMode.REGISTER) {
+            loadRegister(register);
+        }
+        else {
+            emitAddress(mode, register);
+            loadLocal(ALOAD, CPU_LOCAL);
+            loadLocal(ILOAD, ADDRESS);
+            writeInstruction(code, INVOKEVIRTUAL, pool.methodRef(CPU, "readWord", "(I)S"));
+        }
+        storeLocal(ISTORE, local);
+    }
+
+    private void emitStoreOperand(final AddressMode mode, final int register) {
+        if (mode == AddressMode.REGISTER) {
+            beginStoreRegister(register);
+            loadLocal(ILOAD, RESULT);
+            code.write(SASTORE);
+        }
+        else {
+            loadLocal(ALOAD, CPU_LOCAL);
+            loadLocal(ILOAD, ADDRESS);
+            loadLocal(ILOAD, RESULT);
+            writeInstruction(code, INVOKEVIRTUAL, pool.methodRef(CPU, "writeWord", "(IS)V"));
+        }
+    }
+
+    /**
+     * Calcula o endereço efetivo de um operando em ADDRESS, como Cpu.getAddress.
+     */
+    private void emitAddress(final AddressMode mode, final int register) {
+        switch (mode) {
+        case REGISTER_POST_INCREMENTED:
+            loadRegister(register);
+            storeAddress();
+            addToRegister(register, 2);
+            break;
+        case REGISTER_PRE_DECREMENTED:
+            addToRegister(register, -2);
+            loadRegister(register);
+            storeAddress();
+            break;
+        case INDEXED:
+            loadLocal(ALOAD, CPU_LOCAL);
+            writeInstruction(code, INVOKEVIRTUAL, pool.methodRef(CPU, "readIndexWord", "()S"));
+            loadRegister(register);
+            code.write(IADD);
+            storeAddress();
+            break;
+        case POST_INCREMENTED_INDIRECT:
+            loadRegister(register);
+            storeAddress();
+            addToRegister(register, 2);
+            readAddress();
+            break;
+        case PRE_DECREMENTED_INDIRECT:
+            addToRegister(register, -2);
+            loadRegister(register);
+            storeAddress();
+            readAddress();
+            break;
+        case INDEXED_INDIRECT:
+            loadLocal(ALOAD, CPU_LOCAL);
+            writeInstruction(code, INVOKEVIRTUAL, pool.methodRef(CPU, "readIndexWord", "()S"));
+            loadRegister(register);
+            code.write(IADD);
+            storeAddress();
+            readAddress();
+            break;
+        case REGISTER_INDIRECT:
+        default:
+            loadRegister(register);
+            storeAddress();
+            break;
+        }
+    }
+
+    /**
+     * ADDRESS = valor no topo da pilha & 0xFFFF.
+     */
+    private void storeAddress() {
+        pushInt(WORD_MASK);
+        code.write(IAND);
+        storeLocal(ISTORE, ADDRESS);
+    }
+
+    /**
+     * ADDRESS = readWord(ADDRESS) & 0xFFFF, o segundo passo dos modos indiretos.
+     */
+    private void readAddress() {
+        loadLocal(ALOAD, CPU_LOCAL);
+        loadLocal(ILOAD, ADDRESS);
+        writeInstruction(code, INVOKEVIRTUAL, pool.methodRef(CPU, "readWord", "(I)S"));
+        storeAddress();
+    }
+
+    private void loadRegister(final int register) {
+        loadLocal(ALOAD, REGISTERS);
+        pushInt(register);
+        code.write(SALOAD);
+    }
+
+    /**
+     * Empilha o arranjo e o índice de registers[register]; o valor vem em seguida, e um SASTORE completa a escrita.
+     */
+    private void beginStoreRegister(final int register) {
+        loadLocal(ALOAD, REGISTERS);
+        pushInt(register);
+    }
+
+    private void addToRegister(final int register, final int delta) {
+        beginStoreRegister(register);
+        loadRegister(register);
+        pushInt(delta);
+        code.write(IADD);
+        code.write(SASTORE);
+    }
+
+    private void storeShort(final int local) {
+        code.write(I2S);
+        storeLocal(ISTORE, local);
+    }
+
+    /**
+     * Indica se os flags registrados pela instrução podem ser lidos antes de serem sobrescritos: pelo desvio, CCC, SCC
+     * ou operação seguinte que os lê, por quem executar depois do bloco ou por quem examinar o Cpu quando o bloco
+     * parar num watchpoint ou numa escrita sobre o código.
+     */
+    private boolean isFlagRecordLive(final int index) {
+        if (index == last || accessesMemory(instructions[index])) {
+            return true;
+        }
+        final var operation = recordedOperation(instructions[index]);
+        for (int i = index + 1; i < instructions.length; ++i) {
+            final var next = instructions[i];
+            if (readsAllFlags(next)) {
+                return true;
+            }
+            if (recordedOperation(next) != null) {
+                // Quem só lê o carry vê o mesmo carry com ou sem uma operação lógica antes, que o preserva.
+                return readsCarry(next) && operation != ConditionRegister.Operation.LOGIC;
+            }
+            if (i < last && accessesMemory(next)) {
+                return true;
+            }
+        }
+        return true;
+    }
+
+    private static boolean readsAllFlags(final DecodedInstruction decoded) {
+        if (decoded.endOfMemory) {
+            return false;
+        }
+        switch (decoded.instruction) {
+        case CCC:
+        case SCC:
+        case CONDITIONAL_BRANCH:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    private static boolean readsCarry(final DecodedInstruction decoded) {
+        if (decoded.instruction == Cpu.Instruction.ONE_OPERAND_INSTRUCTION
+            && (decoded.oneOperandInstruction == Cpu.OneOperandInstruction.ADC
+                || decoded.oneOperandInstruction == Cpu.OneOperandInstruction.SBC)) {
+            return true;
+        }
+        return recordedOperation(decoded).readsCarry;
+    }
+
+    /**
+     * Operação que a instrução registra no ConditionRegister, ou null se ela não mexe nos flags por record.
+     */
+    private static ConditionRegister.Operation recordedOperation(final DecodedInstruction decoded) {
+        if (decoded.endOfMemory) {
+            return null;
+        }
+        switch (decoded.instruction) {
+        case ONE_OPERAND_INSTRUCTION:
+            switch (decoded.oneOperandInstruction) {
+            case CLR:
+            case TST:
+                return ConditionRegister.Operation.CLEAR;
+            case NOT:
+                return ConditionRegister.Operation.NOT;
+            case INC:
+            case ADC:
+                return ConditionRegister.Operation.ADD;
+            case DEC:
+                return ConditionRegister.Operation.DEC;
+            case NEG:
+                return ConditionRegister.Operation.NEG;
+            case ROR:
+            case ASR:
+                return ConditionRegister.Operation.SHIFT_RIGHT;
+            case ROL:
+            case ASL:
+                return ConditionRegister.Operation.SHIFT_LEFT;
+            case SBC:
+            default:
+                return ConditionRegister.Operation.SUB;
+            }
+        case MOV:
+        case AND:
+        case OR:
+            return ConditionRegister.Operation.LOGIC;
+        case ADD:
+            return ConditionRegister.Operation.ADD;
+        case SUB:
+        case CMP:
+            return ConditionRegister.Operation.SUB;
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * Indica se a instrução lê ou escreve a memória além da própria busca. Só vale para instruções do meio do bloco.
+     */
+    private static boolean accessesMemory(final DecodedInstruction decoded) {
+        switch (decoded.instruction) {
+        case ONE_OPERAND_INSTRUCTION:
+            return decoded.dstMode != AddressMode.REGISTER;
+        case MOV:
+        case ADD:
+        case SUB:
+        case CMP:
+        case AND:
+        case OR:
+            return decoded.srcMode != AddressMode.REGISTER || decoded.dstMode != AddressMode.REGISTER;
+        default:
+            return false;
+        }
+    }
+
+    private static boolean writesMemory(final DecodedInstruction decoded) {
+        if (decoded.instruction == Cpu.Instruction.ONE_OPERAND_INSTRUCTION
+            && decoded.oneOperandInstruction == Cpu.OneOperandInstruction.TST) {
+            return false;
+        }
+        return decoded.dstMode != AddressMode.REGISTER;
+    }
+
+    // =================================================================================================================
+    // Escrita do bytecode
+    // =================================================================================================================
+
+    private void loadLocal(final int opCode, final int local) {
+        code.write(opCode);
+        code.write(local);
+    }
+
+    private void storeLocal(final int opCode, final int local) {
+        code.write(opCode);
+        code.write(local);
+    }
+
+    private void pushInt(final int value) {
+        if (value >= -1 && value <= 5) {
+            code.write(ICONST_0 + value);
+        }
+        else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            code.write(BIPUSH);
+            code.write(value);
+        }
+        else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            writeInstruction(code, SIPUSH, value);
+        }
+        else {
+            writeInstruction(code, LDC_W, pool.integer(value));
+        }
+    }
+
+    private void jump(final int opCode, final Label target) {
+        target.jumps.add(code.size());
+        writeInstruction(code, opCode, 0);
+    }
+
+    private void mark(final Label label) {
+        label.position = code.size();
+        labels.add(label);
+    }
+
+    /**
+     * Um quadro por destino de desvio. A pilha está sempre vazia nos destinos e as variáveis locais têm sempre os
+     * mesmos tipos, então o primeiro quadro é completo e os outros repetem o anterior.
+     */
+    private byte[] generateStackMap() {
+        final var positions = new TreeSet<Integer>();
+        for (final var label : labels) {
+            positions.add(label.position);
+        }
+        final var bytes = new ByteArrayOutputStream();
+        try (final var out = new DataOutputStream(bytes)) {
+            out.writeShort(positions.size());
+            var previous = -1;
+            for (final int position : positions) {
+                final var delta = position - previous - 1;
+                if (previous < 0) {
+                    out.writeByte(FULL_FRAME);
+                    out.writeShort(position);
+                    out.writeShort(MAX_LOCALS);
+                    writeObjectType(out, OBJECT);
+                    writeObjectType(out, CONTEXT);
+                    writeObjectType(out, CPU);
+                    writeObjectType(out, "[S");
+                    writeObjectType(out, CONDITION_REGISTER);
+                    out.writeByte(ITEM_INTEGER);
+                    out.writeByte(ITEM_INTEGER);
+                    writeObjectType(out, "[I");
+                    for (int local = ADDRESS; local < MAX_LOCALS; ++local) {
+                        out.writeByte(ITEM_INTEGER);
+                    }
+                    out.writeShort(0);
+                }
+                else if (delta <= SAME_FRAME_MAX_DELTA) {
+                    out.writeByte(delta);
+                }
+                else {
+                    out.writeByte(SAME_FRAME_EXTENDED);
+                    out.writeShort(delta);
+                }
+                previous = position;
+            }
+        }
+        catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private void writeObjectType(final DataOutputStream out, final String className) throws IOException {
+        out.writeByte(ITEM_OBJECT);
+        out.writeShort(pool.classRef(className));
+    }
+
+    private static void writeInstruction(final ByteArrayOutputStream code, final int opCode, final int operand) {
+        code.write(opCode);
+        code.write(operand >> 8);
+        code.write(operand);
+    }
+
+    private static void writeMethod(final DataOutputStream out, final int name, final int descriptor,
+                                    final int codeAttribute, final int maxStack, final int maxLocals,
+                                    final byte[] code, final int stackMapAttribute, final byte[] stackMap)
+        throws IOException {
+        final var hasStackMap = stackMap != null && stackMap.length > 2;
+        out.writeShort(ACC_PUBLIC);
+        out.writeShort(name);
+        out.writeShort(descriptor);
+        out.writeShort(1);
+        out.writeShort(codeAttribute);
+        out.writeInt(12 + code.length + (hasStackMap ? 6 + stackMap.length : 0));
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(code.length);
+        out.write(code);
+        // Tabela de exceções e atributos do código
+        out.writeShort(0);
+        if (hasStackMap) {
+            out.writeShort(1);
+            out.writeShort(stackMapAttribute);
+            out.writeInt(stackMap.length);
+            out.write(stackMap);
+        }
+        else {
+            out.writeShort(0);
+        }
+    }
+
+    /**
+     * Posição no código, com os desvios que apontam para ela.
+     */
+    private static final class Label {
+        int position = -1;
+        final ArrayList<Integer> jumps = new ArrayList<>();
+    }
+
+    /**
+     * Pool de constantes da classe gerada. Entradas iguais são reaproveitadas.
+     */
+    private static final class ConstantPool {
+        private static final int CONSTANT_UTF8 = 1;
+        private static final int CONSTANT_INTEGER = 3;
+        private static final int CONSTANT_CLASS = 7;
+        private static final int CONSTANT_FIELDREF = 9;
+        private static final int CONSTANT_METHODREF = 10;
+        private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+        private final HashMap<String, Integer> indexes = new HashMap<>();
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private int count = 1;
+
+        int utf8(final String value) {
+            return add("U" + value, out -> {
+                out.writeByte(CONSTANT_UTF8);
+                out.writeUTF(value);
+            });
+        }
+
+        int integer(final int value) {
+            return add("I" + value, out -> {
+                out.writeByte(CONSTANT_INTEGER);
+                out.writeInt(value);
+            });
+        }
+
+        int classRef(final String name) {
+            final var nameIndex = utf8(name);
+            return add("C" + name, out -> {
+                out.writeByte(CONSTANT_CLASS);
+                out.writeShort(nameIndex);
+            });
+        }
+
+        int fieldRef(final String owner, final String name, final String descriptor) {
+            return memberRef(CONSTANT_FIELDREF, owner, name, descriptor);
+        }
+
+        int methodRef(final String owner, final String name, final String descriptor) {
+            return memberRef(CONSTANT_METHODREF, owner, name, descriptor);
+        }
+
+        private int memberRef(final int tag, final String owner, final String name, final String descriptor) {
+            final var ownerIndex = classRef(owner);
+            final var nameIndex = utf8(name);
+            final var descriptorIndex = utf8(descriptor);
+            final var nameAndType = add("N" + name + ' ' + descriptor, out -> {
+                out.writeByte(CONSTANT_NAME_AND_TYPE);
+                out.writeShort(nameIndex);
+                out.writeShort(descriptorIndex);
+            });
+            return add("R" + tag + owner + '.' + name + ' ' + descriptor, out -> {
+                out.writeByte(tag);
+                out.writeShort(ownerIndex);
+                out.writeShort(nameAndType);
+            });
+        }
+
+        private int add(final String key, final Entry entry) {
+            final var existing = indexes.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            try {
+                entry.writeTo(out);
+            }
+            catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            indexes.put(key, count);
+            return count++;
+        }
+
+        void writeTo(final DataOutputStream classFile) throws IOException {
+            classFile.writeShort(count);
+            classFile.write(bytes.toByteArray());
+        }
+
+        private interface Entry {
+            void writeTo(DataOutputStream out) throws IOException;
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package cesar.models;
+
+/**
+ * Bloco básico traduzido para bytecode da JVM pelo {@link BlockCompiler}.
+ */
+interface CompiledBlock {
+    Cpu.ExecutionResult execute(JitContext context);
+}
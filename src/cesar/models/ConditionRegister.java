@@ -2,103 +2,257 @@ package cesar.models;
 
 import cesar.utils.Shorts;
 
+/**
+ * Registrador de estado (N, Z, V, C), guardado num único int com a mesma ordem de bits usada por CCC e SCC e pelo
+ * desmontador: N = 8, Z = 4, V = 2, C = 1.
+ * <p>
+ * As instruções da ULA não calculam os flags: registram apenas o tipo da operação, os operandos e o resultado (ver
+ * {@link #record(Operation, short, short, short)}). Cada flag é calculado quando alguém o lê, o que normalmente só
+ * acontece em desvios condicionais, CCC, SCC e na atualização da interface.
+ */
 class ConditionRegister {
-    private boolean negative;
+    static final int NEGATIVE = 0b1000;
+    static final int ZERO = 0b0100;
+    static final int OVERFLOW = 0b0010;
+    static final int CARRY = 0b0001;
 
-    private boolean zero;
-    private boolean carry;
-    private boolean overflow;
-    private int bits;
+    // Para cada desvio condicional, na ordem de Cpu.BranchInstruction, um bit por combinação de flags: o bit f está
+    // ligado quando o desvio é tomado com os flags f.
+    private static final int[] BRANCH_TABLE = new int[Cpu.BranchInstruction.COUNT];
 
-    public ConditionRegister() {
-        setNegative(false);
-        setZero(true);
-        setCarry(false);
-        setOverflow(false);
-        bits = 0b0100;
+    static {
+        for (final Cpu.BranchInstruction branch : Cpu.BranchInstruction.values()) {
+            var mask = 0;
+            for (int flags = 0; flags < 16; ++flags) {
+                if (isTaken(branch, flags)) {
+                    mask |= 1 << flags;
+                }
+            }
+            BRANCH_TABLE[branch.ordinal()] = mask;
+        }
     }
 
-    public void ccc(final int newValue) {
-        // TODO: Testar
-        bits &= ~newValue;
-        update();
-    }
+    // Flags já avaliados; só valem quando operation é NONE.
+    private int flags;
 
-    private void update() {
-        setNegative((bits & 8) == 8);
-        setZero((bits & 4) == 4);
-        setCarry((bits & 2) == 2);
-        setOverflow((bits & 1) == 1);
+    // Última operação ainda não avaliada; NONE quando flags está atualizado.
+    private Operation operation;
+    private short first;
+    private short second;
+    private short result;
+    // Carry antes da operação registrada, usado pelas operações que o preservam ou o combinam com N.
+    private boolean previousCarry;
+
+    public ConditionRegister() {
+        operation = Operation.NONE;
+        flags = ZERO;
     }
 
-    public boolean isCarry() {
-        return carry;
+    public void ccc(final int newValue) {
+        evaluate();
+        flags &= ~newValue;
     }
 
-    public void setCarry(final boolean value) {
-        carry = value;
-        bits |= 0b0010;
+    public void scc(final int newValue) {
+        evaluate();
+        flags |= newValue;
     }
 
-    public boolean isNegative() {
-        return negative;
+    /**
+     * Flags atuais empacotados em NZVC.
+     */
+    int getFlags() {
+        evaluate();
+        return flags;
     }
 
-    public void setNegative(final boolean value) {
-        negative = value;
-        bits |= 0b1000;
+    /**
+     * Troca todos os flags de uma vez, descartando a operação pendente.
+     */
+    void setFlags(final int newValue) {
+        operation = Operation.NONE;
+        flags = newValue & (NEGATIVE | ZERO | OVERFLOW | CARRY);
     }
 
-    public boolean isOverflow() {
-        return overflow;
+    /**
+     * Estado completo empacotado num long, com a operação pendente ainda sem avaliar, para que o histórico de execução
+     * possa gravá-lo a cada instrução sem forçar o cálculo dos flags.
+     */
+    long save() {
+        return (long) operation.ordinal() << 56 | (previousCarry ? 1L << 52 : 0L) | (long) flags << 48
+               | (first & 0xFFFFL) << 32 | (second & 0xFFFFL) << 16 | result & 0xFFFFL;
     }
 
-    public void setOverflow(final boolean value) {
-        overflow = value;
-        bits |= 0b0001;
+    void load(final long saved) {
+        operation = Operation.fromInt((int) (saved >>> 56));
+        previousCarry = (saved & 1L << 52) != 0;
+        flags = (int) (saved >>> 48) & 0x0F;
+        first = (short) (saved >>> 32);
+        second = (short) (saved >>> 16);
+        result = (short) saved;
     }
 
-    public boolean isZero() {
-        return zero;
+    /**
+     * Indica se o desvio condicional é tomado com os flags atuais: uma consulta à tabela verdade do desvio.
+     */
+    boolean isBranchTaken(final Cpu.BranchInstruction branch) {
+        return (BRANCH_TABLE[branch.ordinal()] >>> getFlags() & 1) != 0;
     }
 
-    public void setZero(final boolean value) {
-        zero = value;
-        bits |= 0b0100;
+    private static boolean isTaken(final Cpu.BranchInstruction branch, final int flags) {
+        final var n = (flags & NEGATIVE) != 0;
+        final var z = (flags & ZERO) != 0;
+        final var v = (flags & OVERFLOW) != 0;
+        final var c = (flags & CARRY) != 0;
+        switch (branch) {
+        case BR:
+            return true;
+        case BNE:
+            return !z;
+        case BEQ:
+            return z;
+        case BPL:
+            return !n;
+        case BMI:
+            return n;
+        case BVC:
+            return !v;
+        case BVS:
+            return v;
+        case BCC:
+            return !c;
+        case BCS:
+            return c;
+        case BGE:
+            return n == v;
+        case BLT:
+            return n != v;
+        case BGT:
+            return n == v && !z;
+        case BLE:
+            return n != v || z;
+        case BHI:
+            return !c && !z;
+        case BLS:
+        default:
+            return c || z;
+        }
     }
 
-    public void scc(final int newValue) {
-        // TODO: Testar
-        bits |= newValue;
-        update();
+    /**
+     * Registra uma operação da ULA. Os flags serão calculados a partir dela quando forem lidos.
+     */
+    void record(final Operation operation, final short first, final short second, final short result) {
+        if (operation.readsCarry) {
+            previousCarry = isCarry();
+        }
+        this.operation = operation;
+        this.first = first;
+        this.second = second;
+        this.result = result;
     }
 
-    public void testCarry(final short a, final short b, final CarryOperation operation) {
-        final int ua = Shorts.toUnsignedInt(a);
-        final int ub = Shorts.toUnsignedInt(b);
-        int result;
-        if (operation == CarryOperation.PLUS) {
-            result = ua + ub;
+    /**
+     * Calcula os flags da operação pendente, se houver.
+     */
+    private void evaluate() {
+        if (operation != Operation.NONE) {
+            final var packed = (isNegative() ? NEGATIVE : 0) | (isZero() ? ZERO : 0)
+                               | (isOverflow() ? OVERFLOW : 0) | (isCarry() ? CARRY : 0);
+            operation = Operation.NONE;
+            flags = packed;
         }
-        else {
-            result = ua - ub;
+    }
+
+    public boolean isCarry() {
+        switch (operation) {
+        case NONE:
+            return (flags & CARRY) != 0;
+        case LOGIC:
+            return previousCarry;
+        case NOT:
+            return true;
+        case ADD:
+            return (Shorts.toUnsignedInt(first) + Shorts.toUnsignedInt(second) & 0x1_0000) == 0x1_0000;
+        case SUB:
+            return (Shorts.toUnsignedInt(first) - Shorts.toUnsignedInt(second) & 0x1_0000) == 0x1_0000;
+        case DEC:
+            return ((0xFFFF & first) - 1 & 0x1_0000) != 0x1_0000;
+        case NEG:
+            return ((0xFFFF & ~first) + 1 & 0x1_0000) != 0x1_0000;
+        case SHIFT_RIGHT:
+            return (first & 0x0001) != 0;
+        case SHIFT_LEFT:
+            return (first & 0x8000) != 0;
+        case CLEAR:
+        default:
+            return false;
         }
-        setCarry((result & 0x1_0000) == 0x1_0000);
     }
 
-    public void testNegative(final short value) {
-        setNegative(value < 0);
+    public boolean isNegative() {
+        return operation == Operation.NONE ? (flags & NEGATIVE) != 0 : result < 0;
     }
 
-    public void testOverflow(final short op1, final short op2, final short result) {
-        setOverflow(op1 > 0 && op2 > 0 && result < 0 || op1 < 0 && op2 < 0 && result > 0);
+    public boolean isOverflow() {
+        switch (operation) {
+        case NONE:
+            return (flags & OVERFLOW) != 0;
+        case ADD:
+        case SUB:
+        case DEC:
+            return first > 0 && second > 0 && result < 0 || first < 0 && second < 0 && result > 0;
+        case NEG:
+            return (0xFFFF & first) == 0x8000;
+        case SHIFT_RIGHT:
+        case SHIFT_LEFT:
+            return result < 0 ^ previousCarry;
+        case LOGIC:
+        case CLEAR:
+        case NOT:
+        default:
+            return false;
+        }
     }
 
-    public void testZero(final short value) {
-        setZero(value == 0);
+    public boolean isZero() {
+        return operation == Operation.NONE ? (flags & ZERO) != 0 : result == 0;
     }
 
-    enum CarryOperation {
-        PLUS, MINUS
+    /**
+     * Forma como cada grupo de instruções calcula V e C. N e Z vêm sempre do resultado.
+     */
+    enum Operation {
+        NONE(false),
+        // MOV, AND, OR: V = 0, C inalterado
+        LOGIC(true),
+        // CLR, TST: V = 0, C = 0
+        CLEAR(false),
+        // NOT: V = 0, C = 1
+        NOT(false),
+        // INC, ADC, ADD: first + second
+        ADD(false),
+        // SBC, SUB, CMP: first - second
+        SUB(false),
+        // DEC: first + (-1), com o carry calculado a partir de first
+        DEC(false),
+        // NEG: -first
+        NEG(false),
+        // ROR, ASR: C = bit 0 de first; V = N xor C anterior
+        SHIFT_RIGHT(true),
+        // ROL, ASL: C = bit 15 de first; V = N xor C anterior
+        SHIFT_LEFT(true);
+
+        private static final Operation[] array = Operation.values();
+
+        final boolean readsCarry;
+
+        Operation(final boolean readsCarry) {
+            this.readsCarry = readsCarry;
+        }
+
+        static Operation fromInt(final int index) {
+            return array[index];
+        }
     }
 }
@@ -3,8 +3,11 @@ package cesar.models;
 import static cesar.utils.Integers.clamp;
 import static cesar.utils.Integers.clampToShort;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.EnumMap;
+import java.util.List;
 
 import cesar.utils.Bytes;
 import cesar.utils.Integers;
@@ -16,17 +19,98 @@ public class Cpu {
 
         private static final BranchInstruction[] array = BranchInstruction.values();
 
+        static final int COUNT = array.length;
+
         public static BranchInstruction fromInt(final int index) {
             return array[index];
         }
     }
 
-    private static class EndOfMemoryException extends Exception {
-        private static final long serialVersionUID = 6965391709203714540L;
+    /**
+     * Forma de executar as instruções, escolhida na construção do Cpu.
+     */
+    public enum Engine {
+        /**
+         * Decodifica (com cache) e despacha uma instrução por vez.
+         */
+        INTERPRETER,
+        /**
+         * Agrupa as instruções em blocos básicos de handlers pré-ligados aos seus operandos.
+         */
+        THREADED,
+        /**
+         * Como THREADED, mas traduz os blocos mais executados para bytecode da JVM.
+         */
+        JIT
+    }
+
+    /**
+     * Condição de parada externa para {@link #run(long, StopPolicy)}, além de HALT, breakpoint, fim da memória e do
+     * limite de instruções.
+     * <p>
+     * É consultada entre blocos de instruções, não a cada instrução, então deve ser barata.
+     */
+    @FunctionalInterface
+    public interface StopPolicy {
+        /**
+         * Para apenas pelas condições do próprio processador.
+         */
+        StopPolicy NEVER = () -> false;
+
+        boolean shouldStop();
+    }
+
+    /**
+     * Recebe uma faixa de endereços, inclusiva nas duas pontas.
+     */
+    @FunctionalInterface
+    public interface RangeConsumer {
+        void accept(int startAddress, int endAddress);
+    }
+
+    /**
+     * Resultado de {@link #run(long, StopPolicy)}.
+     */
+    public static final class RunResult {
+        private final ExecutionResult result;
+        private final long instructionCount;
+        private final int memoryAccessCount;
+        private final int programCounter;
+
+        RunResult(final ExecutionResult result, final long instructionCount, final int memoryAccessCount,
+                  final int programCounter) {
+            this.result = result;
+            this.instructionCount = instructionCount;
+            this.memoryAccessCount = memoryAccessCount;
+            this.programCounter = programCounter;
+        }
+
+        /**
+         * Motivo da parada: HALT, BREAK_POINT, END_OF_MEMORY ou WATCH_POINT, ou o resultado da última instrução (OK
+         * ou NOOP) quando a execução parou pelo limite de instruções ou pela StopPolicy.
+         */
+        public ExecutionResult getResult() {
+            return result;
+        }
+
+        public long getInstructionCount() {
+            return instructionCount;
+        }
+
+        /**
+         * Acessos à memória feitos durante esta execução.
+         */
+        public int getMemoryAccessCount() {
+            return memoryAccessCount;
+        }
+
+        public int getProgramCounter() {
+            return programCounter;
+        }
     }
 
     public enum ExecutionResult {
-        HALT, NOOP, OK, BREAK_POINT, END_OF_MEMORY;
+        HALT, NOOP, OK, BREAK_POINT, END_OF_MEMORY, WATCH_POINT;
 
         private static final EnumMap<ExecutionResult, String> TO_STRING = new EnumMap<>(ExecutionResult.class);
 
@@ -36,6 +120,7 @@ public class Cpu {
             TO_STRING.put(OK, " ");
             TO_STRING.put(BREAK_POINT, "Breakpoint");
             TO_STRING.put(END_OF_MEMORY, "End of memory");
+            TO_STRING.put(WATCH_POINT, "Watchpoint");
         }
 
         @Override
@@ -60,23 +145,13 @@ public class Cpu {
 
         private static final OneOperandInstruction[] array = OneOperandInstruction.values();
 
+        static final int COUNT = array.length;
+
         public static OneOperandInstruction fromInt(final int index) {
             return array[index];
         }
     }
 
-    private static class Operand {
-        public final short value;
-        public final int address;
-        public final AddressMode addressMode;
-
-        public Operand(final short value, final int address, final AddressMode addressMode) {
-            this.value = value;
-            this.address = address;
-            this.addressMode = addressMode;
-        }
-    }
-
     public static final int REGISTER_COUNT = 8;
     public static final int MEMORY_SIZE = 1 << 16; // 2^16
     public static final int FIRST_ADDRESS = 0;
@@ -89,481 +164,496 @@ public class Cpu {
     public static final int PC = 7;
     public static final int SP = 6;
     public static final byte ZERO_BYTE = 0;
-    private final ConditionRegister conditionRegister;
-    private final short[] registers;
+    // Uma instrução busca no máximo dois bytes de código (as palavras de índice não entram no RI).
+    private static final int MAX_FETCHED_BYTES = 2;
+    // Lidos diretamente pelo código gerado pelo BlockCompiler.
+    final ConditionRegister conditionRegister;
+    final short[] registers;
     private final byte[] memory;
     private final byte[] originalMemory;
-    private final String[] mnemonics;
+    final Disassembly disassembly;
+    final DecodeCache decodeCache;
+    // Motor em uso: o escolhido na construção ou, com o histórico ou o perfilador habilitado, o HistoryEngine ou o
+    // ProfilingEngine.
+    private ExecutionEngine engine;
+    private final ExecutionEngine defaultEngine;
+
+    // Criado na primeira vez que o perfilador é habilitado.
+    private Profiler profiler;
+    private boolean profilingEnabled;
     private boolean originalMemoryChanged;
     private short breakPoint;
 
-    private boolean memoryChanged;
+    // Indica se o bit do endereço do campo BP foi ligado só pelo campo. Se o usuário também marcou esse endereço na
+    // coluna BP, o bit fica quando o campo muda.
+    private boolean breakPointOnlyFromField;
+
+    // Um bit por endereço de memória; inclui o breakpoint do campo BP da janela de programa.
+    private final long[] breakPoints;
+
+    // Páginas de 256 bytes que têm algum watchpoint de leitura ou de escrita, um bit por página.
+    private static final int WATCH_PAGE_SHIFT = 8;
+    private final long[] readWatchPages;
+    private final long[] writeWatchPages;
+    private final ArrayList<WatchPoint> watchPoints;
+    private WatchPointHit watchPointHit;
+    private boolean watchPointTriggered;
+
+    // Endereço da instrução em execução.
+    private int instructionAddress;
+
+    // Incrementado sempre que algum breakpoint muda, para que os blocos básicos saibam quando reavaliá-los.
+    private int breakPointVersion;
+
+    // Páginas da memória escritas desde o último drain. As linhas cujos mnemônicos mudaram ficam na desmontagem,
+    // porque uma escrita pode mudar o alinhamento das instruções seguintes e, com ele, mnemônicos fora da página.
+    private final DirtyTracker dirtyMemory;
+
+    // Páginas de MachineSnapshot.PAGE_SIZE bytes escritas desde a última cópia, um bit por página, e as páginas e os
+    // breakpoints dessa cópia, que a seguinte reaproveita no que não mudou. Nulos até a primeira cópia.
+    private final long[] snapshotDirtyPages;
+    private byte[][] snapshotPages;
+    private long[] snapshotBreakPoints;
+    private int snapshotBreakPointVersion;
 
-    private int lastChangedAddress;
+    // Criado quando o histórico é habilitado; null enquanto desabilitado. A gravação fica no HistoryEngine, de modo que
+    // os outros motores não a testam a cada instrução.
+    private ExecutionHistory history;
 
-    private int lastChangedMnemonic;
+    // Ligado enquanto o histórico reexecuta instruções já executadas, que não contam para watchpoints nem perfilador.
+    private boolean replaying;
 
     private int memoryAccessCount;
 
+    // Bytes lidos pela última instrução. O texto do RI só é montado quando alguém pede por ele.
+    private final byte[] fetchedBytes;
+
+    private int fetchedByteCount;
+
     private String readInstruction;
 
+    // Palavras de índice lidas pela última instrução, a última nos 16 bits menos significativos. Junto com os bytes
+    // buscados, é o que o MN mostra, mesmo que a instrução tenha escrito sobre si mesma depois de lê-los.
+    private int indexWords;
+
+    // Montado só quando alguém pede por ele, a partir dos bytes lidos pela última instrução.
     private String readMnemonic;
 
+    // Resultado do último getOperand, guardado em campos primitivos para não alocar um objeto por operando.
+    private short operandValue;
+
+    private int operandAddress;
+
+    private AddressMode operandMode;
+
     public Cpu() {
+        this(Engine.INTERPRETER);
+    }
+
+    public Cpu(final Engine engineType) {
         registers = new short[REGISTER_COUNT];
         memory = new byte[MEMORY_SIZE];
         originalMemory = new byte[MEMORY_SIZE];
         originalMemoryChanged = false;
-        mnemonics = new String[MEMORY_SIZE];
+        disassembly = new Disassembly(this);
+        decodeCache = new DecodeCache(memory);
+        breakPoints = new long[MEMORY_SIZE / Long.SIZE];
+        readWatchPages = new long[(MEMORY_SIZE >> WATCH_PAGE_SHIFT) / Long.SIZE];
+        writeWatchPages = new long[(MEMORY_SIZE >> WATCH_PAGE_SHIFT) / Long.SIZE];
+        watchPoints = new ArrayList<>();
+        watchPointHit = null;
+        watchPointTriggered = false;
         breakPoint = (short) 0xFFFF;
+        breakPointOnlyFromField = true;
+        setBreakPointBit(Shorts.toUnsignedInt(breakPoint));
         conditionRegister = new ConditionRegister();
         memoryAccessCount = 0;
-        memoryChanged = false;
-        lastChangedAddress = 0;
-        readInstruction = "0";
+        dirtyMemory = new DirtyTracker();
+        snapshotDirtyPages = new long[MachineSnapshot.PAGE_COUNT / Long.SIZE];
+        snapshotPages = null;
+        snapshotBreakPoints = null;
+        history = null;
+        replaying = false;
+        fetchedBytes = new byte[MAX_FETCHED_BYTES];
+        fetchedByteCount = 1;
+        readInstruction = null;
         readMnemonic = InstructionString.NOP.toString();
         updateMnemonics();
+        defaultEngine = createEngine(engineType);
+        engine = defaultEngine;
+        profiler = null;
+        profilingEnabled = false;
     }
 
+    private ExecutionEngine createEngine(final Engine engineType) {
+        switch (engineType) {
+        case THREADED:
+            return new ThreadedEngine(this);
+        case JIT:
+            return new JitEngine(this);
+        case INTERPRETER:
+        default:
+            return new InterpreterEngine(this);
+        }
+    }
+
+    /**
+     * Copia [startAddress, endAddress] para dstAddress como um memmove: as faixas podem se sobrepor, e a cópia é
+     * cortada no fim da memória.
+     */
     public void copyMemory(final int startAddress, final int endAddress, final int dstAddress) {
-        for (int i = startAddress, j = dstAddress; i <= endAddress && j <= Cpu.LAST_ADDRESS; ++i, ++j) {
-            setByte(j, getByte(i));
+        final var length = Math.min(endAddress - startAddress + 1, MEMORY_SIZE - dstAddress);
+        if (length > 0) {
+            resetHistory();
+            System.arraycopy(memory, startAddress, memory, dstAddress, length);
+            memoryChanged(dstAddress, dstAddress + length - 1);
         }
-        updateMnemonics();
     }
 
-    private void executeConditionalInstruction(final BranchInstruction instruction, final byte offset) {
-        switch (instruction) {
-        case BR:
+    public void fillMemory(final int startAddress, final int endAddress, final byte value) {
+        resetHistory();
+        Arrays.fill(memory, startAddress, endAddress + 1, value);
+        memoryChanged(startAddress, endAddress);
+    }
+
+    /**
+     * Preenche [startAddress, endAddress] repetindo pattern desde startAddress; a última repetição pode ficar pela
+     * metade. Cada passo copia tudo o que já foi preenchido, então são log2(tamanho) chamadas a arraycopy.
+     */
+    public void fillMemory(final int startAddress, final int endAddress, final byte[] pattern) {
+        final var length = endAddress - startAddress + 1;
+        if (length <= 0 || pattern.length == 0) {
+            return;
+        }
+        resetHistory();
+        var filled = Math.min(pattern.length, length);
+        System.arraycopy(pattern, 0, memory, startAddress, filled);
+        while (filled < length) {
+            final var count = Math.min(filled, length - filled);
+            System.arraycopy(memory, startAddress, memory, startAddress + filled, count);
+            filled += count;
+        }
+        memoryChanged(startAddress, endAddress);
+    }
+
+    void executeConditionalInstruction(final BranchInstruction instruction, final byte offset) {
+        if (conditionRegister.isBranchTaken(instruction)) {
             registers[PC] = (short) (registers[PC] + offset);
-            break;
+        }
+    }
 
-        case BNE:
-            if (!conditionRegister.isZero()) {
-                registers[PC] = (short) (registers[PC] + offset);
-            }
-            break;
+    public ExecutionResult executeNextInstruction() {
+        final var result = engine.step();
+        if (watchPointTriggered) {
+            watchPointTriggered = false;
+            return ExecutionResult.WATCH_POINT;
+        }
+        return result;
+    }
 
-        case BEQ:
-            if (conditionRegister.isZero()) {
-                registers[PC] = (short) (registers[PC] + offset);
+    /**
+     * Executa até maxInstructions instruções sem voltar ao chamador, parando antes em HALT, breakpoint, fim da
+     * memória, watchpoint ou quando a política pedir.
+     * <p>
+     * As escritas feitas durante a execução ficam registradas para drainDirtyRanges.
+     */
+    public RunResult run(final long maxInstructions, final StopPolicy policy) {
+        final var initialAccessCount = memoryAccessCount;
+        var instructionCount = 0L;
+        var result = ExecutionResult.OK;
+        while (instructionCount < maxInstructions && !policy.shouldStop()) {
+            result = engine.runBlock(maxInstructions - instructionCount);
+            instructionCount += engine.executedInstructions;
+            if (watchPointTriggered) {
+                watchPointTriggered = false;
+                result = ExecutionResult.WATCH_POINT;
+                break;
             }
-            break;
-
-        case BPL:
-            if (!conditionRegister.isNegative()) {
-                registers[PC] = (short) (registers[PC] + offset);
+            if (result == ExecutionResult.HALT || result == ExecutionResult.BREAK_POINT
+                || result == ExecutionResult.END_OF_MEMORY) {
+                break;
             }
-            break;
+        }
+        return new RunResult(result, instructionCount, memoryAccessCount - initialAccessCount, getProgramCounter());
+    }
 
-        case BMI:
-            if (conditionRegister.isNegative()) {
-                registers[PC] = (short) (registers[PC] + offset);
-            }
-            break;
+    /**
+     * Executa uma instrução decodificada. É o caminho usado pelo interpretador; os handlers do modo THREADED chamam
+     * diretamente as operações abaixo.
+     */
+    ExecutionResult execute(final DecodedInstruction decoded) {
+        fetchInstruction(decoded.address, decoded.firstByte, decoded.secondByte, decoded.fetchedByteCount);
+        if (decoded.endOfMemory) {
+            return endOfMemory();
+        }
 
-        case BVC:
-            if (!conditionRegister.isOverflow()) {
-                registers[PC] = (short) (registers[PC] + offset);
-            }
-            break;
+        switch (decoded.instruction) {
+        case NOP:
+            return ExecutionResult.NOOP;
 
-        case BVS:
-            if (conditionRegister.isOverflow()) {
-                registers[PC] = (short) (registers[PC] + offset);
-            }
-            break;
+        case CCC:
+            executeCcc(decoded.firstByte & 0x0F);
+            return ExecutionResult.OK;
 
-        case BCC:
-            if (!conditionRegister.isCarry()) {
-                registers[PC] = (short) (registers[PC] + offset);
-            }
-            break;
+        case SCC:
+            executeScc(decoded.firstByte & 0x0F);
+            return ExecutionResult.OK;
 
-        case BCS:
-            if (conditionRegister.isCarry()) {
-                registers[PC] = (short) (registers[PC] + offset);
-            }
-            break;
+        case CONDITIONAL_BRANCH:
+            executeConditionalInstruction(decoded.branchInstruction, decoded.offset);
+            return ExecutionResult.OK;
 
-        case BGE:
-            if (conditionRegister.isNegative() == conditionRegister.isOverflow()) {
-                registers[PC] = (short) (registers[PC] + offset);
-            }
-            break;
+        case JMP:
+            return executeJump(decoded.dstMode, decoded.dstRegister);
 
-        case BLT:
-            if (conditionRegister.isNegative() != conditionRegister.isOverflow()) {
-                registers[PC] = (short) (registers[PC] + offset);
-            }
-            break;
+        case SOB:
+            executeSob(decoded.register, decoded.offset);
+            return ExecutionResult.OK;
 
-        case BGT:
-            if (conditionRegister.isNegative() == conditionRegister.isOverflow() && !conditionRegister.isZero()) {
-                registers[PC] = (short) (registers[PC] + offset);
-            }
-            break;
+        case JSR:
+            return executeJumpToSubRoutine(decoded.register, decoded.dstMode, decoded.dstRegister);
 
-        case BLE:
-            if (conditionRegister.isNegative() != conditionRegister.isOverflow() || conditionRegister.isZero()) {
-                registers[PC] = (short) (registers[PC] + offset);
-            }
-            break;
+        case RETURN_INSTRUCTION:
+            executeReturn(decoded.firstByte, decoded.register);
+            return ExecutionResult.OK;
 
-        case BHI:
-            if (!conditionRegister.isCarry() && !conditionRegister.isZero()) {
-                registers[PC] = (short) (registers[PC] + offset);
-            }
-            break;
+        case ONE_OPERAND_INSTRUCTION:
+            executeOneOperandInstruction(decoded.oneOperandInstruction, decoded.dstMode, decoded.dstRegister);
+            return ExecutionResult.OK;
 
-        case BLS:
-            if (conditionRegister.isCarry() || conditionRegister.isZero()) {
-                registers[PC] = (short) (registers[PC] + offset);
-            }
-            break;
+        case MOV:
+        case ADD:
+        case SUB:
+        case CMP:
+        case AND:
+        case OR:
+            executeTwoOperandInstruction(decoded.instruction, decoded.srcMode, decoded.srcRegister, decoded.dstMode,
+                decoded.dstRegister);
+            return ExecutionResult.OK;
+
+        case HLT:
+            return ExecutionResult.HALT;
         }
-    }
 
-    public ExecutionResult executeNextInstruction() {
-        memoryChanged = false;
-
-        if (registers[PC] == breakPoint) {
-            return ExecutionResult.BREAK_POINT;
-        }
-
-        try {
-            readInstruction = "";
-            readMnemonic = getMnemonic(registers[PC]);
-            final var firstByte = fetchNextByte();
-            final var firstBits = 0x0F & (firstByte & 0xF0) >> 4;
-            final var instruction = Instruction.fromInt(firstBits);
-            switch (instruction) {
-            case NOP:
-                return ExecutionResult.NOOP;
-
-            case CCC:
-                conditionRegister.ccc(firstByte & 0x0F);
-                return ExecutionResult.OK;
-
-            case SCC:
-                conditionRegister.scc(firstByte & 0x0F);
-                return ExecutionResult.OK;
-
-            case CONDITIONAL_BRANCH: {
-                final var branchInstruction = BranchInstruction.fromInt(firstByte & 0x0F);
-                final var nextByte = fetchNextByte();
-                executeConditionalInstruction(branchInstruction, nextByte);
-                return ExecutionResult.OK;
-            }
+        return ExecutionResult.NOOP;
+    }
 
-            case JMP: {
-                final var nextByte = fetchNextByte();
-                final var mmm = (nextByte & 0b0011_1000) >> 3;
-                final var rrr = nextByte & 0b0000_0111;
-                final var mode = AddressMode.fromInt(mmm);
-                if (mode == AddressMode.REGISTER) {
-                    return ExecutionResult.NOOP;
-                }
-                registers[PC] = (short) getAddress(mode, rrr);
-                return ExecutionResult.OK;
-            }
+    /**
+     * Contabiliza a busca de uma instrução: registra os bytes do RI, conta as leituras deles e avança o PC. As palavras
+     * de índice são lidas depois, durante a execução.
+     */
+    void fetchInstruction(final int address, final byte firstByte, final byte secondByte,
+                          final int fetchedByteCount) {
+        instructionAddress = address;
+        readMnemonic = null;
+        indexWords = 0;
+        fetchedBytes[0] = firstByte;
+        fetchedBytes[1] = secondByte;
+        this.fetchedByteCount = fetchedByteCount;
+        readInstruction = null;
+        memoryAccessCount += fetchedByteCount;
+        registers[PC] = (short) (registers[PC] + fetchedByteCount);
+    }
 
-            case SOB: {
-                final var offset = fetchNextByte();
-                final var rrr = firstByte & 0b0000_0111;
-                registers[rrr] = clampToShort(registers[rrr] - 1);
-                if (registers[rrr] != 0) {
-                    registers[PC] = clampToShort(registers[PC] - offset);
-                }
-                return ExecutionResult.OK;
-            }
+    ExecutionResult endOfMemory() {
+        registers[PC] = (short) LAST_ADDRESS;
+        return ExecutionResult.END_OF_MEMORY;
+    }
 
-            case JSR: {
-                final var nextByte = fetchNextByte();
-                final var reg = firstByte & 0b0000_0111;
-                final var mmm = (nextByte & 0b0011_1000) >> 3;
-                final var rrr = nextByte & 0b0000_0111;
-                final var mode = AddressMode.fromInt(mmm);
-                if (mode == AddressMode.REGISTER) {
-                    return ExecutionResult.NOOP;
-                }
-                final var subRoutineAddress = clampToShort(getAddress(mode, rrr));
-                stackPush(registers[reg]);
-                if (reg != PC) {
-                    registers[reg] = registers[PC];
-                }
-                registers[PC] = subRoutineAddress;
-                return ExecutionResult.OK;
-            }
+    void executeCcc(final int bits) {
+        conditionRegister.ccc(bits);
+    }
 
-            case RETURN_INSTRUCTION: {
-                // noinspection StatementWithEmptyBody
-                if (firstByte == (byte) 0b0111_1000) {
-                    // TODO: TRATAR RTI
-                }
-                else {
-                    // RTS
-                    final var rrr = firstByte & 0b0000_0111;
-                    if (rrr != PC) {
-                        registers[PC] = registers[rrr];
-                    }
-                    registers[rrr] = stackPop();
-                }
-                return ExecutionResult.OK;
-            }
+    void executeScc(final int bits) {
+        conditionRegister.scc(bits);
+    }
 
-            case ONE_OPERAND_INSTRUCTION: {
-                final var code = firstByte & 0x0F;
-                final var oneOperandInstruction = OneOperandInstruction.fromInt(code);
-                final var nextByte = fetchNextByte();
-                executeOneOperandInstruction(oneOperandInstruction, nextByte);
-                return ExecutionResult.OK;
-            }
+    ExecutionResult executeJump(final AddressMode mode, final int registerNumber) {
+        if (mode == AddressMode.REGISTER) {
+            return ExecutionResult.NOOP;
+        }
+        registers[PC] = (short) getAddress(mode, registerNumber);
+        return ExecutionResult.OK;
+    }
 
-            case MOV:
-            case ADD:
-            case SUB:
-            case CMP:
-            case AND:
-            case OR: {
-                final var nextByte = fetchNextByte();
-                final var word = Shorts.fromBytes(firstByte, nextByte);
-                executeTwoOperandInstruction(instruction, word);
-                return ExecutionResult.OK;
-            }
+    void executeSob(final int registerNumber, final byte offset) {
+        registers[registerNumber] = clampToShort(registers[registerNumber] - 1);
+        if (registers[registerNumber] != 0) {
+            registers[PC] = clampToShort(registers[PC] - offset);
+        }
+    }
 
-            case HLT:
-                return ExecutionResult.HALT;
-            }
+    ExecutionResult executeJumpToSubRoutine(final int reg, final AddressMode mode, final int registerNumber) {
+        if (mode == AddressMode.REGISTER) {
+            return ExecutionResult.NOOP;
         }
-        catch (final EndOfMemoryException ignored) {
-            return ExecutionResult.END_OF_MEMORY;
+        final var subRoutineAddress = clampToShort(getAddress(mode, registerNumber));
+        stackPush(registers[reg]);
+        if (reg != PC) {
+            registers[reg] = registers[PC];
         }
+        registers[PC] = subRoutineAddress;
+        return ExecutionResult.OK;
+    }
 
-        return ExecutionResult.NOOP;
+    void executeReturn(final byte firstByte, final int registerNumber) {
+        // RTI não faz nada: o simulador não tem interrupções, então não há estado para restaurar.
+        if (firstByte != (byte) 0b0111_1000) {
+            // RTS
+            if (registerNumber != PC) {
+                registers[PC] = registers[registerNumber];
+            }
+            registers[registerNumber] = stackPop();
+        }
     }
 
-    private void executeOneOperandInstruction(final OneOperandInstruction instruction, final byte nextByte) {
-        final var mmm = (nextByte & 0b0011_1000) >> 3;
-        final var rrr = nextByte & 0b0000_0111;
-        final var operand = getOperand(mmm, rrr);
-        final var value = operand.value;
+    void executeOneOperandInstruction(final OneOperandInstruction instruction, final AddressMode mode,
+                                      final int rrr) {
+        getOperand(mode, rrr);
+        final var value = operandValue;
         var result = value;
-        final var carryBit = 0x10000;
 
         switch (instruction) {
         case CLR:
             result = 0;
-            conditionRegister.testNegative(result);
-            conditionRegister.testZero(result);
-            conditionRegister.setOverflow(false);
-            conditionRegister.setCarry(false);
+            conditionRegister.record(ConditionRegister.Operation.CLEAR, value, (short) 0, result);
             break;
 
         case NOT:
             result = clampToShort(~value);
-            conditionRegister.testNegative(result);
-            conditionRegister.testZero(result);
-            conditionRegister.setOverflow(false);
-            conditionRegister.setCarry(true);
+            conditionRegister.record(ConditionRegister.Operation.NOT, value, (short) 0, result);
             break;
 
         case INC:
             result = clampToShort(value + 1);
-            conditionRegister.testNegative(result);
-            conditionRegister.testZero(result);
-            conditionRegister.testOverflow(value, (short) 1, result);
-            conditionRegister.testCarry(value, (short) 1, ConditionRegister.CarryOperation.PLUS);
+            conditionRegister.record(ConditionRegister.Operation.ADD, value, (short) 1, result);
             break;
 
         case DEC:
             result = clampToShort(value - 1);
-            conditionRegister.testNegative(result);
-            conditionRegister.testZero(result);
-            conditionRegister.testOverflow(value, (short) -1, result);
-            conditionRegister.setCarry(((0xFFFF & value) - 1 & carryBit) != carryBit);
+            conditionRegister.record(ConditionRegister.Operation.DEC, value, (short) -1, result);
             break;
 
         case NEG:
             result = clampToShort(-value);
-            conditionRegister.testNegative(result);
-            conditionRegister.testZero(result);
-            conditionRegister.setOverflow(MEMORY_SIZE / 2 == (0xFFFF & value));
-            conditionRegister.setCarry(((0xFFFF & ~value) + 1 & carryBit) != carryBit);
+            conditionRegister.record(ConditionRegister.Operation.NEG, value, (short) 0, result);
             break;
 
         case TST:
             // result = value
-            conditionRegister.testNegative(result);
-            conditionRegister.testZero(result);
-            conditionRegister.setOverflow(false);
-            conditionRegister.setCarry(false);
+            conditionRegister.record(ConditionRegister.Operation.CLEAR, value, (short) 0, result);
             break;
 
         case ROR: {
             final var lsb = (value & 0x0001) << 0xF;
             result = (short) (lsb | clamp(value) >> 1);
-            conditionRegister.testNegative(result);
-            conditionRegister.testZero(result);
-            conditionRegister.setOverflow(conditionRegister.isNegative() ^ conditionRegister.isCarry());
-            conditionRegister.setCarry(lsb == 0x8000);
+            conditionRegister.record(ConditionRegister.Operation.SHIFT_RIGHT, value, (short) 0, result);
             break;
         }
 
         case ROL: {
             final var msb = (value & 0x8000) >> 0xF;
             result = (short) (clamp(value) << 1 | msb);
-            conditionRegister.testNegative(result);
-            conditionRegister.testZero(result);
-            conditionRegister.setOverflow(conditionRegister.isNegative() ^ conditionRegister.isCarry());
-            conditionRegister.setCarry(msb == 1);
+            conditionRegister.record(ConditionRegister.Operation.SHIFT_LEFT, value, (short) 0, result);
             break;
         }
 
         case ASR: {
             final var msb = value & 0x8000;
-            final var lsb = value & 1;
             result = (short) (msb | 0x7FFF & value >> 1);
-            conditionRegister.testNegative(result);
-            conditionRegister.testZero(result);
-            conditionRegister.setOverflow(conditionRegister.isNegative() ^ conditionRegister.isCarry());
-            conditionRegister.setCarry(lsb == 1);
+            conditionRegister.record(ConditionRegister.Operation.SHIFT_RIGHT, value, (short) 0, result);
             break;
         }
 
-        case ASL: {
-            final var msb = value & 0x8000;
+        case ASL:
             result = (short) (value << 1 & 0xFFFE);
-            conditionRegister.testNegative(result);
-            conditionRegister.testZero(result);
-            conditionRegister.setOverflow(conditionRegister.isNegative() ^ conditionRegister.isCarry());
-            conditionRegister.setCarry(msb == 0x8000);
+            conditionRegister.record(ConditionRegister.Operation.SHIFT_LEFT, value, (short) 0, result);
             break;
-        }
 
         case ADC: {
             final var c = conditionRegister.isCarry() ? 1 : 0;
             result = (short) (value + c);
-            conditionRegister.testNegative(result);
-            conditionRegister.testZero(result);
-            conditionRegister.testOverflow(value, (short) c, result);
-            conditionRegister.testCarry(value, (short) c, ConditionRegister.CarryOperation.PLUS);
+            conditionRegister.record(ConditionRegister.Operation.ADD, value, (short) c, result);
             break;
         }
 
         case SBC: {
             final var c = conditionRegister.isCarry() ? 1 : 0;
             result = (short) (value - c);
-            conditionRegister.testNegative(result);
-            conditionRegister.testZero(result);
-            conditionRegister.testOverflow(value, (short) c, result);
-            conditionRegister.testCarry(value, (short) c, ConditionRegister.CarryOperation.MINUS);
+            conditionRegister.record(ConditionRegister.Operation.SUB, value, (short) c, result);
             break;
         }
         }
 
         if (instruction != OneOperandInstruction.TST) {
-            if (operand.addressMode == AddressMode.REGISTER) {
+            if (operandMode == AddressMode.REGISTER) {
                 registers[rrr] = result;
             }
             else {
-                writeWord(operand.address, result);
-                memoryChanged = true;
-                lastChangedAddress = operand.address;
+                writeWord(operandAddress, result);
             }
         }
     }
 
-    private void executeTwoOperandInstruction(final Instruction instruction, final short word) {
-        final var uWord = Shorts.toUnsignedInt(word);
-        final var mmm1 = (uWord & 0b0000_1110_0000_0000) >> 9;
-        final var rrr1 = (uWord & 0b0000_0001_1100_0000) >> 6;
-        final var mmm2 = (uWord & 0b0000_0000_0011_1000) >> 3;
-        final var rrr2 = uWord & 0b0000_0000_0000_0111;
-
-        final var srcOperand = getOperand(mmm1, rrr1);
-        final var src = srcOperand.value;
+    void executeTwoOperandInstruction(final Instruction instruction, final AddressMode srcMode, final int rrr1,
+                                      final AddressMode dstMode, final int rrr2) {
+        getOperand(srcMode, rrr1);
+        final var src = operandValue;
 
-        final var dstOperand = getOperand(mmm2, rrr2);
-        final var dst = dstOperand.value;
+        getOperand(dstMode, rrr2);
+        final var dst = operandValue;
 
         var result = dst;
 
         switch (instruction) {
         case MOV:
             result = src;
-            conditionRegister.testNegative(result);
-            conditionRegister.testZero(result);
-            conditionRegister.setOverflow(false);
+            conditionRegister.record(ConditionRegister.Operation.LOGIC, src, dst, result);
             break;
 
         case ADD:
             result = clampToShort(dst + src);
-            conditionRegister.testNegative(result);
-            conditionRegister.testZero(result);
-            conditionRegister.testOverflow(dst, src, result);
-            conditionRegister.testCarry(dst, src, ConditionRegister.CarryOperation.PLUS);
+            conditionRegister.record(ConditionRegister.Operation.ADD, dst, src, result);
             break;
 
         case SUB:
             result = clampToShort(dst - src);
-            conditionRegister.testNegative(result);
-            conditionRegister.testZero(result);
-            conditionRegister.testOverflow(dst, src, result);
-            conditionRegister.testCarry(dst, src, ConditionRegister.CarryOperation.MINUS);
+            conditionRegister.record(ConditionRegister.Operation.SUB, dst, src, result);
             break;
 
         case CMP:
             result = clampToShort(src - dst);
-            conditionRegister.testNegative(result);
-            conditionRegister.testZero(result);
-            conditionRegister.testOverflow(src, dst, result);
-            conditionRegister.testCarry(src, dst, ConditionRegister.CarryOperation.MINUS);
+            conditionRegister.record(ConditionRegister.Operation.SUB, src, dst, result);
             result = dst;
             break;
 
         case AND:
             result = clampToShort(dst & src);
-            conditionRegister.testNegative(result);
-            conditionRegister.testZero(result);
-            conditionRegister.setOverflow(false);
+            conditionRegister.record(ConditionRegister.Operation.LOGIC, src, dst, result);
             break;
 
         case OR:
             result = clampToShort(dst | src);
-            conditionRegister.testNegative(result);
-            conditionRegister.testZero(result);
-            conditionRegister.setOverflow(false);
+            conditionRegister.record(ConditionRegister.Operation.LOGIC, src, dst, result);
             break;
 
         default:
-            System.err.println("Instrução de 2 operandos inválida");
-            System.exit(1);
-            break;
+            throw new IllegalStateException("Instrução de 2 operandos inválida: " + instruction);
         }
 
-        if (dstOperand.addressMode == AddressMode.REGISTER) {
+        if (operandMode == AddressMode.REGISTER) {
             registers[rrr2] = result;
         }
         else {
-            writeWord(dstOperand.address, result);
-            memoryChanged = true;
-            lastChangedAddress = dstOperand.address;
-        }
-    }
-
-    private byte fetchNextByte() throws EndOfMemoryException {
-        final var nextByte = readByte(Shorts.toUnsignedInt(registers[PC]));
-        // TODO: Verificar se readInstruction pode ser hexadecimal
-        readInstruction += String.format(" %d", Bytes.toUnsignedInt(nextByte));
-
-        if (registers[PC] == (short) 0xFFFF) {
-            throw new EndOfMemoryException();
+            writeWord(operandAddress, result);
         }
-        registers[PC]++;
-        return nextByte;
     }
 
+    /**
+     * Calcula o endereço efetivo de um operando. A palavra de índice dos modos indexados é lida aqui, no endereço
+     * apontado pelo PC, pelo mesmo caminho das outras leituras: conta como acesso e passa pelos watchpoints e pelo
+     * perfilador.
+     */
     private int getAddress(final AddressMode mode, final int registerNumber) {
         var address = Shorts.toUnsignedInt(registers[registerNumber]);
 
@@ -582,9 +672,8 @@ public class Cpu {
             break;
 
         case INDEXED: {
-            final var word = readWord(registers[PC]);
-            registers[PC] = (short) (registers[PC] + 2);
-            address = clamp(registers[registerNumber] + word);
+            final var index = readIndexWord();
+            address = clamp(registers[registerNumber] + index);
             break;
         }
 
@@ -607,9 +696,8 @@ public class Cpu {
         }
 
         case INDEXED_INDIRECT: {
-            final var nextWord = readWord(registers[PC]);
-            registers[PC] = (short) (registers[PC] + 2);
-            final var firstAddress = clamp(nextWord + registers[registerNumber]);
+            final var index = readIndexWord();
+            final var firstAddress = clamp(index + registers[registerNumber]);
             address = Shorts.toUnsignedInt(readWord(firstAddress));
             break;
         }
@@ -618,6 +706,16 @@ public class Cpu {
         return address;
     }
 
+    /**
+     * Lê a palavra de índice apontada pelo PC, avança o PC e guarda a palavra para o MN.
+     */
+    short readIndexWord() {
+        final var index = readWord(registers[PC]);
+        registers[PC] = (short) (registers[PC] + 2);
+        indexWords = indexWords << 16 | index & 0xFFFF;
+        return index;
+    }
+
     public short getBreakPoint() {
         return breakPoint;
     }
@@ -630,14 +728,6 @@ public class Cpu {
         return getByte(Cpu.BEGIN_DISPLAY_ADDRESS + position);
     }
 
-    public int getLastChangedAddress() {
-        return lastChangedAddress;
-    }
-
-    public int getLastChangedMnemonic() {
-        return lastChangedMnemonic;
-    }
-
     public byte[] getMemory() {
         return memory;
     }
@@ -647,24 +737,344 @@ public class Cpu {
     }
 
     public String getMnemonic(final int address) {
-        return mnemonics[clamp(address)];
+        return disassembly.getMnemonic(clamp(address));
     }
 
-    public String[] getMnemonics() {
-        return mnemonics;
+    /**
+     * Indica se a desmontagem corrente começa uma instrução em address; nos outros endereços getMnemonic é vazio.
+     */
+    public boolean isInstructionStart(final int address) {
+        return disassembly.isInstructionStart(clamp(address));
     }
 
-    private Operand getOperand(final int mmm, final int rrr) {
-        final Operand operand;
-        final var mode = AddressMode.fromInt(mmm);
+    /**
+     * Calcula o operando e deixa o resultado em operandValue, operandAddress e operandMode.
+     */
+    private void getOperand(final AddressMode mode, final int rrr) {
+        operandMode = mode;
         if (mode == AddressMode.REGISTER) {
-            operand = new Operand(registers[rrr], rrr, AddressMode.REGISTER);
+            operandValue = registers[rrr];
+            operandAddress = rrr;
         }
         else {
             final var address = getAddress(mode, rrr);
-            operand = new Operand(readWord(address), address, mode);
+            operandValue = readWord(address);
+            operandAddress = address;
+        }
+    }
+
+    int getBreakPointVersion() {
+        return breakPointVersion;
+    }
+
+    boolean isBreakPoint(final int address) {
+        return (breakPoints[address >>> 6] & 1L << address) != 0;
+    }
+
+    /**
+     * Indica se a última instrução executada disparou um watchpoint. Usado pelos motores para encerrar o bloco.
+     */
+    boolean isWatchPointTriggered() {
+        return watchPointTriggered;
+    }
+
+    /**
+     * Caminho lento de readByte e writeByte, tomado só nas páginas marcadas. Com o perfilador habilitado todas as
+     * páginas ficam marcadas e é aqui que os acessos são contados; desabilitado, o caminho rápido fica como era. Com o
+     * histórico habilitado, todas as páginas de escrita ficam marcadas e é aqui que o valor antigo é gravado.
+     */
+    private void onWatchedAccess(final int address, final boolean write, final byte oldValue, final byte newValue) {
+        if (write && history != null) {
+            history.recordWrite(address, oldValue);
+        }
+        if (replaying) {
+            return;
+        }
+        if (profilingEnabled) {
+            if (write) {
+                profiler.countWrite(address);
+            }
+            else {
+                profiler.countRead(address);
+            }
+        }
+        checkWatchPoints(address, write, oldValue, newValue);
+    }
+
+    private void checkWatchPoints(final int address, final boolean write, final byte oldValue, final byte newValue) {
+        if (watchPointTriggered) {
+            // Só o primeiro acesso da instrução é relatado.
+            return;
+        }
+        for (final var watchPoint : watchPoints) {
+            if (watchPoint.contains(address) && (write ? watchPoint.isOnWrite() : watchPoint.isOnRead())) {
+                watchPointHit = new WatchPointHit(watchPoint, instructionAddress, address, write, oldValue, newValue);
+                watchPointTriggered = true;
+                return;
+            }
+        }
+    }
+
+    public void addWatchPoint(final WatchPoint watchPoint) {
+        watchPoints.add(watchPoint);
+        updateWatchPages();
+    }
+
+    public void removeWatchPoint(final WatchPoint watchPoint) {
+        watchPoints.remove(watchPoint);
+        updateWatchPages();
+    }
+
+    public void clearWatchPoints() {
+        watchPoints.clear();
+        updateWatchPages();
+    }
+
+    public List<WatchPoint> getWatchPoints() {
+        return Collections.unmodifiableList(watchPoints);
+    }
+
+    /**
+     * Último acesso que disparou um watchpoint, ou null se nenhum disparou ainda.
+     */
+    public WatchPointHit getWatchPointHit() {
+        return watchPointHit;
+    }
+
+    private void updateWatchPages() {
+        if (profilingEnabled) {
+            Arrays.fill(readWatchPages, -1L);
+            Arrays.fill(writeWatchPages, -1L);
+            return;
+        }
+        Arrays.fill(readWatchPages, 0L);
+        Arrays.fill(writeWatchPages, 0L);
+        for (final var watchPoint : watchPoints) {
+            for (int page = watchPoint.getStart() >>> WATCH_PAGE_SHIFT;
+                 page <= watchPoint.getEnd() >>> WATCH_PAGE_SHIFT; ++page) {
+                if (watchPoint.isOnRead()) {
+                    readWatchPages[page >>> 6] |= 1L << page;
+                }
+                if (watchPoint.isOnWrite()) {
+                    writeWatchPages[page >>> 6] |= 1L << page;
+                }
+            }
+        }
+        if (history != null) {
+            Arrays.fill(writeWatchPages, -1L);
+        }
+    }
+
+    /**
+     * Liga ou desliga o perfilador. Enquanto ligado, as instruções rodam no ProfilingEngine, que conta as execuções
+     * por endereço, e todo acesso à memória passa pelo caminho lento dos watchpoints, que conta leituras e escritas.
+     * As contagens são mantidas ao desligar.
+     */
+    public void setProfilingEnabled(final boolean enabled) {
+        if (enabled == profilingEnabled) {
+            return;
+        }
+        if (enabled && profiler == null) {
+            profiler = new Profiler();
+        }
+        profilingEnabled = enabled;
+        updateEngine();
+        updateWatchPages();
+    }
+
+    private void updateEngine() {
+        if (history != null) {
+            engine = new HistoryEngine(this, profilingEnabled ? profiler : null);
+        }
+        else if (profilingEnabled) {
+            engine = new ProfilingEngine(this, profiler);
+        }
+        else {
+            engine = defaultEngine;
+        }
+    }
+
+    public boolean isProfilingEnabled() {
+        return profilingEnabled;
+    }
+
+    /**
+     * Contagens do perfilador, ou null se ele nunca foi habilitado.
+     */
+    public Profiler getProfiler() {
+        return profiler;
+    }
+
+    /**
+     * Liga ou desliga o histórico usado por stepBack e runBack. Enquanto ligado, as instruções rodam no HistoryEngine,
+     * que grava o estado que cada uma vai mudar, e todas as escritas na memória passam pelo caminho lento dos
+     * watchpoints. Desligar descarta o histórico e volta ao motor anterior.
+     */
+    public void setHistoryEnabled(final boolean enabled) {
+        if (enabled == (history != null)) {
+            return;
+        }
+        history = enabled ? new ExecutionHistory(this) : null;
+        updateEngine();
+        updateWatchPages();
+    }
+
+    public boolean isHistoryEnabled() {
+        return history != null;
+    }
+
+    public boolean canStepBack() {
+        return history != null && history.canStepBack();
+    }
+
+    /**
+     * Desfaz a última instrução executada, voltando registradores, flags, memória, contagem de acessos e RI ao que
+     * eram antes dela. Os breakpoints não mudam.
+     *
+     * @return se havia uma instrução no histórico para voltar
+     */
+    public boolean stepBack() {
+        return history != null && history.stepBack();
+    }
+
+    /**
+     * Volta instruções até maxInstructions, até o início do histórico, até a política pedir ou até o PC parar sobre
+     * um breakpoint, como se a execução tivesse parado nele.
+     * <p>
+     * O resultado é BREAK_POINT se parou num breakpoint e OK nos outros casos; a contagem de acessos do resultado é a
+     * dos acessos desfeitos.
+     */
+    public RunResult runBack(final long maxInstructions, final StopPolicy policy) {
+        final var initialAccessCount = memoryAccessCount;
+        var instructionCount = 0L;
+        var result = ExecutionResult.OK;
+        while (instructionCount < maxInstructions && !policy.shouldStop() && stepBack()) {
+            ++instructionCount;
+            if (isBreakPoint(getProgramCounter())) {
+                result = ExecutionResult.BREAK_POINT;
+                break;
+            }
+        }
+        return new RunResult(result, instructionCount, initialAccessCount - memoryAccessCount, getProgramCounter());
+    }
+
+    private void resetHistory() {
+        if (history != null) {
+            history.reset();
+        }
+    }
+
+    /**
+     * Chamado pelo histórico para desfazer um byte escrito por uma instrução.
+     */
+    void undoWrite(final int address, final byte oldValue) {
+        putByte(address, oldValue);
+    }
+
+    /**
+     * Chamado pelo histórico para desfazer a alteração de um registrador por uma instrução.
+     */
+    void undoRegisterWrite(final int registerNumber, final short oldValue) {
+        registers[registerNumber] = oldValue;
+    }
+
+    /**
+     * Chamado pelo histórico, depois de desfeitas as escritas da instrução, com o estado de antes dela.
+     */
+    void undoInstruction(final short savedProgramCounter, final long savedConditionRegister,
+                         final int savedMemoryAccessCount, final int savedInstructionAddress, final byte firstByte,
+                         final byte secondByte, final int savedFetchedByteCount, final int savedIndexWords) {
+        registers[PC] = savedProgramCounter;
+        conditionRegister.load(savedConditionRegister);
+        memoryAccessCount = savedMemoryAccessCount;
+        instructionAddress = savedInstructionAddress;
+        fetchedBytes[0] = firstByte;
+        fetchedBytes[1] = secondByte;
+        fetchedByteCount = savedFetchedByteCount;
+        indexWords = savedIndexWords;
+        readInstruction = null;
+        readMnemonic = null;
+    }
+
+    /**
+     * Grava no histórico o estado de antes da instrução: PC, registrador de estado, contagem de acessos, o que a
+     * instrução anterior leu (para o RI e o MN) e os registradores que ela pode alterar. Chamado pelo HistoryEngine
+     * antes de executá-la.
+     */
+    void recordInstruction(final DecodedInstruction decoded) {
+        history.beginInstruction(registers[PC], conditionRegister.save(), memoryAccessCount, instructionAddress,
+            fetchedBytes[0], fetchedBytes[1], fetchedByteCount, indexWords);
+        var written = decoded.writtenRegisters;
+        while (written != 0) {
+            final var registerNumber = Integer.numberOfTrailingZeros(written);
+            history.recordRegisterWrite(registerNumber, registers[registerNumber]);
+            written &= written - 1;
+        }
+    }
+
+    /**
+     * Executa de novo a instrução apontada pelo PC, gravando-a no histórico, mas ignorando breakpoints, watchpoints e
+     * o perfilador.
+     */
+    void replayInstruction() {
+        final var decoded = decodeCache.get(getProgramCounter());
+        replaying = true;
+        recordInstruction(decoded);
+        execute(decoded);
+        replaying = false;
+    }
+
+    public boolean hasBreakPoint(final int address) {
+        return isBreakPoint(clamp(address));
+    }
+
+    public void addBreakPoint(final int address) {
+        final var bp = clamp(address);
+        if (bp == Shorts.toUnsignedInt(breakPoint)) {
+            breakPointOnlyFromField = false;
+        }
+        setBreakPointBit(bp);
+    }
+
+    public void removeBreakPoint(final int address) {
+        final var bp = clamp(address);
+        if (bp == Shorts.toUnsignedInt(breakPoint)) {
+            breakPointOnlyFromField = false;
         }
-        return operand;
+        clearBreakPointBit(bp);
+    }
+
+    private void setBreakPointBit(final int address) {
+        breakPoints[address >>> 6] |= 1L << address;
+        ++breakPointVersion;
+    }
+
+    private void clearBreakPointBit(final int address) {
+        breakPoints[address >>> 6] &= ~(1L << address);
+        ++breakPointVersion;
+    }
+
+    /**
+     * Liga ou desliga o breakpoint do endereço.
+     *
+     * @return se o endereço ficou com breakpoint
+     */
+    public boolean toggleBreakPoint(final int address) {
+        if (hasBreakPoint(address)) {
+            removeBreakPoint(address);
+            return false;
+        }
+        addBreakPoint(address);
+        return true;
+    }
+
+    /**
+     * Remove todos os breakpoints, inclusive o do campo BP.
+     */
+    public void clearBreakPoints() {
+        Arrays.fill(breakPoints, 0L);
+        breakPointOnlyFromField = false;
+        ++breakPointVersion;
     }
 
     public int getProgramCounter() {
@@ -672,10 +1082,24 @@ public class Cpu {
     }
 
     public String getReadInstruction() {
-        return readInstruction.trim();
+        if (readInstruction == null) {
+            // TODO: Verificar se readInstruction pode ser hexadecimal
+            final var builder = new StringBuilder();
+            for (int i = 0; i < fetchedByteCount; ++i) {
+                if (i > 0) {
+                    builder.append(' ');
+                }
+                builder.append(Bytes.toUnsignedInt(fetchedBytes[i]));
+            }
+            readInstruction = builder.toString();
+        }
+        return readInstruction;
     }
 
     public String getReadMnemonic() {
+        if (readMnemonic == null) {
+            readMnemonic = Mnemonic.format(fetchedBytes[0], fetchedBytes[1], indexWords, new StringBuilder());
+        }
         return readMnemonic;
     }
 
@@ -683,8 +1107,29 @@ public class Cpu {
         return registers[registerNumber];
     }
 
-    public boolean hasMemoryChanged() {
-        return memoryChanged;
+    /**
+     * Entrega as faixas da memória escritas desde a última chamada (ou desde clearDirtyRanges), alinhadas a páginas
+     * de 64 bytes e em ordem crescente, e limpa o registro. Conta tanto as escritas das instruções quanto as feitas
+     * por setByte, setMemory, fillMemory, zeroMemory e copyMemory.
+     */
+    public void drainDirtyRanges(final RangeConsumer consumer) {
+        dirtyMemory.drain(consumer);
+    }
+
+    public void clearDirtyRanges() {
+        dirtyMemory.clear();
+    }
+
+    /**
+     * Como drainDirtyRanges, mas para as linhas da tabela do programa que mudaram: as faixas são exatas, incluem os
+     * bytes escritos e as instruções redesmontadas por causa deles, e vêm na ordem em que foram registradas.
+     */
+    public void drainChangedMnemonicRanges(final RangeConsumer consumer) {
+        disassembly.drainChanges(consumer);
+    }
+
+    public void clearChangedMnemonicRanges() {
+        disassembly.clearChanges();
     }
 
     public boolean hasOriginalMemoryChanged() {
@@ -709,10 +1154,15 @@ public class Cpu {
 
     private byte readByte(final int address) {
         ++memoryAccessCount;
-        return memory[clamp(address)];
+        final var clampedAddress = clamp(address);
+        final var value = memory[clampedAddress];
+        if ((readWatchPages[clampedAddress >>> 14] & 1L << (clampedAddress >>> WATCH_PAGE_SHIFT)) != 0) {
+            onWatchedAccess(clampedAddress, false, value, value);
+        }
+        return value;
     }
 
-    private short readWord(final int address) {
+    short readWord(final int address) {
         final short word;
         if (isIOAddress(address)) {
             word = Shorts.fromBytes(ZERO_BYTE, readByte(address));
@@ -725,51 +1175,186 @@ public class Cpu {
 
     // TODO: Habilitar a alteração do breakpoint na janela de programma
     public void setBreakPoint(final int bp) {
-        breakPoint = clampToShort(bp);
+        setBreakPoint(clampToShort(bp));
     }
 
+    /**
+     * Troca o breakpoint do campo BP: o novo entra no conjunto de breakpoints e o anterior sai, a menos que o usuário
+     * também o tenha marcado na coluna BP.
+     */
     public void setBreakPoint(final short bp) {
+        if (breakPointOnlyFromField) {
+            clearBreakPointBit(Shorts.toUnsignedInt(breakPoint));
+        }
         breakPoint = bp;
+        breakPointOnlyFromField = !isBreakPoint(Shorts.toUnsignedInt(bp));
+        setBreakPointBit(Shorts.toUnsignedInt(bp));
     }
 
     public void setByte(final int address, final byte value) {
-        memory[clamp(address)] = value;
-        memoryChanged = true;
-        lastChangedMnemonic = Mnemonic.updateMnemonics(this, address);
+        if (history != null) {
+            history.recordExternalWrite(clamp(address), memory[clamp(address)]);
+        }
+        putByte(clamp(address), value);
+    }
+
+    private void putByte(final int address, final byte value) {
+        memory[address] = value;
+        decodeCache.invalidate(address);
+        dirtyMemory.mark(address);
+        markSnapshotPages(address, address);
+        Mnemonic.updateMnemonics(this, address);
     }
 
     public void setMemory(final byte[] bytes) {
         assert bytes.length == MEMORY_SIZE;
+        resetHistory();
         System.arraycopy(bytes, 0, memory, 0, MEMORY_SIZE);
+        decodeCache.clear();
+        dirtyMemory.mark(FIRST_ADDRESS, LAST_ADDRESS);
+        markSnapshotPages(FIRST_ADDRESS, LAST_ADDRESS);
         if (!originalMemoryChanged) {
             System.arraycopy(bytes, 0, originalMemory, 0, MEMORY_SIZE);
             originalMemoryChanged = true;
         }
-        Mnemonic.updateMnemonics(this, 0, true);
+        disassembly.rebuild();
     }
 
+    /**
+     * Carrega bytes[start..end] a partir do endereço target, cortando no fim da memória.
+     */
     public void setMemory(final byte[] bytes, final int start, final int end, final int target) {
         assert end <= MEMORY_SIZE;
-        if (originalMemoryChanged) {
-            for (int i = target, j = start; i < MEMORY_SIZE && j <= end; ++i, ++j) {
-                memory[i] = bytes[j];
-            }
+        final var length = Math.min(end - start + 1, MEMORY_SIZE - target);
+        if (length <= 0) {
+            return;
         }
-        else {
-            for (int i = target, j = start; i < MEMORY_SIZE && j <= end; ++i, ++j) {
-                memory[i] = bytes[j];
-                originalMemory[i] = bytes[j];
-            }
+        resetHistory();
+        System.arraycopy(bytes, start, memory, target, length);
+        if (!originalMemoryChanged) {
+            System.arraycopy(bytes, start, originalMemory, target, length);
             originalMemoryChanged = true;
         }
-        Mnemonic.updateMnemonics(this, 0, true);
+        memoryChanged(target, target + length - 1);
+    }
+
+    /**
+     * Registra uma alteração em bloco na memória: invalida as instruções decodificadas, marca as páginas sujas e
+     * refaz a desmontagem da faixa uma vez só.
+     */
+    private void memoryChanged(final int startAddress, final int endAddress) {
+        decodeCache.invalidate(startAddress, endAddress);
+        dirtyMemory.mark(startAddress, endAddress);
+        markSnapshotPages(startAddress, endAddress);
+        Mnemonic.updateMnemonics(this, startAddress, endAddress);
+    }
+
+    private void markSnapshotPages(final int startAddress, final int endAddress) {
+        for (int page = startAddress >>> MachineSnapshot.PAGE_SHIFT;
+             page <= endAddress >>> MachineSnapshot.PAGE_SHIFT; ++page) {
+            snapshotDirtyPages[page >>> 6] |= 1L << page;
+        }
+    }
+
+    private boolean isSnapshotPageDirty(final int page) {
+        return (snapshotDirtyPages[page >>> 6] & 1L << page) != 0;
+    }
+
+    /**
+     * Copia o estado completo da máquina. Só as páginas escritas desde a cópia anterior são copiadas; as outras são
+     * compartilhadas com ela.
+     */
+    public MachineSnapshot snapshot() {
+        final var pages = new byte[MachineSnapshot.PAGE_COUNT][];
+        for (int page = 0; page < MachineSnapshot.PAGE_COUNT; ++page) {
+            if (snapshotPages != null && !isSnapshotPageDirty(page)) {
+                pages[page] = snapshotPages[page];
+            }
+            else {
+                final var start = page << MachineSnapshot.PAGE_SHIFT;
+                pages[page] = Arrays.copyOfRange(memory, start, start + MachineSnapshot.PAGE_SIZE);
+            }
+        }
+        Arrays.fill(snapshotDirtyPages, 0L);
+        snapshotPages = pages;
+
+        if (snapshotBreakPoints == null || snapshotBreakPointVersion != breakPointVersion) {
+            snapshotBreakPoints = breakPoints.clone();
+            snapshotBreakPointVersion = breakPointVersion;
+        }
+
+        return new MachineSnapshot(pages, registers.clone(), conditionRegister.getFlags(), snapshotBreakPoints,
+                breakPoint, breakPointOnlyFromField, memoryAccessCount, instructionAddress, fetchedBytes.clone(),
+                fetchedByteCount, indexWords);
     }
 
-    public void setMnemonic(final int address, final String value) {
-        mnemonics[clamp(address)] = value;
+    /**
+     * Volta ao estado guardado em snapshot. Só as páginas cujo conteúdo é diferente do atual são copiadas de volta,
+     * e só elas são redesmontadas e aparecem nas faixas sujas. O histórico de execução é descartado.
+     */
+    public void restore(final MachineSnapshot snapshot) {
+        resetHistory();
+        restore(snapshot, true);
+    }
+
+    /**
+     * Como restore, mas mantém os breakpoints atuais: voltar na execução não desfaz os breakpoints do usuário.
+     */
+    void restoreHistorySnapshot(final MachineSnapshot snapshot) {
+        restore(snapshot, false);
+    }
+
+    private void restore(final MachineSnapshot snapshot, final boolean restoreBreakPoints) {
+        var runStart = -1;
+        for (int page = 0; page <= MachineSnapshot.PAGE_COUNT; ++page) {
+            var changed = false;
+            if (page < MachineSnapshot.PAGE_COUNT) {
+                final var start = page << MachineSnapshot.PAGE_SHIFT;
+                final var source = snapshot.pages[page];
+                final var shared = snapshotPages != null && snapshotPages[page] == source && !isSnapshotPageDirty(page);
+                if (!shared && !Arrays.equals(source, 0, MachineSnapshot.PAGE_SIZE, memory, start,
+                        start + MachineSnapshot.PAGE_SIZE)) {
+                    System.arraycopy(source, 0, memory, start, MachineSnapshot.PAGE_SIZE);
+                    changed = true;
+                }
+            }
+            if (changed && runStart < 0) {
+                runStart = page;
+            }
+            else if (!changed && runStart >= 0) {
+                memoryChanged(runStart << MachineSnapshot.PAGE_SHIFT, (page << MachineSnapshot.PAGE_SHIFT) - 1);
+                runStart = -1;
+            }
+        }
+        // A memória agora é igual à da cópia, que passa a ser a base da próxima.
+        Arrays.fill(snapshotDirtyPages, 0L);
+        snapshotPages = snapshot.pages;
+
+        System.arraycopy(snapshot.registers, 0, registers, 0, REGISTER_COUNT);
+        conditionRegister.setFlags(snapshot.flags);
+
+        if (restoreBreakPoints) {
+            System.arraycopy(snapshot.breakPoints, 0, breakPoints, 0, breakPoints.length);
+            breakPoint = snapshot.breakPoint;
+            breakPointOnlyFromField = snapshot.breakPointOnlyFromField;
+            ++breakPointVersion;
+            snapshotBreakPoints = snapshot.breakPoints;
+            snapshotBreakPointVersion = breakPointVersion;
+        }
+
+        memoryAccessCount = snapshot.memoryAccessCount;
+        instructionAddress = snapshot.instructionAddress;
+        System.arraycopy(snapshot.fetchedBytes, 0, fetchedBytes, 0, fetchedBytes.length);
+        fetchedByteCount = snapshot.fetchedByteCount;
+        indexWords = snapshot.indexWords;
+        readInstruction = null;
+        readMnemonic = null;
     }
 
     public void setRegisterValue(final int registerNumber, final short value) {
+        if (history != null) {
+            history.recordExternalRegisterWrite(registerNumber, registers[registerNumber]);
+        }
         registers[registerNumber] = value;
     }
 
@@ -780,8 +1365,6 @@ public class Cpu {
         if (readByte(KEYBOARD_STATE_ADDRESS) == ZERO_BYTE) {
             setByte(KEYBOARD_STATE_ADDRESS, (byte) 0x80);
             setByte(KEYBOARD_INPUT_ADDRESS, keyValue);
-            memoryChanged = true;
-            lastChangedAddress = KEYBOARD_INPUT_ADDRESS;
         }
     }
 
@@ -797,29 +1380,44 @@ public class Cpu {
     }
 
     public void updateMnemonics() {
-        Mnemonic.updateMnemonics(this, 0, true);
+        disassembly.rebuild();
     }
 
     private void writeByte(final int address, final byte value) {
         ++memoryAccessCount;
-        memory[clamp(address)] = value;
+        final var clampedAddress = clamp(address);
+        if ((writeWatchPages[clampedAddress >>> 14] & 1L << (clampedAddress >>> WATCH_PAGE_SHIFT)) != 0) {
+            onWatchedAccess(clampedAddress, true, memory[clampedAddress], value);
+        }
+        memory[clampedAddress] = value;
+        decodeCache.invalidate(clampedAddress);
+        dirtyMemory.mark(clampedAddress);
+        snapshotDirtyPages[clampedAddress >>> 14] |= 1L << (clampedAddress >>> MachineSnapshot.PAGE_SHIFT);
     }
 
-    private void writeWord(final int address, final short word) {
-        final var bytes = Shorts.toBytes(word);
+    void writeWord(final int address, final short word) {
+        final var lsb = (byte) word;
         if (isIOAddress(address)) {
-            writeByte(address, bytes[1]);
+            writeByte(address, lsb);
         }
         else {
-            writeByte(address, bytes[0]);
-            writeByte(address + 1, bytes[1]);
+            writeByte(address, (byte) (word >> 8));
+            writeByte(address + 1, lsb);
+        }
+        final var firstAddress = clamp(address);
+        final var lastAddress = isIOAddress(address) ? firstAddress : clamp(address + 1);
+        if (lastAddress >= firstAddress) {
+            Mnemonic.updateMnemonics(this, firstAddress, lastAddress);
+        }
+        else {
+            // A palavra passou do fim da memória e o segundo byte foi parar no endereço 0.
+            Mnemonic.updateMnemonics(this, firstAddress);
+            Mnemonic.updateMnemonics(this, lastAddress);
         }
-        lastChangedMnemonic = Mnemonic.updateMnemonics(this, address);
     }
 
     public void zeroMemory(final int startAddress, final int endAddress) {
-        Arrays.fill(memory, startAddress, endAddress + 1, ZERO_BYTE);
-        updateMnemonics();
+        fillMemory(startAddress, endAddress, ZERO_BYTE);
     }
 
     // enum CpuReturnInstruction {
@@ -0,0 +1,101 @@
+package cesar.models;
+
+import java.util.Arrays;
+
+/**
+ * Cache de instruções decodificadas, com uma posição por endereço de memória.
+ * <p>
+ * Um mapa de bits marca os bytes que fazem parte de alguma instrução decodificada, de modo que uma escrita na memória
+ * só custa um teste de bit quando não atinge código.
+ * <p>
+ * Cada página de PAGE_SIZE bytes tem uma versão, incrementada quando algum código decodificado nela é invalidado. Os
+ * blocos básicos guardam as versões das páginas que ocupam, de modo que uma escrita sobre código só descarta os blocos
+ * da mesma página.
+ */
+final class DecodeCache {
+    private final byte[] memory;
+    private final DecodedInstruction[] slots;
+    private final long[] codeBytes;
+
+    static final int PAGE_SHIFT = 8;
+    static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+
+    // Lido diretamente pelo código gerado pelo BlockCompiler.
+    final int[] pageVersions;
+
+    DecodeCache(final byte[] memory) {
+        this.memory = memory;
+        slots = new DecodedInstruction[Cpu.MEMORY_SIZE];
+        codeBytes = new long[Cpu.MEMORY_SIZE / Long.SIZE];
+        pageVersions = new int[Cpu.MEMORY_SIZE >> PAGE_SHIFT];
+    }
+
+    DecodedInstruction get(final int address) {
+        var slot = slots[address];
+        if (slot == null) {
+            slot = new DecodedInstruction();
+            slots[address] = slot;
+        }
+        if (!slot.valid) {
+            slot.decode(memory, address);
+            for (int i = 0; i < slot.length; ++i) {
+                final var codeAddress = (address + i) & Cpu.LAST_ADDRESS;
+                codeBytes[codeAddress >>> 6] |= 1L << codeAddress;
+            }
+        }
+        return slot;
+    }
+
+    /**
+     * Deve ser chamado sempre que o byte em address for alterado.
+     */
+    void invalidate(final int address) {
+        if ((codeBytes[address >>> 6] & 1L << address) != 0) {
+            invalidateSlots(address);
+        }
+    }
+
+    void invalidate(final int startAddress, final int endAddress) {
+        var address = startAddress;
+        while (address <= endAddress) {
+            // Blocos de 64 endereços sem nenhum byte de código são pulados de uma vez.
+            if (codeBytes[address >>> 6] == 0) {
+                address = (address | 63) + 1;
+            }
+            else {
+                invalidate(address);
+                ++address;
+            }
+        }
+    }
+
+    int getPageVersion(final int page) {
+        return pageVersions[page];
+    }
+
+    void clear() {
+        for (int page = 0; page < pageVersions.length; ++page) {
+            ++pageVersions[page];
+        }
+        Arrays.fill(codeBytes, 0L);
+        for (final DecodedInstruction slot : slots) {
+            if (slot != null) {
+                slot.valid = false;
+            }
+        }
+    }
+
+    private void invalidateSlots(final int address) {
+        // Qualquer instrução que cubra address começa no máximo MAX_LENGTH - 1 bytes antes.
+        for (int i = 0; i < DecodedInstruction.MAX_LENGTH; ++i) {
+            final var slot = slots[(address - i) & Cpu.LAST_ADDRESS];
+            if (slot != null) {
+                slot.valid = false;
+            }
+        }
+        codeBytes[address >>> 6] &= ~(1L << address);
+        // Uma instrução que começa na página anterior e cobre address também está na página de address, porque os
+        // blocos contam as páginas de todos os bytes das suas instruções.
+        ++pageVersions[address >>> PAGE_SHIFT];
+    }
+}
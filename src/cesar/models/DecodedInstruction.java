@@ -0,0 +1,243 @@
+package cesar.models;
+
+import cesar.utils.Shorts;
+
+/**
+ * Instrução já decodificada a partir de um endereço da memória.
+ * <p>
+ * Guarda tudo o que pode ser calculado sem executar a instrução: o código, os modos de endereçamento, os
+ * registradores e quantos bytes do fluxo de instruções ela ocupa. As palavras de índice (ddd) não entram aqui: a
+ * execução as lê da memória, como qualquer outro operando.
+ */
+final class DecodedInstruction {
+    // Bytes de código; as palavras de índice não fazem parte da decodificação.
+    static final int MAX_LENGTH = 2;
+
+    boolean valid;
+
+    int address;
+    Cpu.Instruction instruction;
+    Cpu.BranchInstruction branchInstruction;
+    Cpu.OneOperandInstruction oneOperandInstruction;
+
+    // Registrador codificado no primeiro byte (SOB, JSR e RTS).
+    int register;
+    // Deslocamento dos desvios condicionais e do SOB.
+    byte offset;
+
+    AddressMode srcMode;
+    int srcRegister;
+
+    AddressMode dstMode;
+    int dstRegister;
+
+    byte firstByte;
+    byte secondByte;
+    int fetchedByteCount;
+
+    // Quantidade de bytes a partir de address que, se alterados, invalidam esta decodificação.
+    int length;
+
+    // Endereço da instrução seguinte quando esta não desvia e não escreve no PC.
+    int nextAddress;
+
+    boolean endOfMemory;
+
+    // Registradores, exceto o PC, que a execução pode alterar, um bit por registrador. Usado pelo histórico.
+    int writtenRegisters;
+
+    void decode(final byte[] memory, final int address) {
+        this.address = address;
+        branchInstruction = null;
+        oneOperandInstruction = null;
+        register = 0;
+        offset = 0;
+        srcMode = AddressMode.REGISTER;
+        srcRegister = 0;
+        dstMode = AddressMode.REGISTER;
+        dstRegister = 0;
+        secondByte = 0;
+        endOfMemory = false;
+        writtenRegisters = 0;
+
+        firstByte = memory[address];
+        fetchedByteCount = 1;
+        length = 1;
+        final var opCode = OpCode.fromByte(firstByte);
+        instruction = opCode.instruction;
+        nextAddress = (address + 1) & Cpu.LAST_ADDRESS;
+        valid = true;
+
+        if (address == Cpu.LAST_ADDRESS) {
+            endOfMemory = true;
+            return;
+        }
+
+        switch (instruction) {
+        case NOP:
+        case CCC:
+        case SCC:
+        case HLT:
+            break;
+
+        case CONDITIONAL_BRANCH:
+            branchInstruction = opCode.branchInstruction;
+            offset = fetchSecondByte(memory);
+            break;
+
+        case SOB:
+            register = opCode.register;
+            offset = fetchSecondByte(memory);
+            break;
+
+        case RETURN_INSTRUCTION:
+            register = opCode.register;
+            break;
+
+        case JMP:
+        case JSR:
+        case ONE_OPERAND_INSTRUCTION: {
+            // Só o JSR tem registrador no primeiro byte; no JMP e nas instruções de um operando o OpCode traz 0.
+            register = opCode.register;
+            oneOperandInstruction = opCode.oneOperandInstruction;
+            final var nextByte = fetchSecondByte(memory);
+            if (endOfMemory) {
+                break;
+            }
+            dstMode = AddressMode.fromInt((nextByte & 0b0011_1000) >> 3);
+            dstRegister = nextByte & 0b0000_0111;
+            nextAddress = (address + pcOffsetAfter(dstMode, dstRegister, fetchedByteCount)) & Cpu.LAST_ADDRESS;
+            break;
+        }
+
+        case MOV:
+        case ADD:
+        case SUB:
+        case CMP:
+        case AND:
+        case OR: {
+            final var nextByte = fetchSecondByte(memory);
+            if (endOfMemory) {
+                break;
+            }
+            final var word = Shorts.toUnsignedInt(Shorts.fromBytes(firstByte, nextByte));
+            srcMode = AddressMode.fromInt((word & 0b0000_1110_0000_0000) >> 9);
+            srcRegister = (word & 0b0000_0001_1100_0000) >> 6;
+            dstMode = AddressMode.fromInt((word & 0b0000_0000_0011_1000) >> 3);
+            dstRegister = word & 0b0000_0000_0000_0111;
+            final var dstOffset = pcOffsetAfter(srcMode, srcRegister, fetchedByteCount);
+            nextAddress = (address + pcOffsetAfter(dstMode, dstRegister, dstOffset)) & Cpu.LAST_ADDRESS;
+            break;
+        }
+        }
+
+        if (!endOfMemory) {
+            writtenRegisters = findWrittenRegisters() & ~(1 << Cpu.PC);
+        }
+    }
+
+    private int findWrittenRegisters() {
+        switch (instruction) {
+        case SOB:
+            return 1 << register;
+        case JMP:
+            return dstMode == AddressMode.REGISTER ? 0 : changedByAddressing(dstMode, dstRegister);
+        case JSR:
+            return dstMode == AddressMode.REGISTER ? 0
+                : changedByAddressing(dstMode, dstRegister) | 1 << register | 1 << Cpu.SP;
+        case RETURN_INSTRUCTION:
+            // RTI não faz nada.
+            return firstByte == (byte) 0b0111_1000 ? 0 : 1 << register | 1 << Cpu.SP;
+        case ONE_OPERAND_INSTRUCTION:
+            return dstMode == AddressMode.REGISTER && oneOperandInstruction != Cpu.OneOperandInstruction.TST
+                ? 1 << dstRegister : changedByAddressing(dstMode, dstRegister);
+        case MOV:
+        case ADD:
+        case SUB:
+        case CMP:
+        case AND:
+        case OR:
+            return changedByAddressing(srcMode, srcRegister)
+                   | (dstMode == AddressMode.REGISTER ? 1 << dstRegister : changedByAddressing(dstMode, dstRegister));
+        default:
+            return 0;
+        }
+    }
+
+    /**
+     * Registrador incrementado ou decrementado ao calcular o endereço de um operando, como bit.
+     */
+    private static int changedByAddressing(final AddressMode mode, final int registerNumber) {
+        switch (mode) {
+        case REGISTER_POST_INCREMENTED:
+        case REGISTER_PRE_DECREMENTED:
+        case POST_INCREMENTED_INDIRECT:
+        case PRE_DECREMENTED_INDIRECT:
+            return 1 << registerNumber;
+        default:
+            return 0;
+        }
+    }
+
+    private byte fetchSecondByte(final byte[] memory) {
+        secondByte = memory[(address + 1) & Cpu.LAST_ADDRESS];
+        fetchedByteCount = 2;
+        length = 2;
+        nextAddress = (address + 2) & Cpu.LAST_ADDRESS;
+        if (address + 1 == Cpu.LAST_ADDRESS) {
+            endOfMemory = true;
+        }
+        return secondByte;
+    }
+
+    /**
+     * Indica se a execução desta instrução pode levar o PC para outro lugar que não nextAddress.
+     */
+    boolean isControlTransfer() {
+        if (endOfMemory) {
+            return true;
+        }
+        switch (instruction) {
+        case CONDITIONAL_BRANCH:
+        case JMP:
+        case SOB:
+        case JSR:
+        case RETURN_INSTRUCTION:
+        case HLT:
+            return true;
+        case ONE_OPERAND_INSTRUCTION:
+            return dstMode == AddressMode.REGISTER && dstRegister == Cpu.PC
+                && oneOperandInstruction != Cpu.OneOperandInstruction.TST;
+        case MOV:
+        case ADD:
+        case SUB:
+        case AND:
+        case OR:
+            return dstMode == AddressMode.REGISTER && dstRegister == Cpu.PC;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Deslocamento do PC em relação ao início da instrução depois de calcular um operando.
+     */
+    private static int pcOffsetAfter(final AddressMode mode, final int registerNumber, final int pcOffset) {
+        if (mode.isIndexed()) {
+            return pcOffset + 2;
+        }
+        if (registerNumber == Cpu.PC) {
+            switch (mode) {
+            case REGISTER_POST_INCREMENTED:
+            case POST_INCREMENTED_INDIRECT:
+                return pcOffset + 2;
+            case REGISTER_PRE_DECREMENTED:
+            case PRE_DECREMENTED_INDIRECT:
+                return pcOffset - 2;
+            default:
+                break;
+            }
+        }
+        return pcOffset;
+    }
+}
@@ -0,0 +1,61 @@
+package cesar.models;
+
+import java.util.Arrays;
+
+/**
+ * Páginas de 64 bytes da memória alteradas desde a última vez que o registro foi esvaziado, um bit por página.
+ * <p>
+ * Marcar custa um OR, então pode ser feito em toda escrita; quem observa a memória esvazia o registro no ritmo que
+ * quiser e recebe as faixas de páginas sujas já unidas.
+ */
+final class DirtyTracker {
+    private static final int PAGE_SHIFT = 6;
+    private static final int PAGE_COUNT = Cpu.MEMORY_SIZE >> PAGE_SHIFT;
+
+    private final long[] pages;
+
+    // Cópia usada durante drain, para que o consumidor possa voltar a marcar páginas sem perder as marcas.
+    private final long[] draining;
+
+    DirtyTracker() {
+        pages = new long[PAGE_COUNT / Long.SIZE];
+        draining = new long[PAGE_COUNT / Long.SIZE];
+    }
+
+    void mark(final int address) {
+        pages[address >>> (PAGE_SHIFT + 6)] |= 1L << (address >>> PAGE_SHIFT);
+    }
+
+    void mark(final int startAddress, final int endAddress) {
+        for (int page = startAddress >>> PAGE_SHIFT; page <= endAddress >>> PAGE_SHIFT; ++page) {
+            pages[page >>> 6] |= 1L << page;
+        }
+    }
+
+    void clear() {
+        Arrays.fill(pages, 0L);
+    }
+
+    /**
+     * Entrega as faixas de páginas sujas consecutivas, em ordem crescente de endereço, e limpa o registro.
+     */
+    void drain(final Cpu.RangeConsumer consumer) {
+        System.arraycopy(pages, 0, draining, 0, pages.length);
+        Arrays.fill(pages, 0L);
+
+        var runStart = -1;
+        for (int page = 0; page < PAGE_COUNT; ++page) {
+            final var dirty = (draining[page >>> 6] & 1L << page) != 0;
+            if (dirty && runStart < 0) {
+                runStart = page;
+            }
+            else if (!dirty && runStart >= 0) {
+                consumer.accept(runStart << PAGE_SHIFT, (page << PAGE_SHIFT) - 1);
+                runStart = -1;
+            }
+        }
+        if (runStart >= 0) {
+            consumer.accept(runStart << PAGE_SHIFT, Cpu.LAST_ADDRESS);
+        }
+    }
+}
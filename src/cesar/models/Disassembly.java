@@ -0,0 +1,190 @@
+package cesar.models;
+
+import java.util.Arrays;
+
+/**
+ * Desmontagem da memória guardada de forma compacta: um bit por endereço que começa uma instrução e o tamanho de
+ * cada instrução. Os textos só são montados quando alguém pede por eles (na prática, as linhas que a tabela do
+ * programa desenha), e os últimos textos montados ficam num cache de mapeamento direto pelo endereço. As linhas
+ * visíveis numa tabela são consecutivas, então nunca disputam a mesma posição do cache.
+ * <p>
+ * Cada texto guardado no cache leva junto os bytes da instrução de onde saiu e só é usado enquanto a memória tiver
+ * os mesmos bytes, então as escritas não precisam invalidar nada.
+ * <p>
+ * Os inícios formam sempre uma partição da memória. Depois de uma escrita, update recua até o início da instrução
+ * que contém o primeiro byte alterado e redecodifica só até reencontrar um início antigo depois do último byte
+ * alterado: como o tamanho de uma instrução só depende dos próprios bytes, dali em diante a partição antiga continua
+ * valendo. As linhas refeitas ficam registradas, exatas, até alguém esvaziar o registro com drainChanges.
+ */
+final class Disassembly {
+    private static final int CACHE_SIZE = 2048;
+    static final int MAX_INSTRUCTION_LENGTH = 6;
+    // Acima disso as faixas registradas são juntadas numa só, para que uma execução longa não faça a lista crescer.
+    private static final int MAX_CHANGED_RANGES = 64;
+    private static final String EMPTY_STRING = "";
+
+    private final Cpu cpu;
+    private final long[] instructionStarts;
+    private final byte[] lengths;
+    // Posição address & (CACHE_SIZE - 1): o texto e os bytes da instrução (com o tamanho) de onde ele saiu.
+    private final String[] cachedTexts;
+    private final long[] cachedBytes;
+
+    // Reaproveitado por todos os textos montados. O builder e o cache só são usados por quem lê os textos (a thread
+    // do Swing); instructionStarts, lengths e a memória são escritos ao mesmo tempo pela thread de execução.
+    private final StringBuilder builder;
+
+    // Faixas de linhas refeitas desde o último drainChanges, em ordem de registro.
+    private final int[] changedStarts;
+    private final int[] changedEnds;
+    private int changedCount;
+
+    Disassembly(final Cpu cpu) {
+        this.cpu = cpu;
+        instructionStarts = new long[Cpu.MEMORY_SIZE / Long.SIZE];
+        lengths = new byte[Cpu.MEMORY_SIZE];
+        builder = new StringBuilder();
+        changedStarts = new int[MAX_CHANGED_RANGES];
+        changedEnds = new int[MAX_CHANGED_RANGES];
+        changedCount = 0;
+        cachedTexts = new String[CACHE_SIZE];
+        cachedBytes = new long[CACHE_SIZE];
+    }
+
+    boolean isInstructionStart(final int address) {
+        return (instructionStarts[address >>> 6] & 1L << address) != 0;
+    }
+
+    /**
+     * Marca address como início de uma instrução de length bytes; os endereços cobertos por ela deixam de ser
+     * inícios.
+     */
+    void setInstruction(final int address, final int length) {
+        instructionStarts[address >>> 6] |= 1L << address;
+        lengths[address] = (byte) length;
+        final var end = Math.min(address + length - 1, Cpu.LAST_ADDRESS);
+        for (int i = address + 1; i <= end; ++i) {
+            instructionStarts[i >>> 6] &= ~(1L << i);
+        }
+    }
+
+    /**
+     * Início da instrução que contém address. Só olha as MAX_INSTRUCTION_LENGTH - 1 linhas anteriores, que é o
+     * máximo que uma instrução pode cobrir.
+     */
+    int findInstructionStart(final int address) {
+        final var limit = Math.max(Cpu.FIRST_ADDRESS, address - MAX_INSTRUCTION_LENGTH + 1);
+        for (int row = address; row >= limit; --row) {
+            if (isInstructionStart(row)) {
+                return row + lengths[row] > address ? row : address;
+            }
+        }
+        return address;
+    }
+
+    /**
+     * Refaz a partição depois de uma escrita em [firstChanged, lastChanged] e devolve a última linha refeita.
+     */
+    int update(final int firstChanged, final int lastChanged) {
+        final var firstRow = findInstructionStart(firstChanged);
+        var row = firstRow;
+        while (row < Cpu.MEMORY_SIZE && (row <= lastChanged || !isInstructionStart(row))) {
+            final var length = Mnemonic.getInstructionLength(cpu, row);
+            setInstruction(row, length);
+            row += length;
+        }
+        final var lastRow = Math.min(row - 1, Cpu.LAST_ADDRESS);
+        recordChange(firstRow, lastRow);
+        return lastRow;
+    }
+
+    /**
+     * Desmonta a memória inteira de novo, a partir do endereço 0.
+     */
+    void rebuild() {
+        Arrays.fill(instructionStarts, 0L);
+        Arrays.fill(lengths, (byte) 0);
+        Arrays.fill(cachedTexts, null);
+        var row = Cpu.FIRST_ADDRESS;
+        while (row < Cpu.MEMORY_SIZE) {
+            final var length = Mnemonic.getInstructionLength(cpu, row);
+            setInstruction(row, length);
+            row += length;
+        }
+        changedCount = 0;
+        recordChange(Cpu.FIRST_ADDRESS, Cpu.LAST_ADDRESS);
+    }
+
+    private void recordChange(final int startRow, final int endRow) {
+        // Escritas seguidas na mesma região (uma pilha, um laço sobre um vetor) costumam cair na última faixa.
+        if (changedCount > 0) {
+            final var last = changedCount - 1;
+            if (startRow <= changedEnds[last] + 1 && endRow >= changedStarts[last] - 1) {
+                changedStarts[last] = Math.min(changedStarts[last], startRow);
+                changedEnds[last] = Math.max(changedEnds[last], endRow);
+                return;
+            }
+        }
+        if (changedCount == MAX_CHANGED_RANGES) {
+            var start = startRow;
+            var end = endRow;
+            for (int i = 0; i < changedCount; ++i) {
+                start = Math.min(start, changedStarts[i]);
+                end = Math.max(end, changedEnds[i]);
+            }
+            changedStarts[0] = start;
+            changedEnds[0] = end;
+            changedCount = 1;
+            return;
+        }
+        changedStarts[changedCount] = startRow;
+        changedEnds[changedCount] = endRow;
+        ++changedCount;
+    }
+
+    /**
+     * Entrega as faixas de linhas refeitas desde a última chamada e limpa o registro.
+     */
+    void drainChanges(final Cpu.RangeConsumer consumer) {
+        final var count = changedCount;
+        changedCount = 0;
+        for (int i = 0; i < count; ++i) {
+            consumer.accept(changedStarts[i], changedEnds[i]);
+        }
+    }
+
+    void clearChanges() {
+        changedCount = 0;
+    }
+
+    /**
+     * Texto da instrução que começa em address, ou texto vazio se address não começa uma instrução.
+     */
+    String getMnemonic(final int address) {
+        if (!isInstructionStart(address)) {
+            return EMPTY_STRING;
+        }
+        final var length = lengths[address];
+        final var bytes = packBytes(address, length);
+        // O texto só depende dos bytes, então basta compará-los, sem guardar o endereço. Ele é montado a partir dos
+        // mesmos bytes da chave, que a thread de execução pode alterar na memória enquanto isso.
+        final var slot = address & (CACHE_SIZE - 1);
+        final var cached = cachedTexts[slot];
+        if (cached != null && cachedBytes[slot] == bytes) {
+            return cached;
+        }
+        final var text = Mnemonic.format(bytes, length, builder);
+        cachedTexts[slot] = text;
+        cachedBytes[slot] = bytes;
+        return text;
+    }
+
+    // Até 6 bytes de instrução e o tamanho cabem num long.
+    private long packBytes(final int address, final int length) {
+        long packed = length;
+        for (int i = 0; i < length; ++i) {
+            packed = packed << 8 | cpu.getByte(address + i) & 0xFF;
+        }
+        return packed;
+    }
+}
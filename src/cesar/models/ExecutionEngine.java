@@ -0,0 +1,31 @@
+package cesar.models;
+
+/**
+ * Estratégia usada pelo Cpu para executar instruções.
+ */
+abstract class ExecutionEngine {
+    final Cpu cpu;
+
+    // Quantidade de instruções executadas pela última chamada a runBlock.
+    int executedInstructions;
+
+    ExecutionEngine(final Cpu cpu) {
+        this.cpu = cpu;
+    }
+
+    /**
+     * Executa a instrução apontada pelo PC, a menos que ele esteja sobre um breakpoint.
+     */
+    abstract Cpu.ExecutionResult step();
+
+    /**
+     * Executa, a partir do PC, tantas instruções quanto a estratégia conseguir sem voltar ao chamador (no máximo até
+     * o fim do bloco básico corrente, ou algumas voltas dele quando é um laço compilado, e nunca mais que
+     * maxInstructions, que é pelo menos 1). A quantidade executada fica em executedInstructions.
+     */
+    Cpu.ExecutionResult runBlock(final long maxInstructions) {
+        final var result = step();
+        executedInstructions = result == Cpu.ExecutionResult.BREAK_POINT ? 0 : 1;
+        return result;
+    }
+}
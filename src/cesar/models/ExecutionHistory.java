@@ -0,0 +1,260 @@
+package cesar.models;
+
+/**
+ * Histórico da execução, usado para voltar instruções.
+ * <p>
+ * No começo de cada instrução o HistoryEngine grava num buffer circular de longs, indexado pela instrução, o que ela
+ * sempre pode mudar: PC, registrador de estado, contagem de acessos e o que a instrução anterior leu (o RI e o MN).
+ * Os outros registradores que a decodificação diz que ela pode alterar, e depois cada byte que ela escreve, gravam o
+ * valor antigo num segundo buffer circular, de modo que o custo de uma instrução é proporcional ao que ela altera.
+ * Voltar uma instrução desfaz as escritas dela em ordem inversa e repõe o estado gravado no começo.
+ * <p>
+ * O buffer só guarda as instruções mais recentes. Para voltar além dele há cópias completas da máquina a cada
+ * SNAPSHOT_INTERVAL instruções (e logo depois de toda alteração feita de fora da execução): a última cópia antes do
+ * ponto desejado é restaurada e as instruções até ele são executadas de novo, o que também volta a preencher o buffer.
+ */
+final class ExecutionHistory {
+    // Tamanhos em potências de 2, para que a posição no buffer seja só uma máscara.
+    private static final int MAX_INSTRUCTIONS = 1 << 16;
+    private static final int WRITE_LOG_SIZE = 1 << 17;
+    private static final int SNAPSHOT_INTERVAL = 1 << 14;
+    private static final int MAX_SNAPSHOTS = 128;
+
+    // Longs por instrução em records: registrador de estado (ver ConditionRegister.save), busca anterior,
+    // posição da primeira escrita << 20 | PC << 4 | bytes buscados antes e palavras de índice lidas antes. Ficam juntos
+    // num único arranjo para que cada instrução pague uma só verificação de limites.
+    private static final int RECORD_SIZE = 4;
+
+    // Marca das escritas em registradores no buffer de escritas, que guardam número << 16 | valor antigo.
+    private static final long REGISTER_WRITE = 1L << 63;
+
+    private final Cpu cpu;
+
+    // Registros das instruções, a partir de (índice módulo MAX_INSTRUCTIONS) * RECORD_SIZE.
+    private final long[] records;
+
+    // Escritas em bytes (endereço << 8 | valor antigo) e em registradores, endereçadas pela posição absoluta módulo
+    // WRITE_LOG_SIZE. Uma posição menor que maxWriteEnd - WRITE_LOG_SIZE já foi sobrescrita: voltar instruções recua
+    // writeEnd, mas não desfaz o que foi sobrescrito.
+    private final long[] writeLog;
+    private long writeEnd;
+    private long maxWriteEnd;
+
+    // Instruções executadas desde que o histórico foi criado; é o índice do estado atual. Como nas escritas, o
+    // registro de uma instrução menor que maxInstructionCount - MAX_INSTRUCTIONS já foi sobrescrito.
+    private long instructionCount;
+    private long maxInstructionCount;
+
+    // Primeira instrução cujo registro ainda vale. As anteriores foram descartadas por reset ou por rewindTo.
+    private long firstInstruction;
+
+    // Cópias completas em ordem crescente de índice, guardadas num arranjo circular a partir de firstSnapshot.
+    private final MachineSnapshot[] snapshots;
+    private final long[] snapshotIndices;
+    private int firstSnapshot;
+    private int snapshotCount;
+
+    // Índice em que a próxima cópia deve ser feita, antes da instrução. Uma alteração que a reexecução não reproduziria
+    // antecipa a cópia para a próxima instrução.
+    private long nextSnapshot;
+
+    ExecutionHistory(final Cpu cpu) {
+        this.cpu = cpu;
+        records = new long[MAX_INSTRUCTIONS * RECORD_SIZE];
+        writeLog = new long[WRITE_LOG_SIZE];
+        writeEnd = 0;
+        maxWriteEnd = 0;
+        instructionCount = 0;
+        maxInstructionCount = 0;
+        firstInstruction = 0;
+        snapshots = new MachineSnapshot[MAX_SNAPSHOTS];
+        snapshotIndices = new long[MAX_SNAPSHOTS];
+        firstSnapshot = 0;
+        snapshotCount = 0;
+        nextSnapshot = 0;
+    }
+
+    /**
+     * Esquece todo o histórico. Usado quando o estado muda de uma vez, como ao carregar um arquivo.
+     */
+    void reset() {
+        discardInstructions();
+        clearSnapshots();
+        nextSnapshot = instructionCount;
+    }
+
+    /**
+     * Registra uma alteração feita de fora da execução. Se já há uma instrução no histórico, o byte antigo entra no
+     * registro dela, e voltar essa instrução também desfaz a alteração.
+     */
+    void recordExternalWrite(final int address, final byte oldValue) {
+        if (hasInstruction(instructionCount - 1)) {
+            recordWrite(address, oldValue);
+        }
+        nextSnapshot = instructionCount;
+    }
+
+    void recordExternalRegisterWrite(final int registerNumber, final short oldValue) {
+        if (hasInstruction(instructionCount - 1)) {
+            recordRegisterWrite(registerNumber, oldValue);
+        }
+        nextSnapshot = instructionCount;
+    }
+
+    /**
+     * Chamado pelo Cpu no começo de cada instrução, antes de qualquer alteração, com o estado que ela pode mudar.
+     */
+    void beginInstruction(final short programCounter, final long conditionRegister, final int memoryAccessCount,
+                          final int instructionAddress, final byte firstByte, final byte secondByte,
+                          final int fetchedByteCount, final int indexWords) {
+        if (instructionCount >= nextSnapshot) {
+            takeSnapshot();
+        }
+        final var record = recordOffset(instructionCount);
+        records[record] = conditionRegister;
+        records[record + 1] = memoryAccessCount & 0xFFFF_FFFFL | (long) instructionAddress << 32
+                              | (firstByte & 0xFFL) << 48 | (secondByte & 0xFFL) << 56;
+        records[record + 2] = writeEnd << 20 | (programCounter & 0xFFFFL) << 4 | fetchedByteCount;
+        records[record + 3] = indexWords;
+        ++instructionCount;
+    }
+
+    /**
+     * Chamado pelo Cpu a cada byte escrito por uma instrução, antes da escrita.
+     */
+    void recordWrite(final int address, final byte oldValue) {
+        writeLog[(int) writeEnd & WRITE_LOG_SIZE - 1] = (long) address << 8 | oldValue & 0xFF;
+        ++writeEnd;
+    }
+
+    /**
+     * Chamado pelo Cpu, logo depois de beginInstruction, para cada registrador, exceto o PC, que a instrução pode
+     * alterar.
+     */
+    void recordRegisterWrite(final int registerNumber, final short oldValue) {
+        writeLog[(int) writeEnd & WRITE_LOG_SIZE - 1] = REGISTER_WRITE | (long) registerNumber << 16
+                                                        | oldValue & 0xFFFF;
+        ++writeEnd;
+    }
+
+    boolean canStepBack() {
+        return hasInstruction(instructionCount - 1)
+               || snapshotCount > 0 && snapshotIndices[firstSnapshot] < instructionCount;
+    }
+
+    /**
+     * Volta uma instrução: pelo buffer, se ela ainda estiver nele, ou reexecutando desde a última cópia anterior.
+     *
+     * @return se havia uma instrução para voltar
+     */
+    boolean stepBack() {
+        if (hasInstruction(instructionCount - 1)) {
+            undoInstruction();
+            return true;
+        }
+        return instructionCount > 0 && rewindTo(instructionCount - 1);
+    }
+
+    private boolean hasInstruction(final long index) {
+        return index >= firstInstruction
+               && index >= Math.max(instructionCount, maxInstructionCount) - MAX_INSTRUCTIONS
+               && records[recordOffset(index) + 2] >>> 20 >= Math.max(writeEnd, maxWriteEnd) - WRITE_LOG_SIZE;
+    }
+
+    private void undoInstruction() {
+        markMaximums();
+        final var record = recordOffset(--instructionCount);
+        final var last = records[record + 2];
+        final var firstWrite = last >>> 20;
+        for (long i = writeEnd - 1; i >= firstWrite; --i) {
+            final var write = writeLog[(int) i & WRITE_LOG_SIZE - 1];
+            if ((write & REGISTER_WRITE) != 0) {
+                cpu.undoRegisterWrite((int) (write >>> 16) & 0x07, (short) write);
+            }
+            else {
+                cpu.undoWrite((int) (write >>> 8), (byte) write);
+            }
+        }
+        final var fetch = records[record + 1];
+        cpu.undoInstruction((short) (last >>> 4), records[record], (int) fetch, (int) (fetch >>> 32) & 0xFFFF,
+            (byte) (fetch >>> 48), (byte) (fetch >>> 56), (int) last & 0x0F, (int) records[record + 3]);
+        writeEnd = firstWrite;
+        dropSnapshotsAfter(instructionCount);
+    }
+
+    /**
+     * Restaura a última cópia até target e reexecuta as instruções que faltam, gravando-as de novo no buffer.
+     */
+    private boolean rewindTo(final long target) {
+        dropSnapshotsAfter(target);
+        if (snapshotCount == 0) {
+            return false;
+        }
+        final var last = lastSnapshot();
+        cpu.restoreHistorySnapshot(snapshots[last]);
+        instructionCount = snapshotIndices[last];
+        discardInstructions();
+        nextSnapshot = instructionCount + SNAPSHOT_INTERVAL;
+        while (instructionCount < target) {
+            cpu.replayInstruction();
+        }
+        return true;
+    }
+
+    /**
+     * Invalida os registros de todas as instruções até aqui. Como nenhum deles será lido de novo, os máximos voltam às
+     * posições atuais e o buffer inteiro fica para as próximas instruções.
+     */
+    private void discardInstructions() {
+        firstInstruction = instructionCount;
+        maxInstructionCount = instructionCount;
+        maxWriteEnd = writeEnd;
+    }
+
+    private void markMaximums() {
+        maxWriteEnd = Math.max(maxWriteEnd, writeEnd);
+        maxInstructionCount = Math.max(maxInstructionCount, instructionCount);
+    }
+
+    private void takeSnapshot() {
+        nextSnapshot = instructionCount + SNAPSHOT_INTERVAL;
+        final var snapshot = cpu.snapshot();
+        if (snapshotCount > 0 && snapshotIndices[lastSnapshot()] == instructionCount) {
+            snapshots[lastSnapshot()] = snapshot;
+            return;
+        }
+        if (snapshotCount == MAX_SNAPSHOTS) {
+            snapshots[firstSnapshot] = null;
+            firstSnapshot = (firstSnapshot + 1) % MAX_SNAPSHOTS;
+            --snapshotCount;
+        }
+        final var slot = (firstSnapshot + snapshotCount) % MAX_SNAPSHOTS;
+        snapshots[slot] = snapshot;
+        snapshotIndices[slot] = instructionCount;
+        ++snapshotCount;
+    }
+
+    private void dropSnapshotsAfter(final long index) {
+        while (snapshotCount > 0 && snapshotIndices[lastSnapshot()] > index) {
+            snapshots[lastSnapshot()] = null;
+            --snapshotCount;
+        }
+        final var next = snapshotCount == 0 ? index : snapshotIndices[lastSnapshot()] + SNAPSHOT_INTERVAL;
+        nextSnapshot = Math.min(nextSnapshot, next);
+    }
+
+    private void clearSnapshots() {
+        while (snapshotCount > 0) {
+            snapshots[lastSnapshot()] = null;
+            --snapshotCount;
+        }
+    }
+
+    private int lastSnapshot() {
+        return (firstSnapshot + snapshotCount - 1) % MAX_SNAPSHOTS;
+    }
+
+    private static int recordOffset(final long index) {
+        return ((int) index & MAX_INSTRUCTIONS - 1) * RECORD_SIZE;
+    }
+}
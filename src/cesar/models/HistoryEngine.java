@@ -0,0 +1,30 @@
+package cesar.models;
+
+/**
+ * Interpretador que grava cada instrução no histórico de execução antes de executá-la. O Cpu só troca para este motor
+ * enquanto o histórico está habilitado, de modo que os outros motores não pagam nada por ele.
+ * <p>
+ * Com o perfilador também habilitado, as execuções são contadas aqui, como no ProfilingEngine.
+ */
+final class HistoryEngine extends ExecutionEngine {
+    private final Profiler profiler;
+
+    HistoryEngine(final Cpu cpu, final Profiler profiler) {
+        super(cpu);
+        this.profiler = profiler;
+    }
+
+    @Override
+    Cpu.ExecutionResult step() {
+        final var programCounter = cpu.getProgramCounter();
+        if (cpu.isBreakPoint(programCounter)) {
+            return Cpu.ExecutionResult.BREAK_POINT;
+        }
+        if (profiler != null) {
+            profiler.countExecution(programCounter);
+        }
+        final var decoded = cpu.decodeCache.get(programCounter);
+        cpu.recordInstruction(decoded);
+        return cpu.execute(decoded);
+    }
+}
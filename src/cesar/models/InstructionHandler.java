@@ -0,0 +1,252 @@
+package cesar.models;
+
+/**
+ * Instrução de um bloco básico já ligada aos seus operandos. Cada subclasse chama diretamente a operação
+ * correspondente do Cpu, sem passar pelo switch de despacho do interpretador.
+ */
+abstract class InstructionHandler {
+    private final int address;
+    private final byte firstByte;
+    private final byte secondByte;
+    private final int fetchedByteCount;
+
+    InstructionHandler(final DecodedInstruction decoded) {
+        address = decoded.address;
+        firstByte = decoded.firstByte;
+        secondByte = decoded.secondByte;
+        fetchedByteCount = decoded.fetchedByteCount;
+    }
+
+    final Cpu.ExecutionResult execute(final Cpu cpu) {
+        cpu.fetchInstruction(address, firstByte, secondByte, fetchedByteCount);
+        return run(cpu);
+    }
+
+    abstract Cpu.ExecutionResult run(final Cpu cpu);
+
+    static InstructionHandler create(final DecodedInstruction decoded) {
+        if (decoded.endOfMemory) {
+            return new EndOfMemoryHandler(decoded);
+        }
+        switch (decoded.instruction) {
+        case CCC:
+            return new CccHandler(decoded);
+        case SCC:
+            return new SccHandler(decoded);
+        case CONDITIONAL_BRANCH:
+            return new BranchHandler(decoded);
+        case JMP:
+            return new JumpHandler(decoded);
+        case SOB:
+            return new SobHandler(decoded);
+        case JSR:
+            return new JumpToSubRoutineHandler(decoded);
+        case RETURN_INSTRUCTION:
+            return new ReturnHandler(decoded);
+        case ONE_OPERAND_INSTRUCTION:
+            return new OneOperandHandler(decoded);
+        case MOV:
+        case ADD:
+        case SUB:
+        case CMP:
+        case AND:
+        case OR:
+            return new TwoOperandHandler(decoded);
+        case HLT:
+            return new HaltHandler(decoded);
+        case NOP:
+        default:
+            return new NopHandler(decoded);
+        }
+    }
+
+    private static final class EndOfMemoryHandler extends InstructionHandler {
+        EndOfMemoryHandler(final DecodedInstruction decoded) {
+            super(decoded);
+        }
+
+        @Override
+        Cpu.ExecutionResult run(final Cpu cpu) {
+            return cpu.endOfMemory();
+        }
+    }
+
+    private static final class NopHandler extends InstructionHandler {
+        NopHandler(final DecodedInstruction decoded) {
+            super(decoded);
+        }
+
+        @Override
+        Cpu.ExecutionResult run(final Cpu cpu) {
+            return Cpu.ExecutionResult.NOOP;
+        }
+    }
+
+    private static final class HaltHandler extends InstructionHandler {
+        HaltHandler(final DecodedInstruction decoded) {
+            super(decoded);
+        }
+
+        @Override
+        Cpu.ExecutionResult run(final Cpu cpu) {
+            return Cpu.ExecutionResult.HALT;
+        }
+    }
+
+    private static final class CccHandler extends InstructionHandler {
+        private final int bits;
+
+        CccHandler(final DecodedInstruction decoded) {
+            super(decoded);
+            bits = decoded.firstByte & 0x0F;
+        }
+
+        @Override
+        Cpu.ExecutionResult run(final Cpu cpu) {
+            cpu.executeCcc(bits);
+            return Cpu.ExecutionResult.OK;
+        }
+    }
+
+    private static final class SccHandler extends InstructionHandler {
+        private final int bits;
+
+        SccHandler(final DecodedInstruction decoded) {
+            super(decoded);
+            bits = decoded.firstByte & 0x0F;
+        }
+
+        @Override
+        Cpu.ExecutionResult run(final Cpu cpu) {
+            cpu.executeScc(bits);
+            return Cpu.ExecutionResult.OK;
+        }
+    }
+
+    private static final class BranchHandler extends InstructionHandler {
+        private final Cpu.BranchInstruction branchInstruction;
+        private final byte offset;
+
+        BranchHandler(final DecodedInstruction decoded) {
+            super(decoded);
+            branchInstruction = decoded.branchInstruction;
+            offset = decoded.offset;
+        }
+
+        @Override
+        Cpu.ExecutionResult run(final Cpu cpu) {
+            cpu.executeConditionalInstruction(branchInstruction, offset);
+            return Cpu.ExecutionResult.OK;
+        }
+    }
+
+    private static final class JumpHandler extends InstructionHandler {
+        private final AddressMode mode;
+        private final int registerNumber;
+
+        JumpHandler(final DecodedInstruction decoded) {
+            super(decoded);
+            mode = decoded.dstMode;
+            registerNumber = decoded.dstRegister;
+        }
+
+        @Override
+        Cpu.ExecutionResult run(final Cpu cpu) {
+            return cpu.executeJump(mode, registerNumber);
+        }
+    }
+
+    private static final class SobHandler extends InstructionHandler {
+        private final int registerNumber;
+        private final byte offset;
+
+        SobHandler(final DecodedInstruction decoded) {
+            super(decoded);
+            registerNumber = decoded.register;
+            offset = decoded.offset;
+        }
+
+        @Override
+        Cpu.ExecutionResult run(final Cpu cpu) {
+            cpu.executeSob(registerNumber, offset);
+            return Cpu.ExecutionResult.OK;
+        }
+    }
+
+    private static final class JumpToSubRoutineHandler extends InstructionHandler {
+        private final int reg;
+        private final AddressMode mode;
+        private final int registerNumber;
+
+        JumpToSubRoutineHandler(final DecodedInstruction decoded) {
+            super(decoded);
+            reg = decoded.register;
+            mode = decoded.dstMode;
+            registerNumber = decoded.dstRegister;
+        }
+
+        @Override
+        Cpu.ExecutionResult run(final Cpu cpu) {
+            return cpu.executeJumpToSubRoutine(reg, mode, registerNumber);
+        }
+    }
+
+    private static final class ReturnHandler extends InstructionHandler {
+        private final byte opCode;
+        private final int registerNumber;
+
+        ReturnHandler(final DecodedInstruction decoded) {
+            super(decoded);
+            opCode = decoded.firstByte;
+            registerNumber = decoded.register;
+        }
+
+        @Override
+        Cpu.ExecutionResult run(final Cpu cpu) {
+            cpu.executeReturn(opCode, registerNumber);
+            return Cpu.ExecutionResult.OK;
+        }
+    }
+
+    private static final class OneOperandHandler extends InstructionHandler {
+        private final Cpu.OneOperandInstruction instruction;
+        private final AddressMode mode;
+        private final int registerNumber;
+
+        OneOperandHandler(final DecodedInstruction decoded) {
+            super(decoded);
+            instruction = decoded.oneOperandInstruction;
+            mode = decoded.dstMode;
+            registerNumber = decoded.dstRegister;
+        }
+
+        @Override
+        Cpu.ExecutionResult run(final Cpu cpu) {
+            cpu.executeOneOperandInstruction(instruction, mode, registerNumber);
+            return Cpu.ExecutionResult.OK;
+        }
+    }
+
+    private static final class TwoOperandHandler extends InstructionHandler {
+        private final Cpu.Instruction instruction;
+        private final AddressMode srcMode;
+        private final int srcRegister;
+        private final AddressMode dstMode;
+        private final int dstRegister;
+
+        TwoOperandHandler(final DecodedInstruction decoded) {
+            super(decoded);
+            instruction = decoded.instruction;
+            srcMode = decoded.srcMode;
+            srcRegister = decoded.srcRegister;
+            dstMode = decoded.dstMode;
+            dstRegister = decoded.dstRegister;
+        }
+
+        @Override
+        Cpu.ExecutionResult run(final Cpu cpu) {
+            cpu.executeTwoOperandInstruction(instruction, srcMode, srcRegister, dstMode, dstRegister);
+            return Cpu.ExecutionResult.OK;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package cesar.models;
+
+final class InterpreterEngine extends ExecutionEngine {
+    InterpreterEngine(final Cpu cpu) {
+        super(cpu);
+    }
+
+    @Override
+    Cpu.ExecutionResult step() {
+        final var programCounter = cpu.getProgramCounter();
+        if (cpu.isBreakPoint(programCounter)) {
+            return Cpu.ExecutionResult.BREAK_POINT;
+        }
+        return cpu.execute(cpu.decodeCache.get(programCounter));
+    }
+}
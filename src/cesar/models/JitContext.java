@@ -0,0 +1,19 @@
+package cesar.models;
+
+/**
+ * Estado compartilhado entre o JitEngine e o código gerado para um bloco.
+ * <p>
+ * O JitEngine preenche o limite de instruções antes de cada chamada; o código gerado devolve o resultado da última
+ * instrução e deixa em executedInstructions quantas executou, contando as voltas de um bloco que desvia para o
+ * próprio início.
+ */
+final class JitContext {
+    final Cpu cpu;
+
+    int limit;
+    int executedInstructions;
+
+    JitContext(final Cpu cpu) {
+        this.cpu = cpu;
+    }
+}
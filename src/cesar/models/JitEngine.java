@@ -0,0 +1,59 @@
+package cesar.models;
+
+/**
+ * Motor em camadas: os blocos começam executando como threaded code e, depois de HOT_BLOCK_THRESHOLD execuções
+ * completas, são traduzidos para bytecode da JVM pelo {@link BlockCompiler}.
+ * <p>
+ * Um bloco compilado só é usado enquanto o bloco valer (ver {@link BasicBlock#isCurrent(DecodeCache)}) e não contiver
+ * breakpoints. Uma escrita sobre código das páginas do bloco faz a execução compilada parar logo depois da instrução
+ * que escreveu; o bloco é então remontado e volta a ser interpretado. Escritas sobre código de outras páginas não
+ * afetam o bloco.
+ */
+final class JitEngine extends ThreadedEngine {
+    static final int HOT_BLOCK_THRESHOLD = 1000;
+
+    // Máximo de instruções de uma chamada a um bloco compilado que desvia para o próprio início, para que a
+    // StopPolicy continue sendo consultada com frequência.
+    private static final int MAX_LOOP_INSTRUCTIONS = 1 << 16;
+
+    private final JitContext context;
+
+    JitEngine(final Cpu cpu) {
+        super(cpu);
+        context = new JitContext(cpu);
+    }
+
+    @Override
+    Cpu.ExecutionResult executeBlock(final BasicBlock block, final long maxInstructions) {
+        var compiledBlock = block.compiledBlock;
+        if (compiledBlock == null) {
+            if (++block.executionCount != HOT_BLOCK_THRESHOLD) {
+                return super.executeBlock(block, maxInstructions);
+            }
+            compiledBlock = compile(block);
+            if (compiledBlock == null) {
+                return super.executeBlock(block, maxInstructions);
+            }
+        }
+        context.limit = (int) Math.min(maxInstructions, MAX_LOOP_INSTRUCTIONS);
+        final var result = compiledBlock.execute(context);
+        executedInstructions = context.executedInstructions;
+        return result;
+    }
+
+    private CompiledBlock compile(final BasicBlock block) {
+        final var addresses = block.addresses;
+        final var instructions = new DecodedInstruction[addresses.length];
+        for (int i = 0; i < addresses.length; ++i) {
+            instructions[i] = cpu.decodeCache.get(addresses[i]);
+        }
+        try {
+            block.compiledBlock = BlockCompiler.compile(block, instructions);
+        }
+        catch (IllegalStateException e) {
+            // Sem JIT para este bloco; ele continua como threaded code.
+            block.compiledBlock = null;
+        }
+        return block.compiledBlock;
+    }
+}
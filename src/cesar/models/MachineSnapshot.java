@@ -0,0 +1,75 @@
+package cesar.models;
+
+/**
+ * Estado completo de um Cpu num instante: registradores, flags, memória, breakpoints e contadores. Criado por
+ * {@link Cpu#snapshot()} e devolvido ao Cpu por {@link Cpu#restore(MachineSnapshot)}.
+ * <p>
+ * A memória fica em páginas de 256 bytes que nunca são alteradas depois de criadas. Cada cópia só cria as páginas
+ * escritas desde a cópia anterior do mesmo Cpu e reaproveita as outras, então uma sequência longa de cópias de um
+ * programa que mexe em poucas páginas ocupa pouco mais que os vetores de referências. Os breakpoints também são
+ * compartilhados enquanto não mudam.
+ */
+public final class MachineSnapshot {
+    static final int PAGE_SHIFT = 8;
+    static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    static final int PAGE_COUNT = Cpu.MEMORY_SIZE >> PAGE_SHIFT;
+
+    final byte[][] pages;
+    final short[] registers;
+    final int flags;
+    final long[] breakPoints;
+    final short breakPoint;
+    final boolean breakPointOnlyFromField;
+    final int memoryAccessCount;
+
+    // Última instrução buscada e as palavras de índice que ela leu, para que o RI e o MN voltem a mostrar o mesmo.
+    final int instructionAddress;
+    final byte[] fetchedBytes;
+    final int fetchedByteCount;
+    final int indexWords;
+
+    MachineSnapshot(final byte[][] pages, final short[] registers, final int flags, final long[] breakPoints,
+                    final short breakPoint, final boolean breakPointOnlyFromField, final int memoryAccessCount,
+                    final int instructionAddress, final byte[] fetchedBytes, final int fetchedByteCount,
+                    final int indexWords) {
+        this.pages = pages;
+        this.registers = registers;
+        this.flags = flags;
+        this.breakPoints = breakPoints;
+        this.breakPoint = breakPoint;
+        this.breakPointOnlyFromField = breakPointOnlyFromField;
+        this.memoryAccessCount = memoryAccessCount;
+        this.instructionAddress = instructionAddress;
+        this.fetchedBytes = fetchedBytes;
+        this.fetchedByteCount = fetchedByteCount;
+        this.indexWords = indexWords;
+    }
+
+    public byte getByte(final int address) {
+        return pages[address >>> PAGE_SHIFT][address & PAGE_SIZE - 1];
+    }
+
+    public short getRegisterValue(final int registerNumber) {
+        return registers[registerNumber];
+    }
+
+    public int getMemoryAccessCount() {
+        return memoryAccessCount;
+    }
+
+    public boolean isNegative() {
+        return (flags & ConditionRegister.NEGATIVE) != 0;
+    }
+
+    public boolean isZero() {
+        return (flags & ConditionRegister.ZERO) != 0;
+    }
+
+    public boolean isOverflow() {
+        return (flags & ConditionRegister.OVERFLOW) != 0;
+    }
+
+    public boolean isCarry() {
+        return (flags & ConditionRegister.CARRY) != 0;
+    }
+}
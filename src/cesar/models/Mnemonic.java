@@ -10,236 +10,231 @@ public class Mnemonic {
     private static final String CARRY = "C";
     private static final String EMPTY_STRING = "";
 
-    private static String conditionToString(final byte opCode) {
-        final var lsb = opCode & 0x0F;
-        final var n = (lsb & 0b1000) > 0 ? NEGATIVE : EMPTY_STRING;
-        final var z = (lsb & 0b0100) > 0 ? ZERO : EMPTY_STRING;
-        final var v = (lsb & 0b0010) > 0 ? OVERFLOW : EMPTY_STRING;
-        final var c = (lsb & 0b0001) > 0 ? CARRY : EMPTY_STRING;
+    // Textos de CCC e SCC para cada combinação das flags NZVC codificada nos 4 bits menos significativos.
+    private static final String[][] CONDITION_MNEMONICS = new String[2][16];
+
+    static {
+        for (int lsb = 0; lsb < 16; ++lsb) {
+            final var flags = conditionToString(lsb);
+            CONDITION_MNEMONICS[0][lsb] = String.format(InstructionString.CCC.getFormatString(), flags);
+            CONDITION_MNEMONICS[1][lsb] = String.format(InstructionString.SCC.getFormatString(), flags);
+        }
+    }
+
+    private static String conditionToString(final int lsb) {
+        final var n = (lsb & ConditionRegister.NEGATIVE) != 0 ? NEGATIVE : EMPTY_STRING;
+        final var z = (lsb & ConditionRegister.ZERO) != 0 ? ZERO : EMPTY_STRING;
+        final var v = (lsb & ConditionRegister.OVERFLOW) != 0 ? OVERFLOW : EMPTY_STRING;
+        final var c = (lsb & ConditionRegister.CARRY) != 0 ? CARRY : EMPTY_STRING;
         return n + z + v + c;
     }
 
+    /**
+     * Refaz os inícios de instrução depois de uma escrita no byte startAt. Devolve a última linha refeita.
+     */
     public static int updateMnemonics(final Cpu cpu, final int startAt) {
-        return updateMnemonics(cpu, startAt, false);
+        return updateMnemonics(cpu, startAt, startAt);
     }
 
-    public static int updateMnemonics(final Cpu cpu, final int startAt, final boolean forceAllRows) {
-        var currentRow = Math.max(0, startAt);
-
-        // Só avança no (r7)+ ou nos casos de ddd(rx) ou (ddd(rx))
-        while (currentRow < Cpu.MEMORY_SIZE) {
-            // Termina quando chegar no final ou quando o mnemônico produzido para um
-            // determinado índice for igual ao do arranjo de mnemônicos.
-            final var opCode = cpu.getByte(currentRow);
-            final String mnemonic;
-            var rowIncrement = 1;
-            final var instruction = InstructionString.getInstruction(opCode);
-            final var format = instruction.getFormatString();
-
-            switch (instruction) {
-            case NOP:
-            case HLT:
-            case RTI:
-                mnemonic = format;
-                break;
-
-            case CCC:
-            case SCC: {
-                mnemonic = String.format(format, conditionToString(opCode));
-                break;
-            }
+    /**
+     * Refaz os inícios de instrução depois de uma escrita em [firstChanged, lastChanged], sem montar nenhum texto.
+     * Começa pela instrução que contém firstChanged e para assim que o alinhamento volta a coincidir com o antigo.
+     * Devolve a última linha refeita.
+     */
+    public static int updateMnemonics(final Cpu cpu, final int firstChanged, final int lastChanged) {
+        return cpu.disassembly.update(firstChanged, lastChanged);
+    }
 
-            case BR:
-            case BNE:
-            case BEQ:
-            case BPL:
-            case BMI:
-            case BVC:
-            case BVS:
-            case BCC:
-            case BCS:
-            case BGE:
-            case BLT:
-            case BGT:
-            case BLE:
-            case BHI:
-            case BLS: {
-                final var nextByte = cpu.getByte(currentRow + rowIncrement);
-                ++rowIncrement;
-                mnemonic = String.format(format, 0xFF & nextByte);
-                break;
-            }
+    /**
+     * Quantidade de linhas ocupadas pela instrução que começa em address: os dois bytes do código mais uma palavra
+     * para cada operando indexado ou imediato ((R7)+ e ((R7)+)), como na execução.
+     */
+    static int getInstructionLength(final Cpu cpu, final int address) {
+        switch (OpCode.fromByte(cpu.getByte(address)).lengthClass) {
+        case TWO_BYTES:
+            return 2;
+
+        case ONE_OPERAND: {
+            final var nextByte = cpu.getByte(address + 1);
+            final var addressMode = AddressMode.fromInt((nextByte & 0b0011_1000) >> 3);
+            return 2 + operandWords(addressMode, nextByte & 0b0000_0111);
+        }
+
+        case TWO_OPERANDS: {
+            final var word = Shorts.toUnsignedInt(Shorts.fromBytes(cpu.getByte(address), cpu.getByte(address + 1)));
+            final var srcMode = AddressMode.fromInt((word & 0b0000_1110_0000_0000) >> 9);
+            final var dstMode = AddressMode.fromInt((word & 0b0000_0000_0011_1000) >> 3);
+            return 2 + operandWords(srcMode, (word & 0b0000_0001_1100_0000) >> 6)
+                   + operandWords(dstMode, word & 0b0000_0000_0000_0111);
+        }
+
+        case ONE_BYTE:
+        default:
+            return 1;
+        }
+    }
 
-            case JMP: {
-                final var nextByte = cpu.getByte(currentRow + rowIncrement);
-                ++rowIncrement;
-                final var mmm = (nextByte & 0b0011_1000) >> 3;
-                final var rrr = nextByte & 0b0000_0111;
-                final var addressMode = AddressMode.fromInt(mmm);
-                if (addressMode.isIndexed()) {
-                    final var msb = cpu.getByte(currentRow + rowIncrement);
-                    final var lsb = cpu.getByte(currentRow + rowIncrement + 1);
-                    rowIncrement += WORD_INCREMENT;
-                    final var ddd = Shorts.toUnsignedInt(Shorts.fromBytes(msb, lsb));
-                    mnemonic = String.format(format, addressMode.asString(ddd, rrr));
-                }
-                else if (addressMode.isPostIncremented()) {
-                    mnemonic = String.format(format, addressMode.asString(rrr));
-                    rowIncrement += WORD_INCREMENT;
-                }
-                else {
-                    mnemonic = String.format(format, addressMode.asString(rrr));
-                }
-                break;
+    // Bytes que um operando ocupa depois do código: a palavra de índice ou o valor apontado por (R7)+.
+    private static int operandWords(final AddressMode mode, final int registerNumber) {
+        if (mode.isIndexed() || mode.isPostIncremented() && registerNumber == Cpu.PC) {
+            return WORD_INCREMENT;
+        }
+        return 0;
+    }
+
+    /**
+     * Monta o texto da instrução de length bytes empacotados em bytes, o primeiro byte nos bits mais significativos,
+     * em builder, que é esvaziado antes. Só o texto final é alocado: os operandos sem índice vêm da tabela de
+     * AddressMode e o resto é acrescentado direto em builder.
+     */
+    static String format(final long bytes, final int length, final StringBuilder builder) {
+        final var opCode = getPackedByte(bytes, length, 0);
+        final var nextByte = getPackedByte(bytes, length, 1);
+
+        // As palavras de índice, na ordem em que a execução as lê. A do destino vem depois da do fonte.
+        var indexWords = 0;
+        switch (OpCode.fromByte(opCode).lengthClass) {
+        case ONE_OPERAND:
+            if (AddressMode.fromInt((nextByte & 0b0011_1000) >> 3).isIndexed()) {
+                indexWords = getPackedWord(bytes, length, 2);
             }
-            case SOB: {
-                final var rrr = opCode & 0b0000_0111;
-                final var ddd = 0xFF & cpu.getByte(currentRow + rowIncrement);
-                ++rowIncrement;
-                mnemonic = String.format(format, rrr, ddd);
-                break;
+            break;
+
+        case TWO_OPERANDS: {
+            final var word = Shorts.toUnsignedInt(Shorts.fromBytes(opCode, nextByte));
+            final var srcMode = AddressMode.fromInt((word & 0b0000_1110_0000_0000) >> 9);
+            final var dstMode = AddressMode.fromInt((word & 0b0000_0000_0011_1000) >> 3);
+            if (srcMode.isIndexed()) {
+                indexWords = getPackedWord(bytes, length, 2);
             }
-            case JSR: {
-                final var register = opCode & 0b0000_0111;
-                final var nextByte = cpu.getByte(currentRow + rowIncrement);
-                ++rowIncrement;
-                final var mmm = (nextByte & 0b00111000) >> 3;
-                final var rrr = nextByte & 0b00000111;
-                final var addressMode = AddressMode.fromInt(mmm);
-                if (addressMode.isIndexed()) {
-                    final var msb = cpu.getByte(currentRow + rowIncrement);
-                    final var lsb = cpu.getByte(currentRow + rowIncrement + 1);
-                    rowIncrement += WORD_INCREMENT;
-                    final var ddd = Shorts.toUnsignedInt(Shorts.fromBytes(msb, lsb));
-                    mnemonic = String.format(format, register, addressMode.asString(ddd, rrr));
-                }
-                else if (addressMode.isPostIncremented()) {
-                    mnemonic = String.format(format, register, addressMode.asString(rrr));
-                    rowIncrement += WORD_INCREMENT;
-                }
-                else {
-                    mnemonic = String.format(format, register, addressMode.asString(rrr));
-                }
-
-                if (addressMode.isPostIncremented() && rrr == Cpu.PC) {
-                    rowIncrement += WORD_INCREMENT;
-                }
-                break;
+            if (dstMode.isIndexed()) {
+                final var indexOffset = 2 + operandWords(srcMode, (word & 0b0000_0001_1100_0000) >> 6);
+                indexWords = indexWords << 16 | getPackedWord(bytes, length, indexOffset);
             }
+            break;
+        }
 
-            case RTS: {
-                final var rrr = opCode & 0b0000_0111;
-                mnemonic = String.format(format, rrr);
-                break;
-            }
-            case CLR:
-            case NOT:
-            case INC:
-            case DEC:
-            case NEG:
-            case TST:
-            case ROR:
-            case ROL:
-            case ASR:
-            case ASL:
-            case ADC:
-            case SBC: {
-                final var nextByte = cpu.getByte(currentRow + rowIncrement);
-                ++rowIncrement;
-                final var mmm = (nextByte & 0b00111000) >> 3;
-                final var rrr = nextByte & 0b00000111;
-                final var addressMode = AddressMode.fromInt(mmm);
-
-                if (addressMode.isIndexed()) {
-                    final var msb = cpu.getByte(currentRow + rowIncrement);
-                    final var lsb = cpu.getByte(currentRow + rowIncrement + 1);
-                    rowIncrement += WORD_INCREMENT;
-                    final var ddd = Shorts.toUnsignedInt(Shorts.fromBytes(msb, lsb));
-                    mnemonic = String.format(format, addressMode.asString(ddd, rrr));
-                }
-                else if (addressMode.isPostIncremented()) {
-                    mnemonic = String.format(format, addressMode.asString(rrr));
-                    rowIncrement += WORD_INCREMENT;
-                }
-                else {
-                    mnemonic = String.format(format, addressMode.asString(rrr));
-                }
-
-                if (addressMode.isPostIncremented() && rrr == Cpu.PC) {
-                    rowIncrement += WORD_INCREMENT;
-                }
-
-                break;
-            }
+        default:
+            break;
+        }
 
-            case MOV:
-            case ADD:
-            case SUB:
-            case CMP:
-            case AND:
-            case OR: {
-                final var nextByte = cpu.getByte(currentRow + rowIncrement);
-                ++rowIncrement;
-                final var word = Shorts.toUnsignedInt(Shorts.fromBytes(opCode, nextByte));
-                final var mmm1 = (word & 0b0000_1110_0000_0000) >> 9;
-                final var rrr1 = (word & 0b0000_0001_1100_0000) >> 6;
-                final var mmm2 = (word & 0b0000_0000_0011_1000) >> 3;
-                final var rrr2 = word & 0b0000_0000_0000_0111;
-
-                final var srcMode = AddressMode.fromInt(mmm1);
-
-                final String srcString;
-                if (srcMode.isIndexed()) {
-                    final var msb = cpu.getByte(currentRow + rowIncrement);
-                    final var lsb = cpu.getByte(currentRow + rowIncrement + 1);
-                    rowIncrement += WORD_INCREMENT;
-                    final var ddd = Shorts.toUnsignedInt(Shorts.fromBytes(msb, lsb));
-                    srcString = srcMode.asString(ddd, rrr1);
-                }
-                else {
-                    srcString = srcMode.asString(rrr1);
-                }
-
-                if (srcMode.isPostIncremented() && rrr1 == Cpu.PC) {
-                    rowIncrement += WORD_INCREMENT;
-                }
-
-                final var dstMode = AddressMode.fromInt(mmm2);
-                final String dstString;
-                if (dstMode.isIndexed()) {
-                    final var msb = cpu.getByte(currentRow + rowIncrement);
-                    final var lsb = cpu.getByte(currentRow + rowIncrement + 1);
-                    rowIncrement += WORD_INCREMENT;
-                    final var ddd = Shorts.toUnsignedInt(Shorts.fromBytes(msb, lsb));
-                    dstString = dstMode.asString(ddd, rrr2);
-                }
-                else {
-                    dstString = dstMode.asString(rrr2);
-                }
-
-                if (dstMode.isPostIncremented() && rrr2 == Cpu.PC) {
-                    rowIncrement += WORD_INCREMENT;
-                }
-
-                mnemonic = String.format(format, srcString, dstString);
-                break;
-            }
+        return format(opCode, nextByte, indexWords, builder);
+    }
 
-            default:
-                mnemonic = InstructionString.NOP.getFormatString();
-            }
+    /**
+     * Monta o texto de uma instrução a partir dos bytes já lidos: os dois bytes do código (nextByte é ignorado nas
+     * instruções de um byte) e as palavras de índice empacotadas em indexWords, a última lida nos 16 bits menos
+     * significativos. É o que o Cpu usa para o MN, com o que a instrução realmente leu.
+     */
+    static String format(final byte opCode, final byte nextByte, final int indexWords, final StringBuilder builder) {
+        final var instruction = InstructionString.getInstruction(opCode);
+        builder.setLength(0);
+
+        switch (instruction) {
+        case NOP:
+        case HLT:
+        case RTI:
+            return instruction.toString();
+
+        case CCC:
+        case SCC:
+            return CONDITION_MNEMONICS[instruction == InstructionString.CCC ? 0 : 1][opCode & 0x0F];
+
+        case BR:
+        case BNE:
+        case BEQ:
+        case BPL:
+        case BMI:
+        case BVC:
+        case BVS:
+        case BCC:
+        case BCS:
+        case BGE:
+        case BLT:
+        case BGT:
+        case BLE:
+        case BHI:
+        case BLS:
+            builder.append(instruction).append(' ').append(0xFF & nextByte);
+            break;
+
+        case JMP:
+            builder.append(instruction).append(' ');
+            appendOperand(nextByte, indexWords, builder);
+            break;
+
+        case SOB:
+            builder.append(instruction).append(" R").append(opCode & 0b0000_0111).append(", ")
+                   .append(0xFF & nextByte);
+            break;
+
+        case JSR:
+            builder.append(instruction).append(" R").append(opCode & 0b0000_0111).append(", ");
+            appendOperand(nextByte, indexWords, builder);
+            break;
+
+        case RTS:
+            builder.append(instruction).append(" R").append(opCode & 0b0000_0111);
+            break;
+
+        case CLR:
+        case NOT:
+        case INC:
+        case DEC:
+        case NEG:
+        case TST:
+        case ROR:
+        case ROL:
+        case ASR:
+        case ASL:
+        case ADC:
+        case SBC:
+            builder.append(instruction).append(' ');
+            appendOperand(nextByte, indexWords, builder);
+            break;
+
+        case MOV:
+        case ADD:
+        case SUB:
+        case CMP:
+        case AND:
+        case OR: {
+            final var word = Shorts.toUnsignedInt(Shorts.fromBytes(opCode, nextByte));
+            final var srcMode = AddressMode.fromInt((word & 0b0000_1110_0000_0000) >> 9);
+            final var rrr1 = (word & 0b0000_0001_1100_0000) >> 6;
+            final var dstMode = AddressMode.fromInt((word & 0b0000_0000_0011_1000) >> 3);
+            final var rrr2 = word & 0b0000_0000_0000_0111;
+
+            // Com os dois operandos indexados, o índice do fonte foi lido primeiro e está na metade de cima.
+            final var srcIndex = dstMode.isIndexed() ? indexWords >>> 16 : indexWords & 0xFFFF;
+            builder.append(instruction).append(' ');
+            srcMode.appendTo(builder, srcIndex, rrr1);
+            builder.append(", ");
+            dstMode.appendTo(builder, indexWords & 0xFFFF, rrr2);
+            break;
+        }
 
-            if (forceAllRows || (cpu.getMnemonic(currentRow) == null || !cpu.getMnemonic(currentRow).equals(mnemonic))) {
-                cpu.setMnemonic(currentRow, mnemonic);
-                for (var j = 1; j < rowIncrement; ++j) {
-                    cpu.setMnemonic(currentRow + j, EMPTY_STRING);
-                }
-            }
-            else {
-                break;
-            }
-            currentRow += rowIncrement;
+        default:
+            return InstructionString.NOP.toString();
         }
-        return currentRow;
+
+        return builder.toString();
+    }
+
+    // Operando de JMP, JSR e das instruções de um operando: modo e registrador no segundo byte.
+    private static void appendOperand(final byte nextByte, final int indexWords, final StringBuilder builder) {
+        final var addressMode = AddressMode.fromInt((nextByte & 0b0011_1000) >> 3);
+        addressMode.appendTo(builder, indexWords & 0xFFFF, nextByte & 0b0000_0111);
+    }
+
+    // Byte offset de uma instrução empacotada por format; 0 além do fim dela, como numa instrução cortada pelo fim
+    // da memória.
+    private static byte getPackedByte(final long bytes, final int length, final int offset) {
+        return offset < length ? (byte) (bytes >>> 8 * (length - 1 - offset)) : 0;
+    }
+
+    private static int getPackedWord(final long bytes, final int length, final int offset) {
+        return Shorts.toUnsignedInt(Shorts.fromBytes(getPackedByte(bytes, length, offset),
+                getPackedByte(bytes, length, offset + 1)));
     }
 }
@@ -0,0 +1,121 @@
+package cesar.models;
+
+/**
+ * O que o primeiro byte de uma instrução determina sozinho, pré-calculado para os 256 valores possíveis. O
+ * desmontador e o decodificador da execução leem a mesma entrada, de modo que os dois sempre concordam sobre qual
+ * instrução um byte começa e quantos bytes ela ocupa.
+ */
+final class OpCode {
+    /**
+     * Como o tamanho da instrução é calculado: fixo, ou dependente dos modos de endereçamento codificados no segundo
+     * byte.
+     */
+    enum LengthClass {
+        ONE_BYTE, TWO_BYTES, ONE_OPERAND, TWO_OPERANDS
+    }
+
+    private static final OpCode[] TABLE = new OpCode[256];
+
+    static {
+        for (int i = 0; i < TABLE.length; ++i) {
+            TABLE[i] = decode(i);
+        }
+    }
+
+    // Instrução usada pelo desmontador.
+    final InstructionString mnemonic;
+
+    // Instrução usada pelo decodificador da execução; é também o índice do handler.
+    final Cpu.Instruction instruction;
+    final Cpu.BranchInstruction branchInstruction;
+    final Cpu.OneOperandInstruction oneOperandInstruction;
+
+    final LengthClass lengthClass;
+
+    // Registrador codificado no primeiro byte (SOB, JSR e RTS); 0 nas outras instruções.
+    final int register;
+
+    private OpCode(final InstructionString mnemonic, final Cpu.Instruction instruction,
+                   final Cpu.BranchInstruction branchInstruction,
+                   final Cpu.OneOperandInstruction oneOperandInstruction, final LengthClass lengthClass,
+                   final int register) {
+        this.mnemonic = mnemonic;
+        this.instruction = instruction;
+        this.branchInstruction = branchInstruction;
+        this.oneOperandInstruction = oneOperandInstruction;
+        this.lengthClass = lengthClass;
+        this.register = register;
+    }
+
+    static OpCode fromByte(final byte firstByte) {
+        return TABLE[firstByte & 0xFF];
+    }
+
+    private static OpCode decode(final int firstByte) {
+        final var code = firstByte & 0x0F;
+        final var register = firstByte & 0b0000_0111;
+        final var instruction = Cpu.Instruction.fromInt(firstByte >> 4);
+
+        switch (instruction) {
+        case CCC:
+            return new OpCode(InstructionString.CCC, instruction, null, null, LengthClass.ONE_BYTE, 0);
+
+        case SCC:
+            return new OpCode(InstructionString.SCC, instruction, null, null, LengthClass.ONE_BYTE, 0);
+
+        case CONDITIONAL_BRANCH: {
+            if (code >= Cpu.BranchInstruction.COUNT) {
+                return nop();
+            }
+            final var branch = Cpu.BranchInstruction.fromInt(code);
+            return new OpCode(InstructionString.valueOf(branch.name()), instruction, branch, null,
+                    LengthClass.TWO_BYTES, 0);
+        }
+
+        case JMP:
+            return new OpCode(InstructionString.JMP, instruction, null, null, LengthClass.ONE_OPERAND, 0);
+
+        case SOB:
+            return new OpCode(InstructionString.SOB, instruction, null, null, LengthClass.TWO_BYTES, register);
+
+        case JSR:
+            return new OpCode(InstructionString.JSR, instruction, null, null, LengthClass.ONE_OPERAND, register);
+
+        case RETURN_INSTRUCTION: {
+            // 0111_1000 é o RTI, que volta de uma interrupção; como o simulador não tem interrupções, ele não faz nada
+            // na execução. Os outros bytes 0111_xrrr são RTS rrr, com o bit 3 ignorado.
+            final var mnemonic = firstByte == 0b0111_1000 ? InstructionString.RTI : InstructionString.RTS;
+            return new OpCode(mnemonic, instruction, null, null, LengthClass.ONE_BYTE, register);
+        }
+
+        case ONE_OPERAND_INSTRUCTION: {
+            if (code >= Cpu.OneOperandInstruction.COUNT) {
+                return nop();
+            }
+            final var oneOperand = Cpu.OneOperandInstruction.fromInt(code);
+            return new OpCode(InstructionString.valueOf(oneOperand.name()), instruction, null, oneOperand,
+                    LengthClass.ONE_OPERAND, 0);
+        }
+
+        case MOV:
+        case ADD:
+        case SUB:
+        case CMP:
+        case AND:
+        case OR:
+            return new OpCode(InstructionString.valueOf(instruction.name()), instruction, null, null,
+                    LengthClass.TWO_OPERANDS, 0);
+
+        case HLT:
+            return new OpCode(InstructionString.HLT, instruction, null, null, LengthClass.ONE_BYTE, 0);
+
+        case NOP:
+        default:
+            return nop();
+        }
+    }
+
+    private static OpCode nop() {
+        return new OpCode(InstructionString.NOP, Cpu.Instruction.NOP, null, null, LengthClass.ONE_BYTE, 0);
+    }
+}
@@ -0,0 +1,100 @@
+package cesar.models;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Contadores por endereço preenchidos enquanto o perfilador do Cpu está habilitado: quantas vezes uma instrução
+ * começou em cada endereço e quantas leituras e escritas de dados cada endereço recebeu.
+ * <p>
+ * A busca das instruções não conta como leitura, já que aparece nas execuções; os operandos imediatos, lidos por
+ * (R7)+, contam.
+ */
+public final class Profiler {
+    private static final String CSV_HEADER = "endereco,execucoes,leituras,escritas";
+
+    private final long[] executionCounts;
+    private final long[] readCounts;
+    private final long[] writeCounts;
+    private long maxExecutionCount;
+
+    Profiler() {
+        executionCounts = new long[Cpu.MEMORY_SIZE];
+        readCounts = new long[Cpu.MEMORY_SIZE];
+        writeCounts = new long[Cpu.MEMORY_SIZE];
+        maxExecutionCount = 0;
+    }
+
+    void countExecution(final int address) {
+        final var count = ++executionCounts[address];
+        if (count > maxExecutionCount) {
+            maxExecutionCount = count;
+        }
+    }
+
+    void countRead(final int address) {
+        ++readCounts[address];
+    }
+
+    void countWrite(final int address) {
+        ++writeCounts[address];
+    }
+
+    public long getExecutionCount(final int address) {
+        return executionCounts[address];
+    }
+
+    public long getReadCount(final int address) {
+        return readCounts[address];
+    }
+
+    public long getWriteCount(final int address) {
+        return writeCounts[address];
+    }
+
+    /**
+     * Maior contagem de execuções entre todos os endereços, usada para normalizar o mapa de calor.
+     */
+    public long getMaxExecutionCount() {
+        return maxExecutionCount;
+    }
+
+    public void reset() {
+        Arrays.fill(executionCounts, 0L);
+        Arrays.fill(readCounts, 0L);
+        Arrays.fill(writeCounts, 0L);
+        maxExecutionCount = 0;
+    }
+
+    /**
+     * Escreve os endereços com alguma contagem em CSV, dos mais executados para os menos executados; empates são
+     * desfeitos pelo total de acessos e depois pelo endereço.
+     */
+    public void writeCsv(final Writer writer) throws IOException {
+        final var addresses = new Integer[Cpu.MEMORY_SIZE];
+        var count = 0;
+        for (int address = 0; address < Cpu.MEMORY_SIZE; ++address) {
+            if (executionCounts[address] != 0 || readCounts[address] != 0 || writeCounts[address] != 0) {
+                addresses[count++] = address;
+            }
+        }
+        Arrays.sort(addresses, 0, count, (a, b) -> {
+            final var byExecutions = Long.compare(executionCounts[b], executionCounts[a]);
+            if (byExecutions != 0) {
+                return byExecutions;
+            }
+            final var byAccesses = Long.compare(readCounts[b] + writeCounts[b], readCounts[a] + writeCounts[a]);
+            return byAccesses != 0 ? byAccesses : Integer.compare(a, b);
+        });
+
+        writer.write(CSV_HEADER);
+        writer.write('\n');
+        for (int i = 0; i < count; ++i) {
+            final int address = addresses[i];
+            writer.write(address + "," + executionCounts[address] + "," + readCounts[address] + ","
+                + writeCounts[address] + "\n");
+        }
+        writer.flush();
+    }
+}
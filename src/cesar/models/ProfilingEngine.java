@@ -0,0 +1,24 @@
+package cesar.models;
+
+/**
+ * Interpretador que conta as execuções de cada endereço. O Cpu só troca para este motor enquanto o perfilador está
+ * habilitado, de modo que os outros motores não pagam nada por ele.
+ */
+final class ProfilingEngine extends ExecutionEngine {
+    private final Profiler profiler;
+
+    ProfilingEngine(final Cpu cpu, final Profiler profiler) {
+        super(cpu);
+        this.profiler = profiler;
+    }
+
+    @Override
+    Cpu.ExecutionResult step() {
+        final var programCounter = cpu.getProgramCounter();
+        if (cpu.isBreakPoint(programCounter)) {
+            return Cpu.ExecutionResult.BREAK_POINT;
+        }
+        profiler.countExecution(programCounter);
+        return cpu.execute(cpu.decodeCache.get(programCounter));
+    }
+}
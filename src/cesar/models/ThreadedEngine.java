@@ -0,0 +1,109 @@
+package cesar.models;
+
+import java.util.Arrays;
+
+/**
+ * Executa blocos básicos compilados em arranjos de handlers pré-ligados aos seus operandos.
+ * <p>
+ * Os blocos ficam guardados pelo endereço de entrada e são descartados quando o código decodificado das suas páginas
+ * muda (ver {@link BasicBlock#isCurrent(DecodeCache)}). Dentro de um bloco sem breakpoint o PC não é comparado com o
+ * breakpoint.
+ */
+class ThreadedEngine extends ExecutionEngine {
+    static final int MAX_BLOCK_SIZE = 32;
+
+    private final BasicBlock[] blocks;
+    private final int[] addressBuffer;
+    private final InstructionHandler[] handlerBuffer;
+
+    private BasicBlock currentBlock;
+    private int position;
+
+    ThreadedEngine(final Cpu cpu) {
+        super(cpu);
+        blocks = new BasicBlock[Cpu.MEMORY_SIZE];
+        addressBuffer = new int[MAX_BLOCK_SIZE];
+        handlerBuffer = new InstructionHandler[MAX_BLOCK_SIZE];
+    }
+
+    @Override
+    Cpu.ExecutionResult step() {
+        final var programCounter = cpu.getProgramCounter();
+        var block = currentBlock;
+        if (block == null || position >= block.size() || block.addresses[position] != programCounter
+            || !block.isCurrent(cpu.decodeCache)) {
+            block = getBlock(programCounter);
+            currentBlock = block;
+            position = 0;
+        }
+        if (block.containsBreakPoint(cpu) && cpu.isBreakPoint(programCounter)) {
+            return Cpu.ExecutionResult.BREAK_POINT;
+        }
+        return block.handlers[position++].execute(cpu);
+    }
+
+    @Override
+    Cpu.ExecutionResult runBlock(final long maxInstructions) {
+        final var block = getBlock(cpu.getProgramCounter());
+        if (block.size() > maxInstructions || block.containsBreakPoint(cpu)) {
+            return super.runBlock(maxInstructions);
+        }
+        currentBlock = null;
+        return executeBlock(block, maxInstructions);
+    }
+
+    /**
+     * Executa o bloco inteiro, parando antes se uma instrução não seguir para a próxima do bloco, se o código do
+     * bloco for alterado durante a execução ou se um watchpoint disparar. O bloco cabe em maxInstructions; aqui ele é
+     * executado uma vez só.
+     */
+    Cpu.ExecutionResult executeBlock(final BasicBlock block, final long maxInstructions) {
+        final var handlers = block.handlers;
+        final var addresses = block.addresses;
+        final var lastPosition = handlers.length - 1;
+        var result = Cpu.ExecutionResult.OK;
+        var position = 0;
+        while (true) {
+            result = handlers[position].execute(cpu);
+            if (position == lastPosition || result != Cpu.ExecutionResult.OK && result != Cpu.ExecutionResult.NOOP
+                || cpu.getProgramCounter() != addresses[position + 1]
+                || !block.isCurrent(cpu.decodeCache) || cpu.isWatchPointTriggered()) {
+                break;
+            }
+            ++position;
+        }
+        executedInstructions = position + 1;
+        return result;
+    }
+
+    BasicBlock getBlock(final int address) {
+        final var block = blocks[address];
+        if (block != null && block.isCurrent(cpu.decodeCache)) {
+            return block;
+        }
+        final var newBlock = buildBlock(address);
+        blocks[address] = newBlock;
+        return newBlock;
+    }
+
+    private BasicBlock buildBlock(final int startAddress) {
+        final var decodeCache = cpu.decodeCache;
+        var address = startAddress;
+        var size = 0;
+        var lastCodeAddress = startAddress;
+        while (size < MAX_BLOCK_SIZE) {
+            final var decoded = decodeCache.get(address);
+            lastCodeAddress = address + decoded.length - 1;
+            addressBuffer[size] = address;
+            handlerBuffer[size] = InstructionHandler.create(decoded);
+            ++size;
+            // Um bloco também termina se a próxima instrução der a volta na memória.
+            if (decoded.isControlTransfer() || decoded.nextAddress <= address) {
+                break;
+            }
+            address = decoded.nextAddress;
+        }
+        return new BasicBlock(decodeCache, Arrays.copyOf(addressBuffer, size), lastCodeAddress,
+            Arrays.copyOf(handlerBuffer, size));
+    }
+}
@@ -0,0 +1,45 @@
+package cesar.models;
+
+/**
+ * Faixa de endereços vigiada. A execução para depois da instrução que ler (se onRead) ou escrever (se onWrite) em
+ * algum endereço entre start e end, inclusive.
+ * <p>
+ * Só os acessos a dados são vigiados: a busca dos bytes das instruções não conta, mas as palavras de índice dos modos
+ * indexados e os operandos imediatos, lidos por (R7)+, contam.
+ */
+public final class WatchPoint {
+    private final int start;
+    private final int end;
+    private final boolean onRead;
+    private final boolean onWrite;
+
+    public WatchPoint(final int start, final int end, final boolean onRead, final boolean onWrite) {
+        if (!Cpu.isValidAddress(start) || !Cpu.isValidAddress(end) || end < start) {
+            throw new IllegalArgumentException(String.format("Faixa de endereços inválida: %d-%d", start, end));
+        }
+        this.start = start;
+        this.end = end;
+        this.onRead = onRead;
+        this.onWrite = onWrite;
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public int getEnd() {
+        return end;
+    }
+
+    public boolean isOnRead() {
+        return onRead;
+    }
+
+    public boolean isOnWrite() {
+        return onWrite;
+    }
+
+    boolean contains(final int address) {
+        return start <= address && address <= end;
+    }
+}
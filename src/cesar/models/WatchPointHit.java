@@ -0,0 +1,54 @@
+package cesar.models;
+
+/**
+ * Acesso que disparou um watchpoint: o endereço da instrução que o fez, o endereço acessado e o valor do byte antes e
+ * depois do acesso (iguais quando foi uma leitura).
+ */
+public final class WatchPointHit {
+    private final WatchPoint watchPoint;
+    private final int programCounter;
+    private final int address;
+    private final boolean write;
+    private final byte oldValue;
+    private final byte newValue;
+
+    WatchPointHit(final WatchPoint watchPoint, final int programCounter, final int address, final boolean write,
+                  final byte oldValue, final byte newValue) {
+        this.watchPoint = watchPoint;
+        this.programCounter = programCounter;
+        this.address = address;
+        this.write = write;
+        this.oldValue = oldValue;
+        this.newValue = newValue;
+    }
+
+    public WatchPoint getWatchPoint() {
+        return watchPoint;
+    }
+
+    public int getProgramCounter() {
+        return programCounter;
+    }
+
+    public int getAddress() {
+        return address;
+    }
+
+    public boolean isWrite() {
+        return write;
+    }
+
+    public byte getOldValue() {
+        return oldValue;
+    }
+
+    public byte getNewValue() {
+        return newValue;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Watchpoint: %s em %d (PC %d): %d -> %d", write ? "escrita" : "leitura", address,
+            programCounter, oldValue & 0xFF, newValue & 0xFF);
+    }
+}
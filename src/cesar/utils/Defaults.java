@@ -10,6 +10,8 @@ import java.awt.*;
 public class Defaults {
     public static final Font PANEL_FONT = new Font(Font.SANS_SERIF, Font.PLAIN, 12);
     public static final Color ARROW_COLOR;
+    public static final Color BREAK_POINT_COLOR = new Color(0xAA, 0x00, 0x00);
+    public static final Color HEAT_MAP_COLOR = new Color(0xFF, 0x60, 0x00);
     public static final Base DEFAULT_BASE = Base.DECIMAL;
     public static final boolean IS_APPLE = System.getProperty("os.name").equals("Mac OS X");
 
@@ -0,0 +1,47 @@
+package cesar.utils;
+
+import cesar.models.Cpu;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+ * Leitura de arquivos .mem do Cesar, sem depender da interface gráfica.
+ * <p>
+ * O arquivo tem um cabeçalho de 4 bytes seguido da imagem completa da memória.
+ */
+public class MemoryFile {
+    public static final int CESAR_FILE_SIZE = 0x10004; // 65_540
+
+    public static final int HEADER_SIZE = 4;
+
+    public static final String EXTENSION = "mem";
+
+    public static boolean hasCorrectFileSize(final File file) {
+        return CESAR_FILE_SIZE == (int) file.length();
+    }
+
+    /**
+     * Lê a imagem da memória contida no arquivo.
+     *
+     * @throws IOException se o arquivo não tiver o tamanho de um arquivo do Cesar ou não puder ser lido por completo
+     */
+    public static byte[] read(final File file) throws IOException {
+        if (!hasCorrectFileSize(file)) {
+            throw new IOException("Tamanho de arquivo incorreto");
+        }
+        try (var inputStream = new BufferedInputStream(new FileInputStream(file))) {
+            if (inputStream.skip(HEADER_SIZE) != HEADER_SIZE) {
+                throw new IOException(
+                        String.format("Não foi possível avançar o cabeçalho do arquivo \"%s\"", file.getName()));
+            }
+            final byte[] fileBytes = new byte[Cpu.MEMORY_SIZE];
+            if (inputStream.readNBytes(fileBytes, 0, Cpu.MEMORY_SIZE) != Cpu.MEMORY_SIZE) {
+                throw new IOException("Não foi possível ler todos os bytes do arquivo");
+            }
+            return fileBytes;
+        }
+    }
+}
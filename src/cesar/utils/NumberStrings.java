@@ -0,0 +1,50 @@
+package cesar.utils;
+
+import cesar.models.Base;
+import cesar.models.Cpu;
+
+/**
+ * Textos dos números exibidos nas tabelas de memória, montados uma única vez por base.
+ * <p>
+ * Os 256 bytes são montados quando a classe é carregada; os 65.536 endereços, na primeira vez que cada um é pedido.
+ * As tabelas só são lidas e preenchidas na thread do Swing.
+ */
+public final class NumberStrings {
+    private static final NumberStrings DECIMAL = new NumberStrings(Base.DECIMAL);
+    private static final NumberStrings HEXADECIMAL = new NumberStrings(Base.HEXADECIMAL);
+
+    private final int radix;
+    private final String[] byteStrings;
+    private final String[] addressStrings;
+
+    private NumberStrings(final Base base) {
+        radix = base.toInt();
+        byteStrings = new String[Bytes.MAX_VALUE + 1];
+        for (int i = 0; i < byteStrings.length; ++i) {
+            byteStrings[i] = toString(i);
+        }
+        addressStrings = new String[Cpu.MEMORY_SIZE];
+    }
+
+    public static NumberStrings forBase(final Base base) {
+        return base == Base.DECIMAL ? DECIMAL : HEXADECIMAL;
+    }
+
+    public String byteString(final byte value) {
+        return byteStrings[Bytes.toUnsignedInt(value)];
+    }
+
+    public String addressString(final int address) {
+        var string = addressStrings[address];
+        if (string == null) {
+            // Os endereços até 255 reaproveitam os textos dos bytes.
+            string = address < byteStrings.length ? byteStrings[address] : toString(address);
+            addressStrings[address] = string;
+        }
+        return string;
+    }
+
+    private String toString(final int value) {
+        return Integer.toString(value, radix).toUpperCase().intern();
+    }
+}
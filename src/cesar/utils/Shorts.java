@@ -17,7 +17,7 @@ public class Shorts {
     }
 
     public static byte[] toBytes(final short value) {
-        final byte msb = (byte) ((value & 0xFF00) >> 4);
+        final byte msb = (byte) ((value & 0xFF00) >> 8);
         final byte lsb = (byte) (value & 0xFF);
         return new byte[]{msb, lsb};
     }
@@ -11,7 +11,6 @@ public class LineReader {
     }
 
     public static LineReaderResult readLines(final Cpu cpu) {
-        final String[] mnemonics = cpu.getMnemonics();
         final byte[] memory = cpu.getMemory();
         final int memorySize = memory.length;
 
@@ -19,8 +18,7 @@ public class LineReader {
         int maxByteCount = 0;
         Line line = null;
         for (int i = 0; i < memorySize; ++i) {
-            final String mnemonic = mnemonics[i];
-            if (!mnemonic.isEmpty()) {
+            if (cpu.isInstructionStart(i)) {
                 if (line != null) {
                     lines.add(line);
                     maxByteCount = Math.max(maxByteCount, line.getBytesSize());
@@ -28,7 +26,7 @@ public class LineReader {
                 // noinspection ObjectAllocationInLoop
                 line = new Line();
                 line.setAddress(i);
-                line.setString(mnemonic);
+                line.setString(cpu.getMnemonic(i));
                 line.addByte(memory[i]);
             }
             else {
@@ -23,13 +23,20 @@ public class TextDisplay extends JPanel {
     private static final int N_CHARS = 95;
     private static final int ASCII_DIFFERENCE = 32;
     private static final String CHAR_FORMAT = "/cesar/resources/images/character_%02d.png";
-    private static final BufferedImage[] CHAR_IMAGES;
+
+    // Os 95 caracteres lado a lado numa só imagem, já compostos sobre o fundo preto do visor.
+    private static final BufferedImage ATLAS;
 
     static {
-        CHAR_IMAGES = new BufferedImage[N_CHARS];
+        ATLAS = new BufferedImage(N_CHARS * CHAR_WIDTH, CHAR_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        final Graphics2D graphics = ATLAS.createGraphics();
         try {
+            graphics.setColor(Color.BLACK);
+            graphics.fillRect(0, 0, ATLAS.getWidth(), ATLAS.getHeight());
             for (int i = 0; i < N_CHARS; ++i) {
-                CHAR_IMAGES[i] = ImageIO.read(TextDisplay.class.getResourceAsStream(String.format(CHAR_FORMAT, i)));
+                final BufferedImage image =
+                        ImageIO.read(TextDisplay.class.getResourceAsStream(String.format(CHAR_FORMAT, i)));
+                graphics.drawImage(image, i * CHAR_WIDTH, 0, CHAR_WIDTH, CHAR_HEIGHT, null);
             }
         }
         catch (final IOException e) {
@@ -37,39 +44,78 @@ public class TextDisplay extends JPanel {
             e.printStackTrace();
             System.exit(1);
         }
+        finally {
+            graphics.dispose();
+        }
     }
 
     private final Cpu cpu;
 
+    // Bytes que estão desenhados no visor, atualizados a cada pintura. Só são lidos e escritos na thread do Swing.
+    private final byte[] shownBytes;
+
     public TextDisplay(final Cpu cpu) {
         this.cpu = cpu;
+        shownBytes = new byte[DISPLAY_SIZE];
         final Dimension size = new Dimension(WIDTH, HEIGHT);
         setSize(size);
         setMinimumSize(size);
         setMaximumSize(size);
         setPreferredSize(size);
+        setBackground(Color.BLACK);
         repaint();
     }
 
+    /**
+     * Pede a repintura só dos caracteres cujo byte mudou desde a última pintura. É o caminho usado durante a
+     * execução; repaint continua redesenhando o visor inteiro.
+     */
+    public void repaintChangedCharacters() {
+        for (int i = 0; i < DISPLAY_SIZE; ++i) {
+            final var value = cpu.getDisplayByte(i);
+            if (value != shownBytes[i]) {
+                shownBytes[i] = value;
+                repaint(getCharX(i), START_Y, CHAR_WIDTH, CHAR_HEIGHT);
+            }
+        }
+    }
+
     @Override
     public void paintComponent(final Graphics g) {
+        // O fundo preto cobre só a área de recorte; fora dela o que já está na tela continua valendo.
         super.paintComponent(g);
-        g.setColor(Color.BLACK);
-        g.fillRect(0, 0, WIDTH, HEIGHT);
-        int x = START_X;
-        for (int i = 0; i < DISPLAY_SIZE; ++i) {
-            g.drawImage(getCharImage(cpu.getDisplayByte(i)), x, START_Y, CHAR_WIDTH, CHAR_HEIGHT, null);
-            x += CHAR_OFFSET;
+        final Rectangle clip = g.getClipBounds();
+        final int first;
+        final int last;
+        if (clip == null) {
+            first = 0;
+            last = DISPLAY_SIZE - 1;
+        }
+        else {
+            first = Math.max(0, (clip.x - START_X) / CHAR_OFFSET);
+            last = Math.min(DISPLAY_SIZE - 1, (clip.x + clip.width - START_X) / CHAR_OFFSET);
         }
+        for (int i = first; i <= last; ++i) {
+            final var value = cpu.getDisplayByte(i);
+            shownBytes[i] = value;
+            final int x = getCharX(i);
+            final int atlasX = getCharIndex(value) * CHAR_WIDTH;
+            g.drawImage(ATLAS, x, START_Y, x + CHAR_WIDTH, START_Y + CHAR_HEIGHT, atlasX, 0, atlasX + CHAR_WIDTH,
+                    CHAR_HEIGHT, null);
+        }
+    }
+
+    private static int getCharX(final int position) {
+        return START_X + position * CHAR_OFFSET;
     }
 
-    private static BufferedImage getCharImage(final byte byteValue) {
+    private static int getCharIndex(final byte byteValue) {
         final int index = Bytes.toUnsignedInt(byteValue) - ASCII_DIFFERENCE;
         if (Integers.isInInterval(index, 0, N_CHARS, false)) {
-            return CHAR_IMAGES[index];
+            return index;
         }
         else {
-            return CHAR_IMAGES[0];
+            return 0;
         }
     }
 }
@@ -14,6 +14,8 @@ public class ButtonPanel extends JPanel {
     private static final Insets BUTTON_INSETS = new Insets(1, 1, 1, 1);
     private static final String DECIMAL_LABEL = "0..9";
     private static final String HEXADECIMAL_LABEL = "0..F";
+    private static final String STEP_BACK_LABEL = "\u25C0";
+    private static final String RUN_BACK_LABEL = "\u25C0\u25C0";
     private static final String RUN_ICON_PATH = "/cesar/resources/images/config.png";
     private static final String NEXT_ICON_PATH = "/cesar/resources/images/tools.png";
     private static final ImageIcon RUN_ICON;
@@ -39,12 +41,18 @@ public class ButtonPanel extends JPanel {
     private final JToggleButton hexadecimalButton;
     private final JToggleButton runButton;
     private final JButton nextButton;
+    private final JButton stepBackButton;
+    private final JButton runBackButton;
 
     public ButtonPanel() {
         decimalButton = new JToggleButton(DECIMAL_LABEL);
         hexadecimalButton = new JToggleButton(HEXADECIMAL_LABEL);
         runButton = new JToggleButton(RUN_ICON);
         nextButton = new JButton(NEXT_ICON);
+        stepBackButton = new JButton(STEP_BACK_LABEL);
+        stepBackButton.setToolTipText("Volta uma instrução");
+        runBackButton = new JButton(RUN_BACK_LABEL);
+        runBackButton.setToolTipText("Volta instruções até um breakpoint ou o início do histórico");
 
         if (Defaults.IS_APPLE) {
             decimalButton.putClientProperty("JButton.buttonType", "segmented");
@@ -63,7 +71,7 @@ public class ButtonPanel extends JPanel {
         setAlignmentY(BOTTOM_ALIGNMENT);
 
         for (final AbstractButton button : new AbstractButton[]{decimalButton, hexadecimalButton, runButton,
-                nextButton}) {
+                nextButton, stepBackButton, runBackButton}) {
             button.setMargin(BUTTON_INSETS);
             button.setAlignmentY(CENTER_ALIGNMENT);
             button.setFocusable(false);
@@ -76,6 +84,8 @@ public class ButtonPanel extends JPanel {
         add(decimalButton);
         add(hexadecimalButton);
         add(Box.createHorizontalGlue());
+        add(runBackButton);
+        add(stepBackButton);
         add(runButton);
         add(nextButton);
     }
@@ -92,6 +102,14 @@ public class ButtonPanel extends JPanel {
         return nextButton;
     }
 
+    public JButton getStepBackButton() {
+        return stepBackButton;
+    }
+
+    public JButton getRunBackButton() {
+        return runBackButton;
+    }
+
     public JToggleButton getRunButton() {
         return runButton;
     }
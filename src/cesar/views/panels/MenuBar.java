@@ -4,6 +4,7 @@ import cesar.utils.Defaults;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.InputEvent;
 import java.awt.event.KeyEvent;
 
 public class MenuBar extends JMenuBar {
@@ -35,6 +36,9 @@ public class MenuBar extends JMenuBar {
 
     public final JMenuItem execRun;
     public final JMenuItem execNext;
+    public final JMenuItem execStepBack;
+    public final JMenuItem execRunBack;
+    public final JCheckBoxMenuItem execEnableHistory;
     public final JMenuItem execChangeProgramCounter;
     public final JMenuItem execZeroProgramCounter;
 
@@ -43,6 +47,10 @@ public class MenuBar extends JMenuBar {
     public final JMenuItem execZeroInterruptionCounter;
     public final JCheckBoxMenuItem execEnableCompatibilityMode;
 
+    public final JCheckBoxMenuItem execEnableProfiler;
+    public final JMenuItem execZeroProfiler;
+    public final JMenuItem execSaveProfile;
+
     public final JMenuItem helpAbout;
 
     public MenuBar() {
@@ -150,6 +158,20 @@ public class MenuBar extends JMenuBar {
         execNext.setToolTipText("Executa o programa passo a passo");
         execNext.setAccelerator(KeyStroke.getKeyStroke(isApple ? KeyEvent.VK_F7 : KeyEvent.VK_F8, 0));
 
+        execStepBack = new JMenuItem("Voltar passo");
+        execStepBack.setToolTipText("Desfaz a última instrução executada");
+        execStepBack.setAccelerator(
+                KeyStroke.getKeyStroke(isApple ? KeyEvent.VK_F7 : KeyEvent.VK_F8, InputEvent.SHIFT_DOWN_MASK));
+
+        execRunBack = new JMenuItem("Rodar para trás");
+        execRunBack.setToolTipText("Desfaz instruções até um breakpoint ou o início do histórico");
+        execRunBack.setAccelerator(
+                KeyStroke.getKeyStroke(isApple ? KeyEvent.VK_F8 : KeyEvent.VK_F9, InputEvent.SHIFT_DOWN_MASK));
+
+        execEnableHistory = new JCheckBoxMenuItem("Habilitar histórico");
+        execEnableHistory.setToolTipText(
+                "Grava a execução para permitir voltar instruções; enquanto habilitado o programa roda mais devagar");
+
         execChangeProgramCounter = new JMenuItem("Alterar PC...");
         execChangeProgramCounter.setToolTipText("Altera o conteúdo do PC");
         execChangeProgramCounter.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_L, CTRL_KEY));
@@ -170,8 +192,21 @@ public class MenuBar extends JMenuBar {
         execEnableCompatibilityMode = new JCheckBoxMenuItem("Habilitar modo de compatibilidade (Cesar16)");
         execEnableCompatibilityMode.setToolTipText("Desabilita o sistema de interrupção");
 
+        execEnableProfiler = new JCheckBoxMenuItem("Habilitar perfilador");
+        execEnableProfiler.setToolTipText(
+                "Conta execuções e acessos por endereço e colore a memória do programa como um mapa de calor");
+
+        execZeroProfiler = new JMenuItem("Zerar perfil");
+        execZeroProfiler.setToolTipText("Zera as contagens do perfilador");
+
+        execSaveProfile = new JMenuItem("Salvar perfil...");
+        execSaveProfile.setToolTipText("Salva as contagens do perfilador em um arquivo CSV");
+
         execMenu.add(execRun);
         execMenu.add(execNext);
+        execMenu.add(execStepBack);
+        execMenu.add(execRunBack);
+        execMenu.add(execEnableHistory);
         execMenu.addSeparator();
         execMenu.add(execChangeProgramCounter);
         execMenu.add(execZeroProgramCounter);
@@ -181,6 +216,10 @@ public class MenuBar extends JMenuBar {
         execMenu.add(execZeroInterruptionCounter);
         execMenu.addSeparator();
         execMenu.add(execEnableCompatibilityMode);
+        execMenu.addSeparator();
+        execMenu.add(execEnableProfiler);
+        execMenu.add(execZeroProfiler);
+        execMenu.add(execSaveProfile);
 
         // =============================================================================================================
         // Ajuda
@@ -3,13 +3,30 @@ package cesar.views.panels;
 import cesar.utils.Defaults;
 
 import javax.swing.*;
+import java.util.Comparator;
+import java.util.PriorityQueue;
 
 public class StatusBar extends JPanel {
     private static final long serialVersionUID = 1408669317780545642L;
     private static final String INITIAL_VALUE = "Pronto";
+    private static final int TEMP_MESSAGE_DELAY = 3000;
+
+    public enum Priority {
+        LOW, NORMAL, HIGH
+    }
 
     private final JLabel label;
 
+    // Mensagens temporárias esperando a vez, da maior prioridade para a menor e, na mesma prioridade, por ordem de
+    // chegada. Tudo aqui só é tocado na thread do Swing.
+    private final PriorityQueue<TempMessage> pendingMessages;
+    private final Timer tempMessageTimer;
+    private TempMessage currentMessage;
+    private long messageSequence;
+
+    // Texto que volta a aparecer quando não há mais mensagens temporárias.
+    private String permanentText;
+
     public StatusBar() {
         super(true);
         label = new JLabel(INITIAL_VALUE);
@@ -19,10 +36,19 @@ public class StatusBar extends JPanel {
         this.add(Box.createHorizontalGlue());
         setMinimumSize(getPreferredSize());
         setBorder(BorderFactory.createEmptyBorder(4, 4, 4, 4));
+
+        pendingMessages = new PriorityQueue<>(
+                Comparator.comparing((TempMessage message) -> message.priority).reversed()
+                          .thenComparingLong(message -> message.sequence));
+        tempMessageTimer = new Timer(TEMP_MESSAGE_DELAY, event -> showNextMessage());
+        tempMessageTimer.setRepeats(false);
+        currentMessage = null;
+        messageSequence = 0;
+        permanentText = INITIAL_VALUE;
     }
 
     public void clear() {
-        label.setText(" ");
+        setText(" ");
     }
 
     /**
@@ -31,27 +57,96 @@ public class StatusBar extends JPanel {
      * @param message A mensagem a ser escrita na barra de status.
      */
     public void setTempMessage(final String message) {
-        final long milliseconds = 3000;
-        final String currentText = getText();
+        setTempMessage(message, Priority.NORMAL);
+    }
 
-        final Thread tempThread = new Thread(() -> {
-            setText(message);
-            try {
-                Thread.sleep(milliseconds);
-            }
-            catch (final InterruptedException e) {
-                e.printStackTrace();
+    /**
+     * Escreve uma mensagem temporária na barra de status. Cada mensagem fica visível por três segundos; as que
+     * chegam nesse meio tempo esperam numa fila, a não ser que tenham prioridade maior, caso em que substituem a
+     * atual na hora e a atual volta para a fila, à frente das de mesma prioridade. Uma mensagem igual à que está
+     * visível só reinicia o tempo dela, e uma igual a alguma da fila é descartada.
+     * <p>
+     * Pode ser chamado de qualquer thread; a barra só é alterada na thread do Swing.
+     *
+     * @param message  A mensagem a ser escrita na barra de status.
+     * @param priority A prioridade da mensagem.
+     */
+    public void setTempMessage(final String message, final Priority priority) {
+        if (!SwingUtilities.isEventDispatchThread()) {
+            SwingUtilities.invokeLater(() -> setTempMessage(message, priority));
+            return;
+        }
+
+        if (currentMessage != null && currentMessage.text.equals(message)) {
+            tempMessageTimer.restart();
+            return;
+        }
+        for (final TempMessage pending : pendingMessages) {
+            if (pending.text.equals(message)) {
+                return;
             }
-            setText(currentText);
-        });
-        tempThread.start();
+        }
+
+        final var tempMessage = new TempMessage(message, priority, messageSequence++);
+        if (currentMessage == null) {
+            show(tempMessage);
+        }
+        else if (priority.compareTo(currentMessage.priority) > 0) {
+            // A mensagem interrompida é mais antiga que as da fila e volta a aparecer inteira depois desta.
+            pendingMessages.add(currentMessage);
+            show(tempMessage);
+        }
+        else {
+            pendingMessages.add(tempMessage);
+        }
+    }
+
+    private void show(final TempMessage message) {
+        currentMessage = message;
+        label.setText(message.text);
+        tempMessageTimer.restart();
+    }
+
+    private void showNextMessage() {
+        final var next = pendingMessages.poll();
+        if (next != null) {
+            show(next);
+        }
+        else {
+            currentMessage = null;
+            label.setText(permanentText);
+        }
     }
 
     public String getText() {
         return label.getText();
     }
 
+    /**
+     * Troca o texto permanente da barra. Se houver uma mensagem temporária visível, o texto novo só aparece quando
+     * ela e as que estiverem esperando saírem.
+     */
     public void setText(final String text) {
-        label.setText(text);
+        if (!SwingUtilities.isEventDispatchThread()) {
+            SwingUtilities.invokeLater(() -> setText(text));
+            return;
+        }
+
+        permanentText = text;
+        if (currentMessage == null) {
+            label.setText(text);
+        }
+    }
+
+    private static final class TempMessage {
+        final String text;
+        final Priority priority;
+        final long sequence;
+
+        TempMessage(final String text, final Priority priority, final long sequence) {
+            this.text = text;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
     }
 }
@@ -4,25 +4,62 @@ import cesar.utils.Defaults;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.TableCellRenderer;
 import javax.swing.table.TableColumn;
 import java.awt.*;
 
 public class ProgramTable extends Table {
     private static final long serialVersionUID = -8843361396327035069L;
 
-    private static final int[] COLUMN_WIDTHS = new int[]{35, 62, 40, 160};
+    private static final int[] COLUMN_WIDTHS = new int[]{24, 35, 62, 40, 160};
+
+    // Opacidade máxima da cor do mapa de calor sobre o fundo da tabela.
+    private static final float MAX_HEAT_ALPHA = 0.75f;
+
+    private final ProgramTableModel model;
 
     public ProgramTable(final ProgramTableModel model) {
         super(model);
-        getColumnModel().getColumn(0).setCellRenderer(new FirstColumnRenderer());
+        this.model = model;
+        getColumnModel().getColumn(ProgramTableModel.BREAK_POINT_COLUMN)
+                .setCellRenderer(new MarkColumnRenderer(Defaults.BREAK_POINT_COLOR));
+        getColumnModel().getColumn(ProgramTableModel.PROGRAM_COUNTER_COLUMN)
+                .setCellRenderer(new MarkColumnRenderer(Defaults.ARROW_COLOR));
+    }
+
+    @Override
+    public Component prepareRenderer(final TableCellRenderer renderer, final int row, final int column) {
+        if (renderer instanceof DefaultTableCellRenderer) {
+            // O DefaultTableCellRenderer guarda a cor passada a setBackground para as próximas células; sem limpar,
+            // a cor de uma linha quente vazaria para as outras.
+            ((DefaultTableCellRenderer) renderer).setBackground(null);
+        }
+        final Component c = super.prepareRenderer(renderer, row, column);
+        if (!isRowSelected(row)) {
+            final float heat = model.getHeat(row);
+            if (heat > 0f) {
+                c.setBackground(blend(getBackground(), Defaults.HEAT_MAP_COLOR, heat * MAX_HEAT_ALPHA));
+            }
+        }
+        return c;
+    }
+
+    private static Color blend(final Color background, final Color foreground, final float alpha) {
+        final float beta = 1f - alpha;
+        return new Color(Math.round(background.getRed() * beta + foreground.getRed() * alpha),
+                Math.round(background.getGreen() * beta + foreground.getGreen() * alpha),
+                Math.round(background.getBlue() * beta + foreground.getBlue() * alpha));
     }
 
     @Override
     void initColumnWidths() {
-        TableColumn column = getColumnModel().getColumn(0);
-        column.setMaxWidth(COLUMN_WIDTHS[0]);
-        column.setMinWidth(COLUMN_WIDTHS[0]);
-        for (int i = 1; i < COLUMN_WIDTHS.length; ++i) {
+        TableColumn column;
+        for (int i = 0; i <= ProgramTableModel.PROGRAM_COUNTER_COLUMN; ++i) {
+            column = getColumnModel().getColumn(i);
+            column.setMaxWidth(COLUMN_WIDTHS[i]);
+            column.setMinWidth(COLUMN_WIDTHS[i]);
+        }
+        for (int i = ProgramTableModel.PROGRAM_COUNTER_COLUMN + 1; i < COLUMN_WIDTHS.length; ++i) {
             column = getColumnModel().getColumn(i);
             column.setWidth(COLUMN_WIDTHS[i]);
             column.setMinWidth(COLUMN_WIDTHS[i]);
@@ -31,14 +68,20 @@ public class ProgramTable extends Table {
         }
     }
 
-    private static class FirstColumnRenderer extends DefaultTableCellRenderer {
+    private static class MarkColumnRenderer extends DefaultTableCellRenderer {
         private static final long serialVersionUID = -1687928120154541133L;
 
+        private final Color color;
+
+        MarkColumnRenderer(final Color color) {
+            this.color = color;
+        }
+
         @Override
         public Component getTableCellRendererComponent(final JTable table, final Object value, final boolean isSelected,
                                                        final boolean hasFocus, final int row, final int col) {
             final JLabel c = (JLabel) super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, col);
-            c.setForeground(Defaults.ARROW_COLOR);
+            c.setForeground(color);
             c.setHorizontalAlignment(SwingConstants.CENTER);
             c.setBorder(Defaults.createEmptyBorder(0));
             return c;
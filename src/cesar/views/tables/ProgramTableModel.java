@@ -1,39 +1,45 @@
 package cesar.views.tables;
 
 import cesar.models.Cpu;
+import cesar.models.Profiler;
 
 public class ProgramTableModel extends TableModel {
     public static final long serialVersionUID = -5373447997057887767L;
+    public static final int BREAK_POINT_COLUMN = 0;
+    public static final int PROGRAM_COUNTER_COLUMN = 1;
     private static final String ARROW = " \u279C";
+    private static final String BREAK_POINT_MARK = "\u25CF";
 
     private int programCounterRow;
 
     public ProgramTableModel(final Cpu cpu) {
-        super(cpu, new String[]{"PC", "Endereço", "Dado", "Mnemônico"},
-                new Class<?>[]{String.class, Integer.class, Byte.class, String.class});
+        super(cpu, new String[]{"BP", "PC", "Endereço", "Dado", "Mnemônico"},
+                new Class<?>[]{String.class, String.class, Integer.class, Byte.class, String.class});
         setProgramCounterRow(0);
     }
 
     @Override
     public String getAddressAsString(final int row) {
-        return (String) getValueAt(row, 1);
+        return (String) getValueAt(row, 2);
     }
 
     @Override
     public String getValueAsString(final int row) {
-        return (String) getValueAt(row, 2);
+        return (String) getValueAt(row, 3);
     }
 
     @Override
     public Object getValueAt(final int row, final int column) {
         switch (column) {
-            case 0:
+            case BREAK_POINT_COLUMN:
+                return hasBreakPoint(row) ? BREAK_POINT_MARK : "";
+            case PROGRAM_COUNTER_COLUMN:
                 return getProgramCounterRowAsString(row);
-            case 1:
-                return formatNumber(row);
             case 2:
-                return formatNumber(getByte(row));
+                return formatNumber(row);
             case 3:
+                return formatNumber(getByte(row));
+            case 4:
             default:
                 return getMnemonic(row);
         }
@@ -43,6 +49,22 @@ public class ProgramTableModel extends TableModel {
         return row == getProgramCounterRow() ? ARROW : "";
     }
 
+    /**
+     * Intensidade da linha no mapa de calor, entre 0 e 1, em escala logarítmica das execuções do endereço em relação
+     * ao endereço mais executado. É 0 quando o perfilador está desabilitado.
+     */
+    public float getHeat(final int row) {
+        final Profiler profiler = getProfiler();
+        if (profiler == null) {
+            return 0f;
+        }
+        final long count = profiler.getExecutionCount(row);
+        if (count == 0) {
+            return 0f;
+        }
+        return (float) (Math.log1p(count) / Math.log1p(profiler.getMaxExecutionCount()));
+    }
+
     public int getProgramCounterRow() {
         return programCounterRow;
     }
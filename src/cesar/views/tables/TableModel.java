@@ -2,21 +2,20 @@ package cesar.views.tables;
 
 import cesar.models.Base;
 import cesar.models.Cpu;
-import cesar.utils.Bytes;
+import cesar.models.Profiler;
 import cesar.utils.Defaults;
+import cesar.utils.NumberStrings;
 
 import javax.swing.table.AbstractTableModel;
 
 public abstract class TableModel extends AbstractTableModel {
     private static final long serialVersionUID = -124231497089309828L;
-    private final static String DECIMAL_FORMAT = "%d";
-
-    private final static String HEXADECIMAL_FORMAT = "%x";
 
     private final Cpu cpu;
     private final String[] columnNames;
     private final Class<?>[] classNames;
-    private String formatString;
+    // Textos da base corrente; trocar de base é só trocar de tabela.
+    private NumberStrings numberStrings;
 
     public TableModel(final Cpu cpu, final String[] columnNames, final Class<?>[] classNames) {
         this.cpu = cpu;
@@ -26,22 +25,33 @@ public abstract class TableModel extends AbstractTableModel {
     }
 
     public void setBase(final Base base) {
-        formatString = base == Base.DECIMAL ? DECIMAL_FORMAT : HEXADECIMAL_FORMAT;
+        numberStrings = NumberStrings.forBase(base);
         fireTableDataChanged();
     }
 
     protected String formatNumber(final byte number) {
-        return String.format(formatString, Bytes.toUnsignedInt(number)).toUpperCase();
+        return numberStrings.byteString(number);
     }
 
     protected String formatNumber(final int number) {
-        return String.format(formatString, number).toUpperCase();
+        return numberStrings.addressString(number);
     }
 
     protected byte getByte(final int address) {
         return cpu.getByte(address);
     }
 
+    protected boolean hasBreakPoint(final int address) {
+        return cpu.hasBreakPoint(address);
+    }
+
+    /**
+     * Contagens do perfilador, ou null se ele não está habilitado.
+     */
+    protected Profiler getProfiler() {
+        return cpu.isProfilingEnabled() ? cpu.getProfiler() : null;
+    }
+
     protected String getMnemonic(final int address) {
         return cpu.getMnemonic(address);
     }
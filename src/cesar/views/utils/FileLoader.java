@@ -4,34 +4,27 @@ import cesar.models.Base;
 import cesar.models.Cpu;
 import cesar.utils.Defaults;
 import cesar.utils.FileUtils;
+import cesar.utils.MemoryFile;
 import cesar.views.panels.StatusBar;
 import cesar.views.windows.MainWindow;
 
 import javax.swing.*;
 import javax.swing.filechooser.FileFilter;
 import java.awt.*;
-import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.Objects;
 
 public class FileLoader {
-    private static final int CESAR_FILE_SIZE = 0x10004; // 65_540
-
-    private static final int BUFFER_SIZE = Cpu.MEMORY_SIZE; // 0x10000 ou 65_536
-
     private static final int MIN_ADDRESS = Cpu.FIRST_ADDRESS;
 
     private static final int MAX_ADDRESS = Cpu.LAST_ADDRESS;
-    private static final String WRONG_SIZE_MESSAGE = "Tamanho de arquivo incorreto";
     private static final String PARTIAL_LOAD_DIALOG_TITLE = "Carga Parcial de Memória";
     private static final String ERROR_MESSAGE_FORMAT = "ERRO: Posição de memória inválida (%s)";
     private static final String START_ADDRESS_MESSAGE = "Digite o endereço inicial da memória a copiar";
     private static final String END_ADDRESS_MESSAGE = "Digite o endereço final da memória a copiar";
     private static final String TARGET_ADDRESS_MESSAGE = "Digite o endereço de destino";
     private static final String FILE_DESCRIPTION = "Arquivos do Cesar (*.mem)";
-    private static final String FILE_EXTENSION = "mem";
 
     private final StatusBar statusBar;
     private final Cpu cpu;
@@ -76,34 +69,15 @@ public class FileLoader {
     }
 
     private byte[] readBytes(final File file) {
-        if (hasCorrectFileSize(file)) {
-            try (var inputStream = new BufferedInputStream(new FileInputStream(file))) {
-                final byte[] fileBytes = new byte[BUFFER_SIZE];
-                final int headerSize = 4; // Os quatro primeiros bytes são o cabeçalho do arquivo.
-                if (inputStream.skip(headerSize) != headerSize) {
-                    statusBar.setTempMessage(
-                            String.format("Não foi possível avançar o cabeçalho do arquivo \"%s\"", file.getName()));
-                }
-                final int bytesRead = inputStream.read(fileBytes, 0, BUFFER_SIZE);
-                if (bytesRead != BUFFER_SIZE) {
-                    statusBar.setTempMessage("Não foi possível ler todos os bytes do arquivo");
-                }
-                return fileBytes;
-            }
-            catch (final IOException e) {
-                statusBar.setTempMessage("Ocorreu um erro ao ler o arquivo.");
-            }
+        try {
+            return MemoryFile.read(file);
         }
-        else {
-            statusBar.setTempMessage(WRONG_SIZE_MESSAGE);
+        catch (final IOException e) {
+            statusBar.setTempMessage(e.getMessage(), StatusBar.Priority.HIGH);
         }
         return null;
     }
 
-    private static boolean hasCorrectFileSize(final File file) {
-        return CESAR_FILE_SIZE == (int) file.length();
-    }
-
     public boolean loadFilePartially() {
         if (showDialog() && getAddresses()) {
             cpu.setMemory(readBytes(currentFile), startAddress, endAddress, targetAddress);
@@ -182,7 +156,7 @@ public class FileLoader {
                     return true;
                 }
                 else {
-                    return FileUtils.getFileExtension(file.getName()).toLowerCase().equals(FILE_EXTENSION);
+                    return FileUtils.getFileExtension(file.getName()).toLowerCase().equals(MemoryFile.EXTENSION);
                 }
             }
             return false;
@@ -0,0 +1,56 @@
+package cesar.views.utils;
+
+import cesar.models.Profiler;
+import cesar.utils.FileUtils;
+
+import javax.swing.*;
+import javax.swing.filechooser.FileNameExtensionFilter;
+import java.awt.*;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+public class ProfileSaver {
+    private static final String FILE_FILTER_DESCRIPTION = "Arquivos CSV (*.csv)";
+    private static final String FILE_EXTENSION = "csv";
+    private static final String OVERWRITE_DIALOG_TITLE = "Deseja sobreescrever o arquivo?";
+    private static final String OVERWRITE_DIALOG_MESSAGE = "Arquivo já existe";
+
+    private final Component parent;
+    private final JFileChooser fileChooser;
+
+    public ProfileSaver(final Component parent) {
+        this.parent = parent;
+        fileChooser = new JFileChooser();
+        fileChooser.setMultiSelectionEnabled(false);
+        fileChooser.setFileFilter(new FileNameExtensionFilter(FILE_FILTER_DESCRIPTION, FILE_EXTENSION));
+    }
+
+    public boolean saveProfile(final Profiler profiler) {
+        if (fileChooser.showSaveDialog(parent) != JFileChooser.APPROVE_OPTION) {
+            return false;
+        }
+        File file = fileChooser.getSelectedFile();
+        if (FileUtils.getFileExtension(file.getName()).isEmpty()) {
+            file = new File(String.format("%s.%s", file.getAbsolutePath(), FILE_EXTENSION));
+        }
+        if (file.isDirectory() || file.exists() && JOptionPane
+                .showConfirmDialog(parent, OVERWRITE_DIALOG_MESSAGE, OVERWRITE_DIALOG_TITLE,
+                        JOptionPane.YES_NO_OPTION) != JOptionPane.OK_OPTION) {
+            return false;
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.US_ASCII)) {
+            profiler.writeCsv(writer);
+            return true;
+        }
+        catch (final IOException e) {
+            final String message =
+                    String.format("Um erro ocorreu ao tentar salvar o arquivo \"%s\"\n%s", file.getName(),
+                            e.getMessage());
+            JOptionPane.showMessageDialog(parent, message, "Erro ao salvar o arquivo", JOptionPane.ERROR_MESSAGE);
+            return false;
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package cesar.views.windows;
 
-import java.awt.Color;
 import java.awt.GridBagConstraints;
 
 import javax.swing.Box;
@@ -11,6 +10,7 @@ import javax.swing.text.AbstractDocument;
 
 import cesar.models.Base;
 import cesar.models.Cpu;
+import cesar.utils.Defaults;
 import cesar.utils.Shorts;
 import cesar.views.tables.ProgramTable;
 import cesar.views.tables.ProgramTableModel;
@@ -58,8 +58,6 @@ public class ProgramWindow extends SideWindow<ProgramTable, ProgramTableModel> {
     private static final String TITLE = "Programa";
     private static final String BREAK_POINT_LABEL = "BP";
 
-    private static final Color BREAK_POINT_COLOR = new Color(0xAA, 0x00, 0x00);
-
     private final BreakPointField bpField;
 
     public ProgramWindow(final MainWindow parent, final Cpu cpu) {
@@ -78,7 +76,7 @@ public class ProgramWindow extends SideWindow<ProgramTable, ProgramTableModel> {
         super.initLayout();
 
         final var bpLabel = new JLabel(BREAK_POINT_LABEL);
-        bpLabel.setForeground(BREAK_POINT_COLOR);
+        bpLabel.setForeground(Defaults.BREAK_POINT_COLOR);
 
         final var lowerPanel = new JPanel(
             getGridLayout(new double[] { 1.0 }, new double[] { 0.0, 0.0, 1.0, 0.0, 0.0 }));
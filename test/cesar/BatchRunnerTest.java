@@ -0,0 +1,80 @@
+package cesar;
+
+import cesar.utils.MemoryFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Vários Cpus executando ao mesmo tempo não podem interferir uns nos outros: o mesmo programa rodado em paralelo dá o
+ * mesmo resultado que rodado sozinho.
+ */
+class BatchRunnerTest {
+    private static final int COPIES = 12;
+
+    // MOV #0x1000, R2; MOV #20000, R5; laço: INC R0; ADD R0, R1; MOV R1, (R2)+; SOB R5, laço; HLT
+    private static final byte[] PROGRAM = {
+        (byte) 0x93, (byte) 0xC2, 0x10, 0x00,
+        (byte) 0x93, (byte) 0xC5, 0x4E, 0x20,
+        (byte) 0x82, 0x00,
+        (byte) 0xA0, 0x01,
+        (byte) 0x90, 0x4A,
+        0x55, 0x08,
+        (byte) 0xF0
+    };
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void parallelRunsMatchSequentialRun() throws IOException {
+        final var programs = Files.createDirectory(directory.resolve("programas"));
+        final var file = new byte[MemoryFile.CESAR_FILE_SIZE];
+        System.arraycopy(PROGRAM, 0, file, MemoryFile.HEADER_SIZE, PROGRAM.length);
+        for (int i = 0; i < COPIES; ++i) {
+            Files.write(programs.resolve(String.format("programa%02d.mem", i)), file);
+        }
+        // Um arquivo com erro não interrompe os outros.
+        Files.write(programs.resolve("quebrado.mem"), new byte[10]);
+
+        for (final String engine : List.of("INTERPRETER", "THREADED", "JIT")) {
+            final var sequential = run(programs, engine, 1);
+            final var parallel = run(programs, engine, 6);
+            assertEquals(sequential, parallel, engine);
+            assertEquals(COPIES + 2, parallel.size(), engine);
+            assertTrue(parallel.get(COPIES + 1).contains("\"ERROR\""), engine);
+            final var expected = withoutFileName(parallel.get(1));
+            assertTrue(expected.startsWith("\"HALT\",\"\",80002,"), engine + ": " + expected);
+            for (int i = 2; i <= COPIES; ++i) {
+                assertEquals(expected, withoutFileName(parallel.get(i)), engine);
+            }
+        }
+    }
+
+    /**
+     * Roda o BatchRunner sobre o diretório e devolve o cabeçalho seguido das linhas, em ordem de arquivo.
+     */
+    private List<String> run(final Path programs, final String engine, final int threads) throws IOException {
+        final var output = directory.resolve("resultado-" + engine + "-" + threads + ".csv");
+        BatchRunner.main(new String[] { "--engine=" + engine, "--threads=" + threads, "--output=" + output,
+            programs.toString() });
+        final var lines = Files.readAllLines(output, StandardCharsets.UTF_8);
+        final var header = lines.get(0);
+        final var results = lines.subList(1, lines.size()).stream().sorted().collect(Collectors.toList());
+        results.add(0, header);
+        return results;
+    }
+
+    private static String withoutFileName(final String line) {
+        return line.substring(line.indexOf("\",") + 2);
+    }
+}
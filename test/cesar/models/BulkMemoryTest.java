@@ -0,0 +1,79 @@
+package cesar.models;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+/**
+ * copyMemory copia como um memmove, mesmo com as faixas sobrepostas, e fillMemory repete o padrão até o fim da faixa,
+ * cortando a última repetição.
+ */
+class BulkMemoryTest {
+    private static final int START = 0x100;
+
+    @Test
+    void overlappingCopyToAHigherAddress() {
+        final var cpu = createCpu(START, 1, 2, 3, 4, 5, 6);
+
+        cpu.copyMemory(START, START + 3, START + 2);
+
+        assertBytes(cpu, START, 1, 2, 1, 2, 3, 4, 0);
+    }
+
+    @Test
+    void overlappingCopyToALowerAddress() {
+        final var cpu = createCpu(START, 1, 2, 3, 4, 5, 6);
+
+        cpu.copyMemory(START + 2, START + 5, START);
+
+        assertBytes(cpu, START, 3, 4, 5, 6, 5, 6, 0);
+    }
+
+    @Test
+    void copyIsClippedAtTheEndOfMemory() {
+        final var cpu = createCpu(START, 1, 2, 3, 4, 5, 6);
+
+        cpu.copyMemory(START, START + 5, Cpu.LAST_ADDRESS - 2);
+
+        assertBytes(cpu, Cpu.LAST_ADDRESS - 3, 0, 1, 2, 3);
+        assertBytes(cpu, Cpu.FIRST_ADDRESS, 0, 0, 0);
+    }
+
+    @Test
+    void patternFillCutsTheLastRepetition() {
+        final var cpu = createCpu(START);
+
+        cpu.fillMemory(START + 1, START + 10, new byte[] { 7, 8, 9 });
+
+        assertBytes(cpu, START, 0, 7, 8, 9, 7, 8, 9, 7, 8, 9, 7, 0);
+    }
+
+    @Test
+    void patternLongerThanTheRangeIsCut() {
+        final var cpu = createCpu(START);
+
+        cpu.fillMemory(START, START + 1, new byte[] { 7, 8, 9 });
+
+        assertBytes(cpu, START, 7, 8, 0);
+    }
+
+    private static Cpu createCpu(final int address, final int... bytes) {
+        final var memory = new byte[Cpu.MEMORY_SIZE];
+        for (int i = 0; i < bytes.length; ++i) {
+            memory[address + i] = (byte) bytes[i];
+        }
+        final var cpu = new Cpu();
+        cpu.setMemory(memory);
+        return cpu;
+    }
+
+    private static void assertBytes(final Cpu cpu, final int address, final int... expected) {
+        final var expectedBytes = new byte[expected.length];
+        final var actual = new byte[expected.length];
+        for (int i = 0; i < expected.length; ++i) {
+            expectedBytes[i] = (byte) expected[i];
+            actual[i] = cpu.getByte(address + i);
+        }
+        assertArrayEquals(expectedBytes, actual);
+    }
+}
@@ -0,0 +1,31 @@
+package cesar.models;
+
+import java.util.Arrays;
+
+/**
+ * Descrição textual de todo o estado visível da CPU, usada pelos testes para comparar duas execuções.
+ */
+final class CpuState {
+    private CpuState() {
+    }
+
+    /**
+     * Registradores, flags, contagem de acessos, RI, MN, um hash da memória e o último watchpoint disparado.
+     */
+    static String describe(final Cpu cpu) {
+        final var builder = new StringBuilder();
+        for (int i = 0; i < Cpu.REGISTER_COUNT; ++i) {
+            builder.append(cpu.getRegisterValue(i)).append(' ');
+        }
+        builder.append(cpu.isNegative()).append(' ').append(cpu.isZero()).append(' ').append(cpu.isOverflow())
+               .append(' ').append(cpu.isCarry()).append(' ').append(cpu.getMemoryAccessCount()).append(' ')
+               .append(cpu.getReadInstruction()).append(" | ").append(cpu.getReadMnemonic()).append(' ')
+               .append(Arrays.hashCode(cpu.getMemory()));
+        final var hit = cpu.getWatchPointHit();
+        if (hit != null) {
+            builder.append(" watchpoint ").append(hit.getProgramCounter()).append(' ').append(hit.getAddress())
+                   .append(' ').append(hit.isWrite());
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,84 @@
+package cesar.models;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Uma escrita no meio de uma instrução refaz a desmontagem a partir do início dessa instrução até reencontrar um
+ * início antigo, e só as linhas refeitas aparecem nas faixas alteradas.
+ */
+class DisassemblyTest {
+    private static final int START = 0x100;
+
+    @Test
+    void writeThatShortensAnInstructionSplitsItsOldBytes() {
+        // MOV #0, R0 (4 bytes) seguido de NOPs.
+        final var program = new ProgramBuilder(START);
+        program.moveImmediate(0, 0);
+        final var cpu = createCpu(program.getMemory());
+
+        // MOV (R4)+, R0: 2 bytes. Os dois bytes do imediato viram dois NOPs.
+        cpu.setByte(START + 1, (byte) 0x00);
+
+        assertStarts(cpu, START, true, false, true, true, true);
+        assertEquals(List.of(List.of(START, START + 3)), drainChanges(cpu));
+    }
+
+    @Test
+    void writeThatLengthensAnInstructionResynchronizesOnAnOldStart() {
+        // MOV R0, R1 (2 bytes), NOP, MOV R2, R3 (2 bytes), NOP.
+        final var program = new ProgramBuilder(START);
+        program.twoOperand(ProgramBuilder.MOV, ProgramBuilder.REGISTER, 0, ProgramBuilder.REGISTER, 1);
+        program.putByte(0x00);
+        program.twoOperand(ProgramBuilder.MOV, ProgramBuilder.REGISTER, 2, ProgramBuilder.REGISTER, 3);
+        program.putByte(0x00);
+        final var cpu = createCpu(program.getMemory());
+        assertStarts(cpu, START, true, false, true, true, false, true, true);
+
+        // MOV R0, x(R1): 4 bytes, que engolem o NOP e o primeiro byte do segundo MOV. O byte que sobra dele começa
+        // um DEC R0 de 2 bytes, que engole o NOP seguinte; a desmontagem volta à antiga em START + 6.
+        cpu.setByte(START + 1, (byte) ((ProgramBuilder.INDEXED << 3) | 1));
+
+        assertStarts(cpu, START, true, false, false, false, true, false, true);
+        assertEquals(List.of(List.of(START, START + 5)), drainChanges(cpu));
+    }
+
+    @Test
+    void writeThatKeepsTheLengthRedecodesOnlyTheEnclosingInstruction() {
+        // MOV #0, R0: uma escrita no último byte do imediato recua até START e não muda a partição.
+        final var program = new ProgramBuilder(START);
+        program.moveImmediate(0, 0);
+        final var cpu = createCpu(program.getMemory());
+
+        cpu.setByte(START + 3, (byte) 0x12);
+
+        assertStarts(cpu, START, true, false, false, false, true);
+        assertEquals(List.of(List.of(START, START + 3)), drainChanges(cpu));
+    }
+
+    private static Cpu createCpu(final byte[] memory) {
+        final var cpu = new Cpu();
+        cpu.setMemory(memory);
+        cpu.clearChangedMnemonicRanges();
+        return cpu;
+    }
+
+    private static void assertStarts(final Cpu cpu, final int start, final boolean... expected) {
+        final var actual = new boolean[expected.length];
+        for (int i = 0; i < expected.length; ++i) {
+            actual[i] = cpu.isInstructionStart(start + i);
+        }
+        assertArrayEquals(expected, actual);
+    }
+
+    private static List<List<Integer>> drainChanges(final Cpu cpu) {
+        final var ranges = new ArrayList<List<Integer>>();
+        cpu.drainChangedMnemonicRanges((start, end) -> ranges.add(List.of(start, end)));
+        return ranges;
+    }
+}
@@ -0,0 +1,156 @@
+package cesar.models;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Os modos THREADED e JIT precisam produzir exatamente o estado do interpretador: registradores, flags, contagem de
+ * acessos, RI e MN, memória e watchpoints, a cada chamada de run.
+ */
+class EngineEquivalenceTest {
+    private static final Cpu.Engine[] ENGINES = { Cpu.Engine.INTERPRETER, Cpu.Engine.THREADED, Cpu.Engine.JIT };
+
+    private static final int LOOP_START = 0x2000;
+    private static final int SELF_MODIFYING_ITERATIONS = 1210;
+
+    @Test
+    void compilesEveryBlock() {
+        final var random = new Random(1);
+        for (int i = 0; i < 2000; ++i) {
+            final var memory = new byte[Cpu.MEMORY_SIZE];
+            random.nextBytes(memory);
+            final var cache = new DecodeCache(memory);
+            final var addresses = new int[ThreadedEngine.MAX_BLOCK_SIZE];
+            final var instructions = new DecodedInstruction[ThreadedEngine.MAX_BLOCK_SIZE];
+            var address = random.nextInt(Cpu.MEMORY_SIZE);
+            var lastCodeAddress = address;
+            var size = 0;
+            while (size < addresses.length) {
+                final var decoded = cache.get(address);
+                addresses[size] = address;
+                instructions[size++] = decoded;
+                lastCodeAddress = address + decoded.length - 1;
+                if (decoded.isControlTransfer() || decoded.nextAddress <= address) {
+                    break;
+                }
+                address = decoded.nextAddress;
+            }
+            final var block = new BasicBlock(cache, Arrays.copyOf(addresses, size), lastCodeAddress,
+                new InstructionHandler[size]);
+            final var blockInstructions = Arrays.copyOf(instructions, size);
+            assertDoesNotThrow(() -> BlockCompiler.compile(block, blockInstructions),
+                () -> "bloco em " + block.addresses[0]);
+        }
+    }
+
+    @Test
+    void randomLoopsRunTheSameOnEveryEngine() {
+        for (int seed = 0; seed < 100; ++seed) {
+            final var random = new Random(seed);
+            final var memory = ProgramBuilder.randomLoop(random, LOOP_START);
+            final var cpus = createCpus(memory, LOOP_START);
+            if (random.nextInt(3) == 0) {
+                final var start = random.nextInt(Cpu.MEMORY_SIZE);
+                final var end = Math.min(Cpu.LAST_ADDRESS, start + random.nextInt(64));
+                final var onRead = random.nextBoolean();
+                final var watchPoint = new WatchPoint(start, end, onRead, !onRead || random.nextBoolean());
+                for (final Cpu cpu : cpus) {
+                    cpu.addWatchPoint(watchPoint);
+                }
+            }
+            runAndCompare(cpus, random, "semente " + seed);
+        }
+    }
+
+    @Test
+    void selfModifyingLoopRunsTheSameOnEveryEngine() {
+        final var memory = selfModifyingLoop();
+        for (int seed = 0; seed < 20; ++seed) {
+            final var cpus = createCpus(memory, LOOP_START - 16);
+            runAndCompare(cpus, new Random(seed), "semente " + seed);
+            for (final Cpu cpu : cpus) {
+                assertEquals(1184, cpu.getRegisterValue(0));
+            }
+        }
+    }
+
+    @Test
+    void codeChangedBetweenRunsIsSeenByEveryEngine() {
+        final var program = new ProgramBuilder(LOOP_START);
+        program.oneOperand(ProgramBuilder.INC, ProgramBuilder.REGISTER, 0);
+        program.twoOperand(ProgramBuilder.ADD, ProgramBuilder.REGISTER, 0, ProgramBuilder.REGISTER, 1);
+        program.branch(ProgramBuilder.BR, LOOP_START);
+        final var cpus = createCpus(program.getMemory(), LOOP_START);
+        final var states = new String[cpus.length];
+        for (int i = 0; i < cpus.length; ++i) {
+            cpus[i].run(30_000, Cpu.StopPolicy.NEVER);
+            // INC R0 vira DEC R0 com o bloco já compilado.
+            cpus[i].setByte(LOOP_START, (byte) (0x80 | ProgramBuilder.DEC));
+            cpus[i].run(30_000, Cpu.StopPolicy.NEVER);
+            states[i] = CpuState.describe(cpus[i]);
+        }
+        assertEquals(states[0], states[1]);
+        assertEquals(states[0], states[2]);
+        assertEquals(0, cpus[0].getRegisterValue(0));
+    }
+
+    private static Cpu[] createCpus(final byte[] memory, final int start) {
+        final var cpus = new Cpu[ENGINES.length];
+        for (int i = 0; i < cpus.length; ++i) {
+            cpus[i] = new Cpu(ENGINES[i]);
+            cpus[i].setMemory(memory.clone());
+            cpus[i].setRegisterValue(Cpu.PC, (short) start);
+        }
+        return cpus;
+    }
+
+    /**
+     * Chama run em todas as CPUs com as mesmas quantidades de instruções, sorteadas entre chamadas curtas, que cortam
+     * os blocos no meio, e longas, até o programa parar.
+     */
+    private static void runAndCompare(final Cpu[] cpus, final Random random, final String label) {
+        for (int call = 0; call < 200; ++call) {
+            final long maxInstructions = 1 + random.nextInt(random.nextBoolean() ? 10 : 20_000);
+            final var expected = run(cpus[0], maxInstructions);
+            for (int i = 1; i < cpus.length; ++i) {
+                assertEquals(expected, run(cpus[i], maxInstructions), label + ", chamada " + call + ", " + ENGINES[i]);
+            }
+            if (expected.startsWith("HALT") || expected.startsWith("END_OF_MEMORY")) {
+                return;
+            }
+        }
+    }
+
+    private static String run(final Cpu cpu, final long maxInstructions) {
+        final var result = cpu.run(maxInstructions, Cpu.StopPolicy.NEVER);
+        return result.getResult() + " " + result.getInstructionCount() + " " + result.getMemoryAccessCount() + " "
+               + result.getProgramCounter() + " " + CpuState.describe(cpu);
+    }
+
+    /**
+     * Laço que escreve a palavra de DEC R0 numa posição por volta, andando em direção ao próprio código. Na volta 1201,
+     * com o bloco já compilado, ele troca o INC R0 que acabou de executar por DEC R0; na seguinte, troca a instrução
+     * que está executando. As voltas que restam decrementam R0 duas vezes: R0 termina em 1200 - 2 * 8 = 1184.
+     */
+    private static byte[] selfModifyingLoop() {
+        // As instruções antes do laço ficam na página anterior, para que as escritas sobre elas não invalidem o bloco.
+        final var program = new ProgramBuilder(LOOP_START - 16);
+        program.moveImmediate(0x8000 | ProgramBuilder.DEC << 8, 2);
+        program.moveImmediate(LOOP_START - 2 * (SELF_MODIFYING_ITERATIONS - 10), 4);
+        program.moveImmediate(SELF_MODIFYING_ITERATIONS, 5);
+        program.oneOperand(ProgramBuilder.CLR, ProgramBuilder.REGISTER, 0);
+        program.putByte(0x00);
+        program.putByte(0x00);
+        program.oneOperand(ProgramBuilder.INC, ProgramBuilder.REGISTER, 0);
+        program.twoOperand(ProgramBuilder.MOV, ProgramBuilder.REGISTER, 2, ProgramBuilder.POST_INCREMENTED, 4);
+        program.twoOperand(ProgramBuilder.ADD, ProgramBuilder.REGISTER, 0, ProgramBuilder.REGISTER, 1);
+        program.sob(5, LOOP_START);
+        program.halt();
+        return program.getMemory();
+    }
+}
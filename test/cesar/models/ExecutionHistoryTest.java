@@ -0,0 +1,101 @@
+package cesar.models;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Voltar instruções precisa reproduzir exatamente o estado que a CPU tinha antes delas, tanto pelo buffer do histórico
+ * quanto reexecutando a partir das cópias completas.
+ */
+class ExecutionHistoryTest {
+    private static final int LOOP_START = 0x100;
+    private static final int LOOP_SIZE = 5;
+
+    @Test
+    void stepBackRestoresEveryPreviousState() {
+        for (final Cpu.Engine engine : Cpu.Engine.values()) {
+            for (int seed = 0; seed < 10; ++seed) {
+                final var cpu = new Cpu(engine);
+                cpu.setMemory(ProgramBuilder.randomLoop(new Random(seed), LOOP_START));
+                cpu.setRegisterValue(Cpu.PC, (short) LOOP_START);
+                cpu.setHistoryEnabled(true);
+                final var states = new ArrayList<String>();
+                for (int i = 0; i < 3000; ++i) {
+                    states.add(CpuState.describe(cpu));
+                    final var result = cpu.run(1, Cpu.StopPolicy.NEVER).getResult();
+                    if (result == Cpu.ExecutionResult.HALT || result == Cpu.ExecutionResult.END_OF_MEMORY) {
+                        break;
+                    }
+                }
+                for (int i = states.size() - 1; i >= 0; --i) {
+                    assertTrue(cpu.stepBack(), engine + ", semente " + seed + ", instrução " + i);
+                    assertEquals(states.get(i), CpuState.describe(cpu),
+                        engine + ", semente " + seed + ", instrução " + i);
+                }
+                assertFalse(cpu.canStepBack());
+                assertFalse(cpu.stepBack());
+            }
+        }
+    }
+
+    @Test
+    void runBackBeyondTheBufferReplaysFromSnapshots() {
+        final var executed = 150_000;
+        for (final Cpu.Engine engine : Cpu.Engine.values()) {
+            for (final int back : new int[] { 1, 1000, 70_000 }) {
+                final var expected = createCpu(engine);
+                expected.run(executed - back, Cpu.StopPolicy.NEVER);
+                final var cpu = createCpu(engine);
+                cpu.setHistoryEnabled(true);
+                cpu.run(executed, Cpu.StopPolicy.NEVER);
+                final var accessCount = cpu.getMemoryAccessCount();
+                final var result = cpu.runBack(back, Cpu.StopPolicy.NEVER);
+                assertEquals(Cpu.ExecutionResult.OK, result.getResult(), engine + ", " + back);
+                assertEquals(back, result.getInstructionCount(), engine + ", " + back);
+                assertEquals(accessCount - expected.getMemoryAccessCount(), result.getMemoryAccessCount(),
+                    engine + ", " + back);
+                assertEquals(CpuState.describe(expected), CpuState.describe(cpu), engine + ", " + back);
+            }
+        }
+    }
+
+    @Test
+    void runBackStopsOnBreakPoint() {
+        for (final Cpu.Engine engine : Cpu.Engine.values()) {
+            final var cpu = createCpu(engine);
+            cpu.setHistoryEnabled(true);
+            cpu.run(200 * LOOP_SIZE, Cpu.StopPolicy.NEVER);
+            // Breakpoint no MOV R0, R3: são quatro instruções para trás a partir do início do laço.
+            cpu.addBreakPoint(LOOP_START + 2);
+            final var result = cpu.runBack(1000, Cpu.StopPolicy.NEVER);
+            assertEquals(Cpu.ExecutionResult.BREAK_POINT, result.getResult(), engine.toString());
+            assertEquals(4, result.getInstructionCount(), engine.toString());
+            assertEquals(LOOP_START + 2, cpu.getProgramCounter(), engine.toString());
+            assertEquals(200, cpu.getRegisterValue(0), engine.toString());
+        }
+    }
+
+    /**
+     * Laço sem fim que escreve R0 em 0x4000 + (R0 & 0x0FFE), com LOOP_SIZE instruções.
+     */
+    private static Cpu createCpu(final Cpu.Engine engine) {
+        final var program = new ProgramBuilder(LOOP_START);
+        program.oneOperand(ProgramBuilder.INC, ProgramBuilder.REGISTER, 0);
+        program.twoOperand(ProgramBuilder.MOV, ProgramBuilder.REGISTER, 0, ProgramBuilder.REGISTER, 3);
+        program.twoOperand(ProgramBuilder.AND, ProgramBuilder.POST_INCREMENTED, Cpu.PC, ProgramBuilder.REGISTER, 3);
+        program.word(0x0FFE);
+        program.twoOperand(ProgramBuilder.MOV, ProgramBuilder.REGISTER, 0, ProgramBuilder.INDEXED, 3);
+        program.word(0x4000);
+        program.branch(ProgramBuilder.BR, LOOP_START);
+        final var cpu = new Cpu(engine);
+        cpu.setMemory(program.getMemory());
+        cpu.setRegisterValue(Cpu.PC, (short) LOOP_START);
+        return cpu;
+    }
+}
@@ -0,0 +1,181 @@
+package cesar.models;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Monta programas de teste diretamente em bytes, como os programas dos benchmarks.
+ */
+final class ProgramBuilder {
+    static final int MOV = 0x9;
+    static final int ADD = 0xA;
+    static final int SUB = 0xB;
+    static final int CMP = 0xC;
+    static final int AND = 0xD;
+    static final int OR = 0xE;
+
+    static final int CLR = 0;
+    static final int NOT = 1;
+    static final int INC = 2;
+    static final int DEC = 3;
+    static final int TST = 5;
+
+    static final int BR = 0;
+    static final int BNE = 1;
+    static final int BEQ = 2;
+
+    static final int REGISTER = 0;
+    static final int POST_INCREMENTED = 1;
+    static final int PRE_DECREMENTED = 2;
+    static final int INDEXED = 3;
+    static final int INDIRECT = 4;
+    static final int POST_INCREMENTED_INDIRECT = 5;
+    static final int PRE_DECREMENTED_INDIRECT = 6;
+    static final int INDEXED_INDIRECT = 7;
+
+    private final byte[] memory;
+    private int address;
+
+    ProgramBuilder(final int start) {
+        memory = new byte[Cpu.MEMORY_SIZE];
+        address = start;
+    }
+
+    /**
+     * Laço em start com até 30 instruções sorteadas, com todos os modos de endereçamento, terminado por SOB ou por um
+     * desvio condicional de volta ao início. Os ponteiros de R0 a R4 podem apontar para o próprio laço, o que faz o
+     * programa alterar o próprio código.
+     */
+    static byte[] randomLoop(final Random random, final int start) {
+        final var program = new ProgramBuilder(start);
+        final var memory = program.getMemory();
+        if (random.nextInt(3) == 0) {
+            random.nextBytes(memory);
+        }
+        for (int register = 0; register < 5; ++register) {
+            program.moveImmediate(random.nextInt(3) == 0 ? random.nextInt(Cpu.MEMORY_SIZE)
+                : start + random.nextInt(0x3000), register);
+        }
+        program.moveImmediate(50 + random.nextInt(3000), 5);
+        program.moveImmediate(0x9000, Cpu.SP);
+        final var loop = program.getAddress();
+        final var size = 1 + random.nextInt(30);
+        for (int i = 0; i < size; ++i) {
+            final var indexWords = new ArrayList<Integer>();
+            final var kind = random.nextInt(10);
+            if (kind < 5) {
+                final var source = randomOperand(random, indexWords);
+                final var destination = randomDestination(random, indexWords);
+                program.twoOperand(MOV + random.nextInt(6), source[0], source[1], destination[0], destination[1]);
+            }
+            else if (kind < 8) {
+                final var destination = randomDestination(random, indexWords);
+                program.oneOperand(random.nextInt(12), destination[0], destination[1]);
+            }
+            else if (kind == 8) {
+                // CCC ou SCC
+                program.putByte((random.nextBoolean() ? 0x10 : 0x20) | random.nextInt(16));
+            }
+            else {
+                // NOP ou TST de um registrador
+                if (random.nextInt(4) == 0) {
+                    program.putByte(0x00);
+                }
+                else {
+                    program.putByte(0x80 | TST);
+                    program.putByte(random.nextInt(5));
+                }
+            }
+            for (final int word : indexWords) {
+                program.word(word);
+            }
+        }
+        if (random.nextInt(3) == 0) {
+            program.sob(5, loop);
+        }
+        else {
+            program.putByte(0x30 | random.nextInt(15));
+            program.putByte(loop - (program.getAddress() + 1));
+        }
+        program.halt();
+        return memory;
+    }
+
+    private static int[] randomOperand(final Random random, final List<Integer> indexWords) {
+        var mode = random.nextInt(8);
+        final var register = random.nextInt(8) == 0 ? Cpu.PC : random.nextInt(5);
+        if (register == Cpu.PC && (mode == PRE_DECREMENTED || mode == PRE_DECREMENTED_INDIRECT)) {
+            mode = POST_INCREMENTED;
+        }
+        if (mode == INDEXED || mode == INDEXED_INDIRECT) {
+            indexWords.add(random.nextBoolean() ? random.nextInt(64) : random.nextInt(Cpu.MEMORY_SIZE));
+        }
+        else if (register == Cpu.PC && (mode == POST_INCREMENTED || mode == POST_INCREMENTED_INDIRECT)) {
+            indexWords.add(random.nextInt(Cpu.MEMORY_SIZE));
+        }
+        return new int[] { mode, register };
+    }
+
+    // Como randomOperand, mas sem escrever diretamente no PC.
+    private static int[] randomDestination(final Random random, final List<Integer> indexWords) {
+        final var operand = randomOperand(random, indexWords);
+        if (operand[0] == REGISTER && operand[1] == Cpu.PC) {
+            operand[1] = 0;
+        }
+        return operand;
+    }
+
+    byte[] getMemory() {
+        return memory;
+    }
+
+    int getAddress() {
+        return address;
+    }
+
+    void twoOperand(final int opCode, final int srcMode, final int srcRegister, final int dstMode,
+                    final int dstRegister) {
+        word((opCode << 12) | (srcMode << 9) | (srcRegister << 6) | (dstMode << 3) | dstRegister);
+    }
+
+    void oneOperand(final int code, final int mode, final int register) {
+        putByte(0x80 | code);
+        putByte((mode << 3) | register);
+    }
+
+    // MOV #value, Rn
+    void moveImmediate(final int value, final int register) {
+        twoOperand(MOV, POST_INCREMENTED, Cpu.PC, REGISTER, register);
+        word(value);
+    }
+
+    void branch(final int code, final int target) {
+        final var branchAddress = address;
+        putByte(0x30 | code);
+        putByte(target - (branchAddress + 2));
+    }
+
+    void sob(final int register, final int target) {
+        putByte(0x50 | register);
+        putByte(address + 1 - target);
+    }
+
+    void halt() {
+        putByte(0xF0);
+    }
+
+    void word(final int value) {
+        putByte(value >> 8);
+        putByte(value);
+    }
+
+    void putWord(final int wordAddress, final int value) {
+        memory[wordAddress] = (byte) (value >> 8);
+        memory[wordAddress + 1] = (byte) value;
+    }
+
+    void putByte(final int value) {
+        memory[address++ & Cpu.LAST_ADDRESS] = (byte) value;
+    }
+}
@@ -0,0 +1,86 @@
+package cesar.models;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * As palavras de índice são lidas durante a execução, pelo mesmo caminho das leituras de dados: disparam watchpoints
+ * de leitura e entram na contagem de acessos, em todos os modos de execução.
+ */
+class WatchPointTest {
+    private static final int START = 0x100;
+    private static final int INDEX_ADDRESS = START + 2;
+    private static final int DATA_ADDRESS = 0x1000;
+
+    @Test
+    void indexedReadOfTheIndexWordTriggersReadWatchPoint() {
+        // MOV 4(R1), R0: 2 bytes de instrução, 2 da palavra de índice e 2 do operando.
+        final var program = new ProgramBuilder(START);
+        program.twoOperand(ProgramBuilder.MOV, ProgramBuilder.INDEXED, 1, ProgramBuilder.REGISTER, 0);
+        program.word(4);
+        program.halt();
+        program.putWord(DATA_ADDRESS + 4, 0x1234);
+        for (final Cpu.Engine engine : Cpu.Engine.values()) {
+            final var cpu = createCpu(engine, program.getMemory());
+            cpu.addWatchPoint(new WatchPoint(INDEX_ADDRESS, INDEX_ADDRESS + 1, true, false));
+            final var result = cpu.run(10, Cpu.StopPolicy.NEVER);
+            assertEquals(Cpu.ExecutionResult.WATCH_POINT, result.getResult(), engine.toString());
+            assertEquals(1, result.getInstructionCount(), engine.toString());
+            assertEquals(6, result.getMemoryAccessCount(), engine.toString());
+            assertEquals(START + 4, result.getProgramCounter(), engine.toString());
+            assertEquals(0x1234, cpu.getRegisterValue(0), engine.toString());
+            final var hit = cpu.getWatchPointHit();
+            assertEquals(START, hit.getProgramCounter(), engine.toString());
+            assertEquals(INDEX_ADDRESS, hit.getAddress(), engine.toString());
+            assertFalse(hit.isWrite(), engine.toString());
+        }
+    }
+
+    @Test
+    void indexedIndirectReadOfTheIndexWordTriggersReadWatchPoint() {
+        // MOV (4(R1)), R0: 2 bytes de instrução, 2 da palavra de índice, 2 do ponteiro e 2 do operando.
+        final var program = new ProgramBuilder(START);
+        program.twoOperand(ProgramBuilder.MOV, ProgramBuilder.INDEXED_INDIRECT, 1, ProgramBuilder.REGISTER, 0);
+        program.word(4);
+        program.halt();
+        program.putWord(DATA_ADDRESS + 4, DATA_ADDRESS + 0x10);
+        program.putWord(DATA_ADDRESS + 0x10, 0x5678);
+        for (final Cpu.Engine engine : Cpu.Engine.values()) {
+            final var cpu = createCpu(engine, program.getMemory());
+            cpu.addWatchPoint(new WatchPoint(INDEX_ADDRESS + 1, INDEX_ADDRESS + 1, true, false));
+            final var result = cpu.executeNextInstruction();
+            assertEquals(Cpu.ExecutionResult.WATCH_POINT, result, engine.toString());
+            assertEquals(8, cpu.getMemoryAccessCount(), engine.toString());
+            assertEquals(0x5678, cpu.getRegisterValue(0), engine.toString());
+            assertEquals(INDEX_ADDRESS + 1, cpu.getWatchPointHit().getAddress(), engine.toString());
+        }
+    }
+
+    @Test
+    void writeWatchPointIgnoresTheIndexWord() {
+        final var program = new ProgramBuilder(START);
+        program.twoOperand(ProgramBuilder.MOV, ProgramBuilder.INDEXED, 1, ProgramBuilder.REGISTER, 0);
+        program.word(4);
+        program.halt();
+        for (final Cpu.Engine engine : Cpu.Engine.values()) {
+            final var cpu = createCpu(engine, program.getMemory());
+            cpu.addWatchPoint(new WatchPoint(INDEX_ADDRESS, INDEX_ADDRESS + 1, false, true));
+            final var result = cpu.run(10, Cpu.StopPolicy.NEVER);
+            assertEquals(Cpu.ExecutionResult.HALT, result.getResult(), engine.toString());
+            // A HLT conta o byte da instrução.
+            assertEquals(7, result.getMemoryAccessCount(), engine.toString());
+            assertNull(cpu.getWatchPointHit(), engine.toString());
+        }
+    }
+
+    private static Cpu createCpu(final Cpu.Engine engine, final byte[] memory) {
+        final var cpu = new Cpu(engine);
+        cpu.setMemory(memory.clone());
+        cpu.setRegisterValue(1, (short) DATA_ADDRESS);
+        cpu.setRegisterValue(Cpu.PC, (short) START);
+        return cpu;
+    }
+}